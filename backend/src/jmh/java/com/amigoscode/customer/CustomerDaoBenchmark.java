@@ -0,0 +1,174 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.Main;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Every CustomerDao method against each implementation at several table sizes.
+// Throughput gives ops/s, SampleTime gives the p99, -prof gc gives bytes/op.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CustomerDaoBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+    private static final int INSERT_BATCH_SIZE = 100;
+    private static final Set<CustomerField> SUMMARY_FIELDS = CustomerField.parse("id,name");
+
+    @Param({"jdbc", "jpa", "memory"})
+    public String dao;
+
+    @Param({"1000", "100000"})
+    public int tableSize;
+
+    private EmbeddedPostgres postgres;
+    private ConfigurableApplicationContext context;
+    private CustomerDao underTest;
+    private CustomerDao seedDao;
+    private int minId = Integer.MAX_VALUE;
+    private int maxId;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void startApplication() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        context = new SpringApplicationBuilder(Main.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                        "--spring.datasource.username=postgres",
+                        "--spring.datasource.password=postgres",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.com.amigoscode=warn");
+        underTest = context.getBean(dao, CustomerDao.class);
+        // the JPA DAO inserts row by row, seed through JDBC instead
+        seedDao = context.getBean(dao.equals("memory") ? "memory" : "jdbc", CustomerDao.class);
+
+        for (int from = 0; from < tableSize; from += 1000) {
+            List<Customer> batch = new ArrayList<>();
+            for (int i = from; i < Math.min(from + 1000, tableSize); i++) {
+                batch.add(new Customer("customer " + i, email(i), 18 + i % 60));
+            }
+            for (Integer id : seedDao.insertCustomers(batch).values()) {
+                minId = Math.min(minId, id);
+                maxId = Math.max(maxId, id);
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeInsertedCustomers() {
+        List<Customer> inserted = seedDao.selectCustomers(maxId, 1000, CustomerField.ALL);
+        while (!inserted.isEmpty()) {
+            inserted.forEach(customer -> seedDao.deleteCustomerById(customer.getId()));
+            inserted = seedDao.selectCustomers(maxId, 1000, CustomerField.ALL);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() throws IOException {
+        context.close();
+        postgres.close();
+    }
+
+    @Benchmark
+    public List<Customer> selectAllCustomers() {
+        return underTest.selectAllCustomers();
+    }
+
+    @Benchmark
+    public List<Customer> selectCustomers() {
+        return underTest.selectCustomers(randomId(), PAGE_SIZE, CustomerField.ALL);
+    }
+
+    // the typeahead's ?fields=id,name against the full row above
+    @Benchmark
+    public List<Customer> selectCustomerSummaries() {
+        return underTest.selectCustomers(randomId(), PAGE_SIZE, SUMMARY_FIELDS);
+    }
+
+    @Benchmark
+    public void streamAllCustomers(Blackhole blackhole) {
+        underTest.streamAllCustomers(CustomerField.ALL, blackhole::consume);
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerById() {
+        return underTest.selectCustomerById(randomId());
+    }
+
+    @Benchmark
+    public void insertCustomer() {
+        underTest.insertCustomer(newCustomer());
+    }
+
+    @Benchmark
+    public Map<String, Integer> insertCustomers() {
+        List<Customer> customers = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int i = 0; i < INSERT_BATCH_SIZE; i++) {
+            customers.add(newCustomer());
+        }
+        return underTest.insertCustomers(customers);
+    }
+
+    @Benchmark
+    public boolean existsCustomerWithEmail() {
+        return underTest.existsCustomerWithEmail(email(ThreadLocalRandom.current().nextInt(tableSize)));
+    }
+
+    @Benchmark
+    public boolean existsCustomerWithId() {
+        return underTest.existsCustomerWithId(randomId());
+    }
+
+    @Benchmark
+    public Optional<Customer> updateCustomer() {
+        return underTest.updateCustomer(new Customer(randomId(), "renamed " + sequence.incrementAndGet(), null, null));
+    }
+
+    @Benchmark
+    public void deleteCustomerById(DeletableCustomer customer) {
+        underTest.deleteCustomerById(customer.id);
+    }
+
+    @State(Scope.Thread)
+    public static class DeletableCustomer {
+
+        private Integer id;
+
+        @Setup(Level.Invocation)
+        public void insert(CustomerDaoBenchmark benchmark) {
+            Customer customer = benchmark.newCustomer();
+            id = benchmark.seedDao.insertCustomers(List.of(customer)).get(customer.getEmail());
+        }
+    }
+
+    private Customer newCustomer() {
+        long n = sequence.incrementAndGet();
+        return new Customer("new customer " + n, "new-" + n + "@benchmark.test", 30);
+    }
+
+    private int randomId() {
+        return ThreadLocalRandom.current().nextInt(minId, maxId + 1);
+    }
+
+    private static String email(int i) {
+        return "customer-" + i + "@benchmark.test";
+    }
+}
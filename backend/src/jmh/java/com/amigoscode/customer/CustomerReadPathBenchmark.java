@@ -0,0 +1,131 @@
+package com.amigoscode.customer;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// The JDBC read path against a million-row table, before and after tuning.
+// scan: rows/s for the by-name and by-ordinal mappers at several fetch sizes
+// (0 is the driver default, the whole result in memory at once).
+// selectById: a point read with the SQL text parsed on every call (prepareThreshold=0)
+// against a server-side prepared statement reused from the first call (prepareThreshold=1).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class CustomerReadPathBenchmark {
+
+    private static final int ROWS = 1_000_000;
+    private static final String ALL_COLUMNS = CustomerField.columns(CustomerField.ALL);
+
+    private EmbeddedPostgres postgres;
+
+    @Setup(Level.Trial)
+    public void loadRows() throws IOException, SQLException {
+        postgres = EmbeddedPostgres.builder().start();
+        Flyway.configure().dataSource(postgres.getPostgresDatabase()).load().migrate();
+        try (Connection connection = postgres.getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    INSERT INTO customer(name, email, age)
+                    SELECT 'customer ' || i, 'customer-' || i || '@benchmark.test', 18 + i % 60
+                    FROM generate_series(1, %d) i
+                    """.formatted(ROWS));
+            statement.execute("VACUUM ANALYZE customer");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopPostgres() throws IOException {
+        postgres.close();
+    }
+
+    @State(Scope.Benchmark)
+    public static class Scan {
+
+        @Param({"name", "ordinal"})
+        public String mapper;
+
+        @Param({"0", "1000", "10000"})
+        public int fetchSize;
+
+        private final CustomerRowMapper rowMapper = new CustomerRowMapper();
+
+        // the ordinal mapper is stateful, so one per scan as in the DAO
+        RowMapper<Customer> newMapper() {
+            return mapper.equals("name") ? rowMapper : rowMapper.projecting(CustomerField.ALL);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Lookup {
+
+        @Param({"0", "1"})
+        public String prepareThreshold;
+
+        private SingleConnectionDataSource dataSource;
+        private JdbcTemplate jdbcTemplate;
+        private final CustomerRowMapper rowMapper = new CustomerRowMapper();
+
+        @Setup(Level.Trial)
+        public void connect(CustomerReadPathBenchmark benchmark) throws SQLException {
+            Connection connection = benchmark.postgres
+                    .getPostgresDatabase(Map.of("prepareThreshold", prepareThreshold))
+                    .getConnection();
+            dataSource = new SingleConnectionDataSource(connection, true);
+            jdbcTemplate = new JdbcTemplate(dataSource);
+        }
+
+        @TearDown(Level.Trial)
+        public void disconnect() {
+            dataSource.destroy();
+        }
+    }
+
+    // as streamAllCustomers does it: fetchSize only takes effect inside a transaction
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void scan(Scan scan, Blackhole blackhole) throws SQLException {
+        try (Connection connection = postgres.getPostgresDatabase().getConnection()) {
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT %s FROM customer".formatted(ALL_COLUMNS))) {
+                statement.setFetchSize(scan.fetchSize);
+                RowMapper<Customer> mapper = scan.newMapper();
+                try (ResultSet rs = statement.executeQuery()) {
+                    int rowNum = 0;
+                    while (rs.next()) {
+                        blackhole.consume(mapper.mapRow(rs, rowNum++));
+                    }
+                }
+            }
+            connection.commit();
+        }
+    }
+
+    @Benchmark
+    public Customer selectById(Lookup lookup) {
+        String sql = """
+                SELECT %s FROM customer WHERE id = ?
+                """.formatted(ALL_COLUMNS);
+        int id = ThreadLocalRandom.current().nextInt(1, ROWS + 1);
+        return lookup.jdbcTemplate.query(sql, lookup.rowMapper.projecting(CustomerField.ALL), id).get(0);
+    }
+}
@@ -0,0 +1,81 @@
+package com.amigoscode.customer;
+
+import io.micrometer.observation.ObservationRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.DataSource;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Maps a whole result set held in memory, so the numbers are the mapper's own cost.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CustomerRowMapperBenchmark {
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private final CustomerRowMapper rowMapper = new CustomerRowMapper();
+    private CachedRowSet rowSet;
+
+    @Setup(Level.Trial)
+    public void loadRows() throws IOException, SQLException {
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start()) {
+            DataSource dataSource = postgres.getPostgresDatabase();
+            Flyway.configure().dataSource(dataSource).load().migrate();
+
+            CustomerJDBCDataAccessService dao = new CustomerJDBCDataAccessService(new JdbcTemplate(dataSource), rowMapper, ObservationRegistry.NOOP);
+            for (int from = 0; from < rows; from += 1000) {
+                List<Customer> batch = new ArrayList<>();
+                for (int i = from; i < Math.min(from + 1000, rows); i++) {
+                    batch.add(new Customer("customer " + i, "customer-" + i + "@benchmark.test", 18 + i % 60));
+                }
+                dao.insertCustomers(batch);
+            }
+
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT * FROM customer")) {
+                rowSet = RowSetProvider.newFactory().createCachedRowSet();
+                rowSet.populate(resultSet);
+            }
+        }
+    }
+
+    @Benchmark
+    public void mapRow(Blackhole blackhole) throws SQLException {
+        rowSet.beforeFirst();
+        int rowNum = 0;
+        while (rowSet.next()) {
+            blackhole.consume(rowMapper.mapRow(rowSet, rowNum++));
+        }
+    }
+
+    // what the DAO uses: column ordinals resolved on the first row
+    @Benchmark
+    public void mapRowByOrdinal(Blackhole blackhole) throws SQLException {
+        RowMapper<Customer> mapper = rowMapper.projecting(CustomerField.ALL);
+        rowSet.beforeFirst();
+        int rowNum = 0;
+        while (rowSet.next()) {
+            blackhole.consume(mapper.mapRow(rowSet, rowNum++));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.amigoscode.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Ids of customers known to exist, picked at random. Registrations answer without the
+// new id, so the pool only holds what was listed after seeding and shrinks with deletes.
+final class CustomerIds {
+
+    private final List<Integer> ids = new ArrayList<>();
+
+    synchronized void addAll(Collection<Integer> more) {
+        ids.addAll(more);
+    }
+
+    synchronized Integer any() {
+        return ids.isEmpty() ? null : ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    // swaps the last id into the taken one's place, removal stays O(1)
+    synchronized Integer take() {
+        if (ids.isEmpty()) {
+            return null;
+        }
+        int index = ThreadLocalRandom.current().nextInt(ids.size());
+        Integer id = ids.get(index);
+        ids.set(index, ids.get(ids.size() - 1));
+        ids.remove(ids.size() - 1);
+        return id;
+    }
+
+    synchronized int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,161 @@
+package com.amigoscode.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latencies per operation in microseconds, measured from when a request was due rather
+// than when it was sent, so a stalled app or load generator shows up in the percentiles
+// instead of being hidden by coordinated omission. Outcomes are the HTTP status, or
+// timeout, dropped (over --max-in-flight) and failed (connection errors).
+final class LoadReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Map<Operation, Recorder> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, Map<String, LongAdder>> outcomes = new EnumMap<>(Operation.class);
+    // filled by summarize
+    private final Map<String, Histogram> measured = new LinkedHashMap<>();
+
+    LoadReport() {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new Recorder(3));
+            outcomes.put(operation, new ConcurrentHashMap<>());
+        }
+    }
+
+    void record(Operation operation, long dueNanos, String outcome) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - dueNanos);
+        latencies.get(operation).recordValue(Math.max(micros, 1));
+        outcomes.get(operation).computeIfAbsent(outcome, key -> new LongAdder()).increment();
+    }
+
+    // errors are everything but a 2xx
+    Map<String, Object> summarize(LoadTestOptions options, Instant startedAt, long issued) {
+        Map<String, Object> operations = new LinkedHashMap<>();
+        Histogram total = new Histogram(3);
+        long totalErrors = 0;
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation).getIntervalHistogram();
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            total.add(histogram);
+            histogram.setTag(operation.label());
+            measured.put(operation.label(), histogram);
+            Map<String, Long> statuses = new TreeMap<>();
+            outcomes.get(operation).forEach((outcome, count) -> statuses.put(outcome, count.sum()));
+            long errors = statuses.entrySet().stream()
+                    .filter(status -> !status.getKey().startsWith("2"))
+                    .mapToLong(Map.Entry::getValue)
+                    .sum();
+            totalErrors += errors;
+            operations.put(operation.label(), summary(histogram, errors, statuses));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", startedAt.toString());
+        report.put("app", options.app());
+        report.put("target", options.target());
+        report.put("rate", options.rate());
+        report.put("duration", options.duration().toString());
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        options.mix().forEach((operation, weight) -> mix.put(operation.label(), weight));
+        report.put("mix", mix);
+        report.put("issued", issued);
+        report.put("achievedRate", total.getTotalCount() / (double) options.duration().toSeconds());
+        report.put("total", summary(total, totalErrors, null));
+        report.put("operations", operations);
+        return report;
+    }
+
+    private static Map<String, Object> summary(Histogram histogram, long errors, Map<String, Long> statuses) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", histogram.getTotalCount());
+        summary.put("errors", errors);
+        summary.put("errorRate", errors / (double) histogram.getTotalCount());
+        if (statuses != null) {
+            summary.put("statuses", statuses);
+        }
+        Map<String, Double> millis = new LinkedHashMap<>();
+        millis.put("mean", histogram.getMean() / 1000);
+        for (double percentile : PERCENTILES) {
+            millis.put("p" + (percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : percentile),
+                    histogram.getValueAtPercentile(percentile) / 1000.0);
+        }
+        millis.put("max", histogram.getMaxValue() / 1000.0);
+        summary.put("latencyMillis", millis);
+        return summary;
+    }
+
+    static void write(Map<String, Object> report, Path path) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(path.toFile(), report);
+    }
+
+    // the full distributions, one tagged histogram per operation, for HdrHistogram's own
+    // tools (HistogramLogProcessor, the online plotter) to overlay runs
+    void writeHistograms(Path path) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(path))) {
+            HistogramLogWriter writer = new HistogramLogWriter(out);
+            writer.outputLogFormatVersion();
+            writer.outputLegend();
+            measured.values().forEach(writer::outputIntervalHistogram);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static void print(Map<String, Object> report, PrintStream out) {
+        out.printf("%-9s %9s %8s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        Map<String, Object> rows = new LinkedHashMap<>((Map<String, Object>) report.get("operations"));
+        rows.put("total", report.get("total"));
+        rows.forEach((name, value) -> {
+            Map<String, Object> summary = (Map<String, Object>) value;
+            Map<String, Double> millis = (Map<String, Double>) summary.get("latencyMillis");
+            out.printf("%-9s %9d %7.2f%% %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, summary.get("count"),
+                    100 * (double) summary.get("errorRate"), millis.get("p50"), millis.get("p90"),
+                    millis.get("p99"), millis.get("p99.9"), millis.get("max"));
+        });
+        out.printf("achieved %.1f requests/s of %s%n", report.get("achievedRate"), report.get("rate"));
+    }
+
+    // p99 and error rate per operation against an earlier run
+    static void compare(Map<String, Object> report, Path baselinePath, PrintStream out) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode current = mapper.valueToTree(report);
+        JsonNode baseline = mapper.readTree(baselinePath.toFile());
+        out.printf("against %s (%s)%n", baselinePath, baseline.path("startedAt").asText());
+        Map<String, JsonNode> rows = new LinkedHashMap<>();
+        current.path("operations").fields().forEachRemaining(row -> rows.put(row.getKey(), row.getValue()));
+        rows.put("total", current.path("total"));
+        rows.forEach((name, now) -> {
+            JsonNode before = name.equals("total") ? baseline.path("total") : baseline.path("operations").path(name);
+            if (before.isMissingNode()) {
+                out.printf("%-9s not in baseline%n", name);
+                return;
+            }
+            double p99Before = before.path("latencyMillis").path("p99").asDouble();
+            double p99Now = now.path("latencyMillis").path("p99").asDouble();
+            out.printf("%-9s p99 %9.2f -> %9.2f ms (%+.1f%%)   errors %6.2f%% -> %6.2f%%%n", name,
+                    p99Before, p99Now, 100 * (p99Now - p99Before) / p99Before,
+                    100 * before.path("errorRate").asDouble(), 100 * now.path("errorRate").asDouble());
+        });
+    }
+}
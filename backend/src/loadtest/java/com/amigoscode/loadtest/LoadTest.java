@@ -0,0 +1,198 @@
+package com.amigoscode.loadtest;
+
+import com.amigoscode.Main;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// An open-model load test of the customer API: requests arrive at --rate per second on a
+// fixed schedule however slow the answers are, the way independent users arrive, so a
+// saturated app shows up as growing latency and errors rather than as a lower request
+// rate. See LoadTestOptions for the arguments and LoadReport for what is measured.
+public final class LoadTest {
+
+    private static final DateTimeFormatter REPORT_NAME =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    private final LoadTestOptions options;
+    private final HttpClient client;
+    private final CustomerIds ids = new CustomerIds();
+    private final LoadReport report = new LoadReport();
+    private final Operation[] weighted;
+
+    private LoadTest(LoadTestOptions options) {
+        this.options = options;
+        this.client = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()))
+                .build();
+        List<Operation> slots = new ArrayList<>();
+        options.mix().forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                slots.add(operation);
+            }
+        });
+        this.weighted = slots.toArray(Operation[]::new);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        if (options.app().equals("none")) {
+            new LoadTest(options).run(URI.create(options.target()));
+            return;
+        }
+        if (options.app().equals("memory")) {
+            try (ConfigurableApplicationContext app = startApp("--customer.dao=memory")) {
+                new LoadTest(options).run(localhost(app));
+            }
+            return;
+        }
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+             ConfigurableApplicationContext app = startApp(
+                     "--customer.dao=jdbc",
+                     "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                     "--spring.datasource.username=postgres",
+                     "--spring.datasource.password=postgres")) {
+            new LoadTest(options).run(localhost(app));
+        }
+    }
+
+    // the app in this JVM, so a profiler attached to the run sees both sides
+    private static ConfigurableApplicationContext startApp(String... args) {
+        List<String> withPort = new ArrayList<>(List.of("--server.port=0", "--spring.jpa.show-sql=false"));
+        withPort.addAll(List.of(args));
+        return new SpringApplicationBuilder(Main.class).run(withPort.toArray(String[]::new));
+    }
+
+    private static URI localhost(ConfigurableApplicationContext app) {
+        return URI.create("http://localhost:" + app.getEnvironment().getProperty("local.server.port"));
+    }
+
+    private void run(URI target) throws Exception {
+        URI api = target.resolve("/api/v1/");
+        seed(api);
+        System.out.printf("%d customers in the pool, %d requests/s for %s after %s warmup%n",
+                ids.size(), options.rate(), options.duration(), options.warmup());
+
+        Semaphore inFlight = new Semaphore(options.maxInFlight());
+        long interval = TimeUnit.SECONDS.toNanos(1) / options.rate();
+        long start = System.nanoTime();
+        long measuredFrom = start + options.warmup().toNanos();
+        long end = measuredFrom + options.duration().toNanos();
+        Instant startedAt = Instant.now();
+        long issued = 0;
+        for (long i = 0; ; i++) {
+            long due = start + i * interval;
+            if (due >= end) {
+                break;
+            }
+            for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean measured = due >= measuredFrom;
+            Operation operation = weighted[ThreadLocalRandom.current().nextInt(weighted.length)];
+            HttpRequest.Builder request = operation.request(api, ids);
+            if (request == null) {
+                operation = Operation.REGISTER;
+                request = operation.request(api, ids);
+            }
+            if (!inFlight.tryAcquire()) {
+                if (measured) {
+                    report.record(operation, due, "dropped");
+                }
+                continue;
+            }
+            if (measured) {
+                issued++;
+            }
+            send(operation, request.timeout(options.timeout()).build(), due, measured)
+                    .whenComplete((outcome, failure) -> inFlight.release());
+        }
+        inFlight.acquire(options.maxInFlight());
+
+        Map<String, Object> summary = report.summarize(options, startedAt, issued);
+        LoadReport.print(summary, System.out);
+        Path path = options.report() != null ? options.report()
+                : Path.of("target", "loadtest", "report-" + REPORT_NAME.format(startedAt) + ".json");
+        LoadReport.write(summary, path);
+        report.writeHistograms(Path.of(path.toString().replaceFirst("\\.json$", "") + ".hlog"));
+        System.out.println("report written to " + path);
+        if (options.baseline() != null) {
+            LoadReport.compare(summary, options.baseline(), System.out);
+        }
+    }
+
+    private CompletableFuture<String> send(Operation operation, HttpRequest request, long due, boolean measured) {
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, failure) -> {
+                    String outcome = failure == null ? String.valueOf(response.statusCode())
+                            : unwrap(failure) instanceof HttpTimeoutException ? "timeout" : "failed";
+                    if (measured) {
+                        report.record(operation, due, outcome);
+                    }
+                    return outcome;
+                });
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    // registers --seed customers, then pages through all of them for their ids,
+    // registrations do not answer with one
+    private void seed(URI api) throws IOException, InterruptedException {
+        Semaphore concurrent = new Semaphore(64);
+        List<CompletableFuture<?>> registrations = new ArrayList<>();
+        for (int i = 0; i < options.seed(); i++) {
+            concurrent.acquire();
+            HttpRequest request = Operation.REGISTER.request(api, ids).timeout(options.timeout()).build();
+            registrations.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> concurrent.release()));
+        }
+        CompletableFuture.allOf(registrations.toArray(CompletableFuture[]::new)).join();
+
+        ObjectMapper mapper = new ObjectMapper();
+        Integer after = null;
+        while (true) {
+            HttpRequest request = HttpRequest.newBuilder(api.resolve(
+                            "customers?fields=id&limit=1000" + (after == null ? "" : "&after=" + after)))
+                    .header("Accept", "application/json")
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("listing customers answered " + response.statusCode());
+            }
+            List<Integer> page = new ArrayList<>();
+            for (JsonNode customer : mapper.readTree(response.body())) {
+                page.add(customer.get("id").asInt());
+            }
+            if (page.isEmpty()) {
+                return;
+            }
+            ids.addAll(page);
+            after = page.get(page.size() - 1);
+        }
+    }
+}
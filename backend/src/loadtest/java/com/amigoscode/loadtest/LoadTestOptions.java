@@ -0,0 +1,82 @@
+package com.amigoscode.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+// --name value pairs, every one optional:
+//   --app        memory | postgres: start the app in-process with the in-memory DAO, or with the
+//                JDBC DAO on embedded Postgres; none: drive an app that is already running (default)
+//   --target     base url of that app (default http://localhost:8080)
+//   --rate       requests per second, issued on schedule whether or not earlier ones finished
+//   --duration   measured time (60s), preceded by --warmup (10s) whose results are discarded
+//   --mix        relative weights, e.g. register=10,get=60,list=15,update=10,delete=5
+//   --seed       customers registered before the run, the pool get, update and delete draw ids from
+//   --timeout    per request (5s); --max-in-flight caps outstanding requests (10000), beyond it
+//                arrivals are counted as dropped instead of piling up in the load generator
+//   --report     where the JSON report goes (target/loadtest/report-<start time>.json)
+//   --baseline   an earlier report to print the differences against
+record LoadTestOptions(String app,
+                       String target,
+                       int rate,
+                       Duration duration,
+                       Duration warmup,
+                       Map<Operation, Integer> mix,
+                       int seed,
+                       Duration timeout,
+                       int maxInFlight,
+                       Path report,
+                       Path baseline) {
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("expected --name value pairs, got " + String.join(" ", args));
+            }
+            values.put(args[i].substring(2), args[i + 1]);
+        }
+
+        LoadTestOptions options = new LoadTestOptions(
+                values.getOrDefault("app", "none"),
+                values.getOrDefault("target", "http://localhost:8080"),
+                Integer.parseInt(values.getOrDefault("rate", "200")),
+                DurationStyle.detectAndParse(values.getOrDefault("duration", "60s")),
+                DurationStyle.detectAndParse(values.getOrDefault("warmup", "10s")),
+                parseMix(values.getOrDefault("mix", "register=10,get=60,list=15,update=10,delete=5")),
+                Integer.parseInt(values.getOrDefault("seed", "10000")),
+                DurationStyle.detectAndParse(values.getOrDefault("timeout", "5s")),
+                Integer.parseInt(values.getOrDefault("max-in-flight", "10000")),
+                values.containsKey("report") ? Path.of(values.get("report")) : null,
+                values.containsKey("baseline") ? Path.of(values.get("baseline")) : null);
+        if (!options.app.equals("none") && !options.app.equals("memory") && !options.app.equals("postgres")) {
+            throw new IllegalArgumentException("--app must be none, memory or postgres, not " + options.app);
+        }
+        if (options.rate < 1) {
+            throw new IllegalArgumentException("--rate must be positive");
+        }
+        return options;
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("--mix entries look like get=60, not " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.parse(parts[0].trim()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("--mix needs at least one operation with a positive weight");
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,84 @@
+package com.amigoscode.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// The CustomerController calls a load mix is made of. get, update and delete need an
+// existing id from the pool and build no request when it is empty.
+enum Operation {
+    REGISTER {
+        @Override
+        HttpRequest.Builder request(URI api, CustomerIds ids) {
+            return json(HttpRequest.newBuilder(api.resolve("customers")), "POST", registration());
+        }
+    },
+    GET {
+        @Override
+        HttpRequest.Builder request(URI api, CustomerIds ids) {
+            Integer id = ids.any();
+            return id == null ? null
+                    : HttpRequest.newBuilder(api.resolve("customers/" + id)).GET();
+        }
+    },
+    LIST {
+        @Override
+        HttpRequest.Builder request(URI api, CustomerIds ids) {
+            Integer after = ids.any();
+            return HttpRequest.newBuilder(api.resolve(
+                    "customers?limit=100" + (after == null ? "" : "&after=" + after))).GET();
+        }
+    },
+    UPDATE {
+        @Override
+        HttpRequest.Builder request(URI api, CustomerIds ids) {
+            Integer id = ids.any();
+            return id == null ? null
+                    : json(HttpRequest.newBuilder(api.resolve("customers/" + id)), "PUT",
+                    "{\"name\":\"renamed %d\"}".formatted(SEQUENCE.incrementAndGet()));
+        }
+    },
+    // takes the id out of the pool, so later requests do not go looking for it
+    DELETE {
+        @Override
+        HttpRequest.Builder request(URI api, CustomerIds ids) {
+            Integer id = ids.take();
+            return id == null ? null
+                    : HttpRequest.newBuilder(api.resolve("customers/" + id)).DELETE();
+        }
+    };
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    // unique across runs against the same database
+    private static final String RUN = Long.toString(System.currentTimeMillis(), 36);
+
+    // api is the app's /api/v1/ url; null when there is no customer to address
+    abstract HttpRequest.Builder request(URI api, CustomerIds ids);
+
+    static String registration() {
+        long n = SEQUENCE.incrementAndGet();
+        return "{\"name\":\"load %d\",\"email\":\"load-%s-%d@loadtest.test\",\"age\":%d}"
+                .formatted(n, RUN, n, 18 + ThreadLocalRandom.current().nextInt(60));
+    }
+
+    private static HttpRequest.Builder json(HttpRequest.Builder builder, String method, String body) {
+        return builder.header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body));
+    }
+
+    String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    static Operation parse(String label) {
+        return Arrays.stream(values())
+                .filter(operation -> operation.label().equals(label))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("operations are %s, not %s".formatted(
+                        Arrays.stream(values()).map(Operation::label).collect(Collectors.joining(", ")), label)));
+    }
+}
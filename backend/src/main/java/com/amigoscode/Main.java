@@ -1,30 +1,53 @@
 package com.amigoscode;
 
-import com.amigoscode.customer.Customer;
-import com.amigoscode.customer.CustomerRepository;
+import com.amigoscode.config.NativeHints;
+import com.amigoscode.customer.CustomerRegistrationRequest;
+import com.amigoscode.customer.CustomerService;
+import com.amigoscode.exception.DuplicateResourceException;
 import com.github.javafaker.Faker;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 import java.util.Random;
 
 @SpringBootApplication
+@ImportRuntimeHints(NativeHints.class)
+@Slf4j
 public class Main {
 
+    // Faker draws from a small pool of names, so an email can already be taken
+    private static final int SEED_ATTEMPTS = 5;
+
     public static void main(String[] args) {
         SpringApplication.run(Main.class, args);
     }
 
+    // through the service, so it works whichever store customer.dao selects.
+    // A sample customer is nice to have, never a reason for the application not to start
     @Bean
-    CommandLineRunner runner(CustomerRepository customerRepository) {
+    CommandLineRunner runner(CustomerService customerService) {
         Faker fk = new Faker();
-        Customer user = new Customer(fk.name().name(),
-                fk.internet().emailAddress(),
-                new Random().nextInt(16, 85));
+        Random random = new Random();
         return args -> {
-            customerRepository.save(user);
+            for (int attempt = 1; attempt <= SEED_ATTEMPTS; attempt++) {
+                CustomerRegistrationRequest user = new CustomerRegistrationRequest(fk.name().name(),
+                        fk.internet().emailAddress(),
+                        random.nextInt(16, 85));
+                try {
+                    customerService.addCustomer(user);
+                    return;
+                } catch (DuplicateResourceException e) {
+                    log.debug("sample customer {} exists, trying another email", user.email());
+                } catch (RuntimeException e) {
+                    log.warn("could not add a sample customer", e);
+                    return;
+                }
+            }
+            log.warn("no sample customer added, {} generated emails were all taken", SEED_ATTEMPTS);
         };
     }
 }
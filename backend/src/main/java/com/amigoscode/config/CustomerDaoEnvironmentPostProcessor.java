@@ -0,0 +1,62 @@
+package com.amigoscode.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// customer.dao picks the one store behind the API. The auto-configuration only the
+// other stores need is excluded before it is evaluated, so memory starts without a
+// DataSource, Flyway or Hibernate, and jdbc without the EntityManagerFactory and the
+// Spring Data repositories. Only the matching DAO bean is created, see its @ConditionalOnProperty.
+public class CustomerDaoEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    static final String PROPERTY = "customer.dao";
+    private static final String EXCLUDE = "spring.autoconfigure.exclude";
+
+    private static final List<String> JPA = List.of(
+            HibernateJpaAutoConfiguration.class.getName(),
+            JpaRepositoriesAutoConfiguration.class.getName());
+    private static final List<String> JDBC = List.of(
+            DataSourceAutoConfiguration.class.getName(),
+            DataSourceTransactionManagerAutoConfiguration.class.getName(),
+            JdbcTemplateAutoConfiguration.class.getName(),
+            FlywayAutoConfiguration.class.getName());
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        List<String> unused = switch (environment.getProperty(PROPERTY, "jdbc")) {
+            case "jdbc" -> JPA;
+            case "memory" -> concat(JPA, JDBC);
+            default -> List.of();
+        };
+        if (unused.isEmpty()) {
+            return;
+        }
+        // added to, not replacing, what application.yml or the command line already exclude
+        List<String> excluded = new ArrayList<>(Binder.get(environment)
+                .bind(EXCLUDE, Bindable.listOf(String.class))
+                .orElse(List.of()));
+        excluded.addAll(unused);
+        environment.getPropertySources().addFirst(new MapPropertySource(PROPERTY,
+                Map.of(EXCLUDE, String.join(",", excluded))));
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        List<String> both = new ArrayList<>(first);
+        both.addAll(second);
+        return both;
+    }
+}
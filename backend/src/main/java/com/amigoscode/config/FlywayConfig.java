@@ -0,0 +1,29 @@
+package com.amigoscode.config;
+
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.flywaydb.core.internal.database.postgresql.PostgreSQLConfigurationExtension;
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Migrations that build indexes with CREATE INDEX CONCURRENTLY run outside a transaction
+// (Flyway detects the statement). The build waits for every transaction already open, which
+// by default includes the one Flyway holds its PostgreSQL advisory lock in, so it would wait
+// forever: Flyway takes a session lock instead. Every Flyway this application configures
+// itself goes through sessionLock too.
+@Configuration
+public class FlywayConfig {
+
+    @Bean
+    public FlywayConfigurationCustomizer sessionLockCustomizer() {
+        return FlywayConfig::sessionLock;
+    }
+
+    // Boot 3.0 has no property for flyway.postgresql.transactional.lock
+    public static FluentConfiguration sessionLock(FluentConfiguration configuration) {
+        configuration.getPluginRegister()
+                .getPlugin(PostgreSQLConfigurationExtension.class)
+                .setTransactionalLock(false);
+        return configuration;
+    }
+}
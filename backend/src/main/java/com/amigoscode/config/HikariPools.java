@@ -0,0 +1,50 @@
+package com.amigoscode.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+
+import javax.sql.DataSource;
+
+// Pools for configurations that replace Boot's single DataSource. Every pool starts
+// from spring.datasource.* and reports hikaricp.* metrics tagged with its pool name.
+final class HikariPools {
+
+    private HikariPools() {
+    }
+
+    // what Boot would have built, not started until the first getConnection
+    static HikariDataSource fromSpringDataSource(DataSourceProperties properties, Binder binder,
+                                                 String poolName, MeterRegistry meterRegistry) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        if (pool.getPoolName() == null) {
+            pool.setPoolName(poolName);
+        }
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return pool;
+    }
+
+    // same settings and credentials as the template, pointed at another url; properties
+    // under overridesPrefix (Hikari names, e.g. maximum-pool-size) win over the template's
+    static HikariDataSource copyOf(HikariDataSource template, String poolName, String url,
+                                   Binder binder, String overridesPrefix) {
+        HikariDataSource pool = new HikariDataSource();
+        template.copyStateTo(pool);
+        pool.setPoolName(poolName);
+        pool.setJdbcUrl(url);
+        binder.bind(overridesPrefix, Bindable.ofInstance(pool));
+        return pool;
+    }
+
+    // what callers get instead of pool: with virtual threads on, a ConcurrencyLimitingDataSource
+    // sized to it, as VirtualThreadConfig does for Boot's own pool
+    static DataSource limited(HikariDataSource pool, Binder binder) {
+        return binder.bind(VirtualThreadConfig.ENABLED, Boolean.class).orElse(false)
+                ? ConcurrencyLimitingDataSource.forPool(pool)
+                : pool;
+    }
+}
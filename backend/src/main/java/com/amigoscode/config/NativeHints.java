@@ -0,0 +1,29 @@
+package com.amigoscode.config;
+
+import com.amigoscode.customer.Customer;
+import com.amigoscode.customer.CustomerPage;
+import com.github.javafaker.Faker;
+import com.github.javafaker.Internet;
+import com.github.javafaker.Name;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+// What the native image cannot find by itself: bodies the controller wraps in
+// CustomerFieldsValue or streams (Jackson sees only Object), the shard migrations
+// Flyway is pointed at by ShardingConfig, and Faker's locale files and the
+// providers its #{...} expressions call by name.
+public class NativeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                Customer.class, CustomerPage.class);
+        hints.resources().registerPattern("db/sharding/*.sql");
+        hints.resources().registerPattern("*.yml");
+        for (Class<?> provider : new Class<?>[]{Faker.class, Name.class, Internet.class}) {
+            hints.reflection().registerType(provider, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+    }
+}
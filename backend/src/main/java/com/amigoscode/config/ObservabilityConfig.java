@@ -0,0 +1,18 @@
+package com.amigoscode.config;
+
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.aop.ObservedAspect;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Backs @Observed on the DAOs and CustomerService: every call becomes a timer
+// (customer.dao / customer.service, tagged with class and method) and, when a
+// tracing exporter is configured, a span.
+@Configuration
+public class ObservabilityConfig {
+
+    @Bean
+    public ObservedAspect observedAspect(ObservationRegistry observationRegistry) {
+        return new ObservedAspect(observationRegistry);
+    }
+}
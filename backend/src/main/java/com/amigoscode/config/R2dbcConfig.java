@@ -0,0 +1,54 @@
+package com.amigoscode.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.time.Duration;
+
+// Opt-in: customer.r2dbc.enabled=true serves /api/v1/reactive/customers from a
+// non-blocking R2DBC pool next to the Hikari pool. The pool is deliberately not
+// published as a ConnectionFactory bean, since Boot backs the JDBC DataSource
+// (and with it JPA, Flyway and the blocking API) off as soon as one exists.
+@Configuration
+@ConditionalOnProperty(name = "customer.r2dbc.enabled", havingValue = "true")
+public class R2dbcConfig implements DisposableBean {
+
+    private final ConnectionPool connectionPool;
+
+    public R2dbcConfig(@Value("${customer.r2dbc.url}") String url,
+                       @Value("${spring.datasource.username}") String username,
+                       @Value("${spring.datasource.password}") String password,
+                       @Value("${customer.r2dbc.pool.max-size:20}") int maxSize,
+                       @Value("${customer.r2dbc.pool.max-acquire-time:30s}") Duration maxAcquireTime) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url)
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration
+                .builder(ConnectionFactories.get(options))
+                .name("customer-r2dbc")
+                .initialSize(0)
+                .maxSize(maxSize)
+                .maxAcquireTime(maxAcquireTime)
+                .build());
+    }
+
+    @Bean
+    public DatabaseClient databaseClient() {
+        return DatabaseClient.create(connectionPool);
+    }
+
+    @Override
+    public void destroy() {
+        connectionPool.dispose();
+    }
+}
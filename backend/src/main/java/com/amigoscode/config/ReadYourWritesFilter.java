@@ -0,0 +1,72 @@
+package com.amigoscode.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseCookie;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+
+// Only GET and HEAD may read from a replica. A client that writes gets a cookie
+// pinning its reads to the primary for as long as a replica can still be behind,
+// so it always sees its own changes; everyone else keeps reading from replicas.
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE = "customer-primary-until";
+
+    private final Duration window;
+    private final Clock clock;
+
+    public ReadYourWritesFilter(Duration window, Clock clock) {
+        this.window = window;
+        this.clock = clock;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        boolean safe = HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+        if (!safe) {
+            // set up front, the response may be committed by the time the chain returns
+            response.addHeader(HttpHeaders.SET_COOKIE, ResponseCookie
+                    .from(COOKIE, Long.toString(clock.millis() + window.toMillis()))
+                    .path("/")
+                    .maxAge(window.plusSeconds(1).toSeconds())
+                    .httpOnly(true)
+                    .sameSite("Lax")
+                    .build()
+                    .toString());
+        }
+
+        boolean previous = ReplicaRouting.allowReplicas(safe && !pinnedToPrimary(request));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaRouting.allowReplicas(previous);
+        }
+    }
+
+    // the expiry travels in the value, clients that ignore Max-Age are pinned no longer than browsers
+    private boolean pinnedToPrimary(HttpServletRequest request) {
+        if (request.getCookies() == null) {
+            return false;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue()) > clock.millis();
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
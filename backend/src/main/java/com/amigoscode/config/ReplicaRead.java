@@ -0,0 +1,13 @@
+package com.amigoscode.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Marks a DAO method whose connection may come from a read replica. Only honoured
+// when customer.replicas.enabled=true and the current request may read stale data.
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReplicaRead {
+}
@@ -0,0 +1,23 @@
+package com.amigoscode.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+// Outermost, so a @Transactional(readOnly = true) read opens its transaction on the replica.
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ReplicaReadAspect {
+
+    @Around("@annotation(com.amigoscode.config.ReplicaRead)")
+    public Object route(ProceedingJoinPoint joinPoint) throws Throwable {
+        boolean previous = ReplicaRouting.reading(true);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReplicaRouting.reading(previous);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.amigoscode.config;
+
+import java.util.function.Supplier;
+
+// Per thread routing state. A connection is taken from a replica only when the
+// request allows it (ReadYourWritesFilter) and the caller is a @ReplicaRead method.
+public final class ReplicaRouting {
+
+    private static final ThreadLocal<Boolean> REPLICAS_ALLOWED = ThreadLocal.withInitial(() -> false);
+    private static final ThreadLocal<Boolean> READING = ThreadLocal.withInitial(() -> false);
+
+    private ReplicaRouting() {
+    }
+
+    static boolean routeToReplica() {
+        return REPLICAS_ALLOWED.get() && READING.get();
+    }
+
+    // both setters return the previous value so callers can restore it in a finally block
+    static boolean allowReplicas(boolean allowed) {
+        boolean previous = REPLICAS_ALLOWED.get();
+        REPLICAS_ALLOWED.set(allowed);
+        return previous;
+    }
+
+    static boolean reading(boolean reading) {
+        boolean previous = READING.get();
+        READING.set(reading);
+        return previous;
+    }
+
+    // for reads whose result outlives the request, such as cache fills
+    public static <T> T onPrimary(Supplier<T> read) {
+        boolean previous = allowReplicas(false);
+        try {
+            return read.get();
+        } finally {
+            allowReplicas(previous);
+        }
+    }
+
+    // streamed responses are written from the async executor, carry the request's decision over
+    static Runnable propagate(Runnable task) {
+        boolean allowed = REPLICAS_ALLOWED.get();
+        return () -> {
+            boolean previous = allowReplicas(allowed);
+            try {
+                task.run();
+            } finally {
+                allowReplicas(previous);
+            }
+        };
+    }
+}
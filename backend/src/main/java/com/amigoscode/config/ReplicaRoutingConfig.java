@@ -0,0 +1,74 @@
+package com.amigoscode.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskDecorator;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Opt-in: customer.replicas.enabled=true with customer.replicas.urls listing the replicas.
+// Replaces Boot's single pool with a primary pool (spring.datasource.*) plus one read-only
+// pool per replica, configured like the primary and overridable under customer.replicas.hikari.
+// Pools report hikaricp.* metrics tagged pool=primary / replica-N.
+@Configuration
+@ConditionalOnProperty(name = "customer.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    // a replica slow to hand out a connection is treated as down and the primary takes the read
+    private static final Duration REPLICA_CONNECTION_TIMEOUT = Duration.ofSeconds(1);
+
+    @Bean
+    public ReplicaRoutingDataSource dataSource(DataSourceProperties properties,
+                                               Environment environment,
+                                               @Value("${customer.replicas.max-lag:1s}") Duration maxLag,
+                                               @Value("${customer.replicas.check-interval:2s}") Duration checkInterval,
+                                               @Value("${customer.replicas.receiver-timeout:60s}") Duration receiverTimeout,
+                                               MeterRegistry meterRegistry) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = HikariPools.fromSpringDataSource(properties, binder,
+                ReplicaRoutingDataSource.PRIMARY, meterRegistry);
+
+        List<String> urls = binder.bind("customer.replicas.urls", Bindable.listOf(String.class)).orElse(List.of());
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = HikariPools.copyOf(primary, "replica-" + (i + 1), urls.get(i),
+                    binder, "customer.replicas.hikari");
+            replica.setReadOnly(true);
+            replica.setConnectionTimeout(REPLICA_CONNECTION_TIMEOUT.toMillis());
+            replicas.put(replica.getPoolName(), HikariPools.limited(replica, binder));
+        }
+        return new ReplicaRoutingDataSource(HikariPools.limited(primary, binder), replicas, maxLag, checkInterval,
+                receiverTimeout, meterRegistry);
+    }
+
+    @Bean
+    public ReplicaReadAspect replicaReadAspect() {
+        return new ReplicaReadAspect();
+    }
+
+    // a replica within max-lag at the last check can be up to max-lag plus one interval
+    // behind by now, which is how long a writer's reads stay on the primary
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(@Value("${customer.replicas.max-lag:1s}") Duration maxLag,
+                                                     @Value("${customer.replicas.check-interval:2s}") Duration checkInterval) {
+        return new ReadYourWritesFilter(maxLag.plus(checkInterval), Clock.systemUTC());
+    }
+
+    @Bean
+    public TaskDecorator replicaRoutingTaskDecorator() {
+        return ReplicaRouting::propagate;
+    }
+}
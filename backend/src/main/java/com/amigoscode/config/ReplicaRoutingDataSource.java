@@ -0,0 +1,204 @@
+package com.amigoscode.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hands out primary connections unless ReplicaRouting says the caller may read
+// from a replica, in which case replicas that answered the last health check
+// within max-lag, with their WAL receiver streaming, take turns. A replica that fails to hand out a connection is
+// taken out until the next check and the read falls back to the primary.
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    static final String PRIMARY = "primary";
+
+    // The lag is 0 on a primary and on a replica that has replayed everything it received,
+    // otherwise the age of the last replayed transaction (an idle primary does not make the
+    // replica lag). Equal LSNs prove nothing once the WAL receiver is gone, since nothing new
+    // arrives, so the second column is how long the receiver has been silent: NULL when it is
+    // not streaming. Reading pg_stat_wal_receiver takes pg_read_all_stats, without it every
+    // replica looks disconnected.
+    private static final String LAG_SQL = """
+            SELECT CASE
+                       WHEN NOT pg_is_in_recovery() THEN 0
+                       WHEN receiver.silence IS NOT NULL
+                            AND pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                       ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0)
+                   END,
+                   CASE WHEN pg_is_in_recovery() THEN receiver.silence ELSE 0 END
+            FROM (SELECT (SELECT EXTRACT(EPOCH FROM now() - last_msg_receipt_time)
+                          FROM pg_stat_wal_receiver
+                          WHERE status = 'streaming') AS silence) AS receiver
+            """;
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final Duration maxLag;
+    private final Duration checkInterval;
+    private final Duration receiverTimeout;
+    private final Map<String, Counter> connections = new HashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "replica-health-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                    Duration maxLag, Duration checkInterval, Duration receiverTimeout,
+                                    MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.maxLag = maxLag;
+        this.checkInterval = checkInterval;
+        this.receiverTimeout = receiverTimeout;
+
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+
+        connections.put(PRIMARY, connectionCounter(PRIMARY, meterRegistry));
+        replicas.forEach((name, dataSource) -> {
+            Replica replica = new Replica(name, dataSource);
+            this.replicas.add(replica);
+            connections.put(name, connectionCounter(name, meterRegistry));
+            Gauge.builder("customer.replica.lag", replica, r -> r.lagSeconds)
+                    .baseUnit("seconds")
+                    .tag("pool", name)
+                    .register(meterRegistry);
+            Gauge.builder("customer.replica.available", replica, r -> r.available ? 1 : 0)
+                    .tag("pool", name)
+                    .register(meterRegistry);
+        });
+    }
+
+    private static Counter connectionCounter(String pool, MeterRegistry meterRegistry) {
+        return Counter.builder("customer.datasource.connections")
+                .description("connections handed out, by pool")
+                .tag("pool", pool)
+                .register(meterRegistry);
+    }
+
+    // replicas stay out of rotation until they have passed a first check
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        checkReplicas();
+        checker.scheduleWithFixedDelay(this::checkReplicas,
+                checkInterval.toMillis(), checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Replica replica = selectReplica();
+        return replica == null ? PRIMARY : replica.name;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = selectReplica();
+        if (replica != null) {
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                connections.get(replica.name).increment();
+                return connection;
+            } catch (SQLException e) {
+                replica.available = false;
+                log.warn("replica {} is unavailable, reading from the primary until the next check", replica.name, e);
+            }
+        }
+        Connection connection = primary.getConnection();
+        connections.get(PRIMARY).increment();
+        return connection;
+    }
+
+    private Replica selectReplica() {
+        if (!ReplicaRouting.routeToReplica()) {
+            return null;
+        }
+        // a read inside a read-write transaction must see that transaction's writes
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return null;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.available) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout((int) Math.max(1, checkInterval.toSeconds()));
+                boolean receiving;
+                try (ResultSet rs = statement.executeQuery(LAG_SQL)) {
+                    rs.next();
+                    replica.lagSeconds = rs.getDouble(1);
+                    double silenceSeconds = rs.getDouble(2);
+                    receiving = !rs.wasNull() && silenceSeconds <= receiverTimeout.toMillis() / 1000.0;
+                }
+                boolean available = receiving && replica.lagSeconds <= maxLag.toMillis() / 1000.0;
+                if (available != replica.available) {
+                    log.info("replica {} {} rotation, lag {}s, WAL receiver {}", replica.name,
+                            available ? "back in" : "out of", replica.lagSeconds, receiving ? "streaming" : "down");
+                }
+                replica.available = available;
+            } catch (SQLException | RuntimeException e) {
+                if (replica.available) {
+                    log.warn("replica {} failed its health check", replica.name, e);
+                }
+                replica.available = false;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        checker.shutdownNow();
+        for (Object target : getResolvedDataSources().values()) {
+            if (target instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean available;
+        private volatile double lagSeconds;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.amigoscode.config;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+// One migrated pool per customer shard, keyed by shard name in configuration order.
+// The names place the shards on the hash ring, so they must stay stable.
+public record ShardDataSources(Map<String, DataSource> shards) implements Closeable {
+
+    @Override
+    public void close() throws IOException {
+        for (DataSource shard : shards.values()) {
+            if (shard instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.amigoscode.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Opt-in: customer.sharding.enabled=true with customer.sharding.shards listing one JDBC url
+// per shard (separate instances, or schemas of one database via ?currentSchema=). Shard pools
+// are configured like spring.datasource.* and overridable under customer.sharding.hikari.
+// The main database keeps the customer directory that hands out ids and owns email uniqueness.
+@Configuration
+@ConditionalOnProperty(name = "customer.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean
+    public ShardDataSources shardDataSources(DataSourceProperties properties,
+                                             Environment environment,
+                                             DataSource dataSource,
+                                             MeterRegistry meterRegistry) {
+        // own history table, the main database is already migrated from db/migration
+        FlywayConfig.sessionLock(Flyway.configure())
+                .dataSource(dataSource)
+                .locations("classpath:db/sharding")
+                .table("flyway_sharding_history")
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+
+        Binder binder = Binder.get(environment);
+        List<String> urls = binder.bind("customer.sharding.shards", Bindable.listOf(String.class))
+                .orElseThrow(() -> new IllegalStateException(
+                        "customer.sharding.enabled requires customer.sharding.shards"));
+        HikariDataSource template = HikariPools.fromSpringDataSource(properties, binder, "shard", meterRegistry);
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource shard = HikariPools.copyOf(template, "shard-" + (i + 1), urls.get(i),
+                    binder, "customer.sharding.hikari");
+            FluentConfiguration flyway = FlywayConfig.sessionLock(Flyway.configure())
+                    .dataSource(shard)
+                    .locations("classpath:db/migration");
+            // ?currentSchema=shard_1,public keeps a shard in its own schema of a shared database,
+            // created here; public stays on the search path for extensions such as pg_trgm
+            String schema = UriComponentsBuilder.fromUriString(shard.getJdbcUrl().substring("jdbc:".length()))
+                    .build()
+                    .getQueryParams()
+                    .getFirst("currentSchema");
+            if (schema != null) {
+                flyway.schemas(schema.split(",")[0].trim());
+            }
+            flyway.load().migrate();
+            shards.put(shard.getPoolName(), HikariPools.limited(shard, binder));
+        }
+        return new ShardDataSources(shards);
+    }
+}
@@ -0,0 +1,64 @@
+package com.amigoscode.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Opt-in: customer.virtual-threads.enabled=true on a Java 21 runtime. Tomcat request
+// handling, async MVC work (streamed listings) and therefore every blocking JdbcTemplate
+// call made from them run on virtual threads, queued by a semaphore in front of Hikari.
+@Configuration
+@ConditionalOnProperty(name = "customer.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    static final String ENABLED = "customer.virtual-threads.enabled";
+
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor(ObjectProvider<TaskDecorator> taskDecorator) {
+        TaskExecutorAdapter executor = new TaskExecutorAdapter(newVirtualThreadPerTaskExecutor());
+        taskDecorator.ifUnique(executor::setTaskDecorator);
+        return executor;
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(AsyncTaskExecutor applicationTaskExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(applicationTaskExecutor);
+    }
+
+    // Boot's single pool; ReplicaRoutingConfig and ShardingConfig put a limit in front of
+    // each pool they build themselves (HikariPools.limited), the routing DataSource is left alone
+    @Bean
+    public static BeanPostProcessor concurrencyLimitingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource pool) {
+                    return ConcurrencyLimitingDataSource.forPool(pool);
+                }
+                return bean;
+            }
+        };
+    }
+
+    // compiled for Java 17, so the Java 21 factory method is looked up at runtime
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("customer.virtual-threads.enabled requires a Java 21+ runtime, running on %s"
+                    .formatted(Runtime.version()), e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.amigoscode.customer;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// Each node owns virtualNodes points on a 64 bit ring placed by its name, a key belongs
+// to the first point at or after its hash. Adding a node to N moves about 1/(N+1) of the
+// keys, all of them onto the new node, instead of reshuffling nearly everything as id % N would.
+final class ConsistentHashRing<T> {
+
+    private final NavigableMap<Long, T> ring = new TreeMap<>();
+    private final List<T> nodes;
+
+    ConsistentHashRing(Map<String, T> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("a hash ring needs at least one node");
+        }
+        this.nodes = List.copyOf(nodes.values());
+        nodes.forEach((name, node) -> {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(mix(((long) name.hashCode() << 32) | i), node);
+            }
+        });
+    }
+
+    T nodeFor(long key) {
+        Map.Entry<Long, T> owner = ring.ceilingEntry(mix(key));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();
+    }
+
+    Collection<T> nodes() {
+        return nodes;
+    }
+
+    // SplitMix64 finalizer: sequential ids end up spread evenly around the ring
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+}
@@ -1,13 +1,17 @@
 package com.amigoscode.customer;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@JsonFilter(CustomerField.FILTER)
 @Entity
 @Table(name = "customer",
         uniqueConstraints = {
@@ -31,10 +35,44 @@ public class Customer {
     private String email;
     @Column(nullable = false)
     private Integer age;
+    // bumped by every write, exposed to clients only as the ETag
+    @Version
+    @Column(nullable = false)
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Long version;
+
+    public Customer(Integer id, String name, String email, Integer age) {
+        this.id = id;
+        this.name = name;
+        this.email = email;
+        this.age = age;
+    }
 
     public Customer(String name, String email, Integer age) {
         this.name = name;
         this.email = email;
         this.age = age;
     }
+
+    Customer copy() {
+        return new Customer(id, name, email, age, version);
+    }
+
+    boolean applyChanges(Customer update) {
+        boolean changes = false;
+        if (update.getName() != null && !update.getName().equals(name)) {
+            name = update.getName();
+            changes = true;
+        }
+        if (update.getEmail() != null && !update.getEmail().equals(email)) {
+            email = update.getEmail();
+            changes = true;
+        }
+        if (update.getAge() != null && !update.getAge().equals(age)) {
+            age = update.getAge();
+            changes = true;
+        }
+        return changes;
+    }
 }
@@ -0,0 +1,160 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.config.ReplicaRouting;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.observation.annotation.Observed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Read-through cache for lookups by id. Entries are dropped after every write
+// that goes through this node; writes made elsewhere are bounded by the TTL.
+@Repository("cached")
+@Observed(name = "customer.dao")
+public class CustomerCachingDataAccessService implements CustomerDao {
+
+    private final CustomerDao delegate;
+    private final Cache<Integer, Customer> cache;
+
+    // customer.dao names the store behind the cache (jdbc, jpa or memory); sharded storage
+    // (customer.sharding.enabled) takes the place of the single database
+    public CustomerCachingDataAccessService(Map<String, CustomerDao> daos,
+                                            @Value("${customer.dao:jdbc}") String dao,
+                                            @Value("${customer.cache.maximum-size:10000}") long maximumSize,
+                                            @Value("${customer.cache.ttl:5m}") Duration ttl,
+                                            MeterRegistry meterRegistry) {
+        this.delegate = daos.containsKey("sharded") ? daos.get("sharded") : daos.get(dao);
+        if (delegate == null) {
+            throw new IllegalStateException("customer.dao must be one of jdbc, jpa, memory, not " + dao);
+        }
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "customers");
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(Integer afterId, int limit, Set<CustomerField> fields) {
+        return delegate.selectCustomers(afterId, limit, fields);
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria, CustomerSearchCursor after, int limit,
+                                          Set<CustomerField> fields) {
+        return delegate.searchCustomers(criteria, after, limit, fields);
+    }
+
+    @Override
+    public void streamAllCustomers(Set<CustomerField> fields, Consumer<Customer> consumer) {
+        delegate.streamAllCustomers(fields, consumer);
+    }
+
+    @Override
+    public void streamCustomers(Integer afterId, Integer toId, Set<CustomerField> fields, Consumer<Customer> consumer) {
+        delegate.streamCustomers(afterId, toId, fields, consumer);
+    }
+
+    // missing customers are not cached, so a concurrent insert can never be hidden. Misses are
+    // loaded from the primary, a row read from a lagging replica would stay stale for the whole TTL.
+    // Callers get a copy, Customer is mutable and the cached one is shared by every reader
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return Optional.ofNullable(cache.get(id,
+                        key -> ReplicaRouting.onPrimary(() -> delegate.selectCustomerById(key)).orElse(null)))
+                .map(Customer::copy);
+    }
+
+    // answered from the cache when possible, which is what lets a conditional GET
+    // come back 304 without touching the database
+    @Override
+    public Optional<Long> selectCustomerVersion(Integer id) {
+        Customer cached = cache.getIfPresent(id);
+        return cached != null ? Optional.of(cached.getVersion()) : delegate.selectCustomerVersion(id);
+    }
+
+    // not part of the cached Customer, so nothing to invalidate
+    @Override
+    public Optional<String> selectProfileImageId(Integer id) {
+        return delegate.selectProfileImageId(id);
+    }
+
+    @Override
+    public boolean updateProfileImageId(Integer id, String expected, String replacement) {
+        return delegate.updateProfileImageId(id, expected, replacement);
+    }
+
+    // a new id has never been looked up successfully, and misses are not cached
+    @Override
+    public void insertCustomer(Customer customer) {
+        delegate.insertCustomer(customer);
+    }
+
+    @Override
+    public Map<String, Integer> insertCustomers(List<Customer> customers) {
+        return delegate.insertCustomers(customers);
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return delegate.existsCustomerWithEmail(email);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer id) {
+        return delegate.existsCustomerWithId(id);
+    }
+
+    @Override
+    public void deleteCustomerById(Integer customerId) {
+        try {
+            delegate.deleteCustomerById(customerId);
+        } finally {
+            cache.invalidate(customerId);
+        }
+    }
+
+    @Override
+    public boolean deleteCustomerByIdAndVersion(Integer customerId, long expectedVersion) {
+        try {
+            return delegate.deleteCustomerByIdAndVersion(customerId, expectedVersion);
+        } finally {
+            cache.invalidate(customerId);
+        }
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update) {
+        try {
+            return delegate.updateCustomer(update);
+        } finally {
+            cache.invalidate(update.getId());
+        }
+    }
+
+    @Override
+    public List<CustomerChange> selectChanges(String since, int limit) {
+        return delegate.selectChanges(since, limit);
+    }
+
+    @Override
+    public int deleteChangesBefore(Instant cutoff, int limit) {
+        return delegate.deleteChangesBefore(cutoff, limit);
+    }
+}
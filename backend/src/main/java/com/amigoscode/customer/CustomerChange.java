@@ -0,0 +1,15 @@
+package com.amigoscode.customer;
+
+// One entry of the change feed; token resumes the feed right after it. An upsert carries
+// the customer as it is now rather than as it was written, a customer deleted since then
+// is reported as deleted, with the id only.
+public record CustomerChange(String token, Integer customerId, boolean deleted, Customer customer) {
+
+    static CustomerChange upsert(String token, Customer customer) {
+        return new CustomerChange(token, customer.getId(), false, customer);
+    }
+
+    static CustomerChange tombstone(String token, Integer customerId) {
+        return new CustomerChange(token, customerId, true, null);
+    }
+}
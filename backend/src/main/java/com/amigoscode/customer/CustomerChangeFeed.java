@@ -0,0 +1,224 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.ResourceGoneException;
+import com.amigoscode.exception.ServiceUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Server-Sent Events on top of the change log. One poller reads the log every poll-interval,
+// once per position subscribers are at rather than once per subscriber: everyone caught up
+// shares the same token, so a thousand idle streams cost one query. Each change goes out as
+// one event with the token as its id, so EventSource reconnects resume through Last-Event-ID.
+// Idle streams get a comment now and then to keep proxies from closing them.
+@Component
+@Slf4j
+public class CustomerChangeFeed implements DisposableBean {
+
+    private static final int BATCH_SIZE = 500;
+    private static final long HEARTBEAT_NANOS = TimeUnit.SECONDS.toNanos(15);
+    // a slow client blocks the thread sending to it, the others keep going
+    private static final int SENDER_THREADS = 4;
+    // events read for a client that has not taken them yet; past this it is let go and
+    // catches up from its last id on reconnect, instead of the feed buffering the log for it
+    private static final int MAX_PENDING = 10 * BATCH_SIZE;
+    // queued like a change, sent as a comment
+    private static final CustomerChange HEARTBEAT = new CustomerChange(null, null, false, null);
+
+    private final CustomerService customerService;
+    private final int maxSubscribers;
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "customer-change-feed-poller");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService senders;
+
+    public CustomerChangeFeed(CustomerService customerService,
+                              @Value("${customer.changes.poll-interval:1s}") Duration pollInterval,
+                              @Value("${customer.changes.max-subscribers:1000}") int maxSubscribers) {
+        this.customerService = customerService;
+        this.maxSubscribers = maxSubscribers;
+        AtomicInteger threads = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(SENDER_THREADS, task -> {
+            Thread thread = new Thread(task, "customer-change-feed-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::poll, pollInterval.toMillis(), pollInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    // the first batch is read here, so a bad token is rejected before the stream opens.
+    // It is buffered until the emitter is handed to Spring MVC, the rest is left to the poller
+    public SseEmitter subscribe(String since) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            throw new ServiceUnavailableException("too many change feed subscribers, retry later");
+        }
+        Subscription subscription = new Subscription(since);
+        try {
+            List<CustomerChange> changes = customerService.getChanges(since, BATCH_SIZE).changes();
+            for (CustomerChange change : changes) {
+                subscription.emitter.send(event(change));
+                subscription.position = change.token();
+            }
+        } catch (IOException | RuntimeException e) {
+            subscribers.decrementAndGet();
+            throw e instanceof IOException io ? new UncheckedIOException(io) : (RuntimeException) e;
+        }
+        subscription.start();
+        return subscription.emitter;
+    }
+
+    @Override
+    public void destroy() {
+        poller.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    // subscribers that have read up to the same token share one read of what follows it
+    void poll() {
+        Map<String, List<Subscription>> byPosition = new HashMap<>();
+        for (Subscription subscription : subscriptions) {
+            byPosition.computeIfAbsent(subscription.position, position -> new ArrayList<>()).add(subscription);
+        }
+        byPosition.forEach(this::fanOut);
+        long now = System.nanoTime();
+        for (Subscription subscription : subscriptions) {
+            if (now - subscription.lastQueued > HEARTBEAT_NANOS) {
+                subscription.offer(List.of(HEARTBEAT), subscription.position);
+            }
+        }
+    }
+
+    private void fanOut(String position, List<Subscription> following) {
+        try {
+            List<CustomerChange> changes;
+            do {
+                changes = customerService.getChanges(position, BATCH_SIZE).changes();
+                if (changes.isEmpty()) {
+                    return;
+                }
+                position = changes.get(changes.size() - 1).token();
+                for (Subscription subscription : following) {
+                    subscription.offer(changes, position);
+                }
+                // caught up once a batch comes back short
+            } while (changes.size() == BATCH_SIZE);
+        } catch (ResourceGoneException e) {
+            // fell behind the retained log, a reconnect from its last id answers 410
+            following.forEach(subscription -> subscription.end(e));
+        } catch (RuntimeException e) {
+            // a database hiccup: keep the streams and try again on the next poll
+            log.warn("change feed poll failed", e);
+        }
+    }
+
+    // built per subscriber, sending an SseEventBuilder appends to it
+    private static SseEventBuilder event(CustomerChange change) {
+        if (change == HEARTBEAT) {
+            return SseEmitter.event().comment("heartbeat");
+        }
+        return SseEmitter.event()
+                .id(change.token())
+                .name(change.deleted() ? "delete" : "upsert")
+                .data(change);
+    }
+
+    private final class Subscription {
+
+        // times out after spring.mvc.async.request-timeout, clients reconnect from their last id
+        private final SseEmitter emitter = new SseEmitter();
+        private final Queue<CustomerChange> pending = new ArrayDeque<>();
+        // the token of the last change read for this subscriber, only the poller moves it on
+        private volatile String position;
+        private volatile long lastQueued = System.nanoTime();
+        private boolean sending;
+        private boolean stopped;
+
+        private Subscription(String since) {
+            this.position = since;
+        }
+
+        private void start() {
+            emitter.onCompletion(this::stop);
+            emitter.onTimeout(this::stop);
+            emitter.onError(error -> stop());
+            subscriptions.add(this);
+        }
+
+        // queued in order and sent by one sender at a time, so events never overtake each other
+        private synchronized void offer(List<CustomerChange> changes, String position) {
+            if (stopped) {
+                return;
+            }
+            if (pending.size() + changes.size() > MAX_PENDING) {
+                emitter.complete();
+                stop();
+                return;
+            }
+            pending.addAll(changes);
+            this.position = position;
+            lastQueued = System.nanoTime();
+            if (!sending) {
+                sending = true;
+                senders.execute(this::send);
+            }
+        }
+
+        private void send() {
+            for (CustomerChange change = next(); change != null; change = next()) {
+                try {
+                    emitter.send(event(change));
+                } catch (IOException e) {
+                    // the client has gone away
+                    end(e);
+                }
+            }
+        }
+
+        private synchronized CustomerChange next() {
+            CustomerChange change = stopped ? null : pending.poll();
+            sending = change != null;
+            return change;
+        }
+
+        private void end(Exception e) {
+            emitter.completeWithError(e);
+            stop();
+        }
+
+        // called once per way the stream can end, only the first one counts
+        private synchronized void stop() {
+            if (!stopped) {
+                stopped = true;
+                pending.clear();
+                subscriptions.remove(this);
+                subscribers.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.amigoscode.customer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Keeps the change log to customer.changes.retention. Every prune-interval entries older
+// than that are deleted a batch at a time, so no single DELETE holds on to a large part of
+// the log. A consumer further behind than the retention is answered with 410 Gone rather
+// than silently resumed past what was deleted; see CustomerController.getChanges for the way
+// back in.
+@Component
+@Slf4j
+public class CustomerChangeLogRetention implements DisposableBean {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    private final CustomerDao customerDao;
+    private final Duration retention;
+    private final ScheduledExecutorService pruner = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "customer-change-log-retention");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CustomerChangeLogRetention(@Qualifier("cached") CustomerDao customerDao,
+                                      @Value("${customer.changes.retention:7d}") Duration retention,
+                                      @Value("${customer.changes.prune-interval:1h}") Duration pruneInterval) {
+        this.customerDao = customerDao;
+        this.retention = retention;
+        pruner.scheduleWithFixedDelay(this::prune,
+                pruneInterval.toMillis(), pruneInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // returns how many entries went
+    long prune(Instant now) {
+        Instant cutoff = now.minus(retention);
+        long deleted = 0;
+        for (int batch = customerDao.deleteChangesBefore(cutoff, BATCH_SIZE); batch > 0;
+             batch = customerDao.deleteChangesBefore(cutoff, BATCH_SIZE)) {
+            deleted += batch;
+        }
+        return deleted;
+    }
+
+    private void prune() {
+        try {
+            long deleted = prune(Instant.now());
+            if (deleted > 0) {
+                log.info("deleted {} change log entries older than {}", deleted, retention);
+            }
+        } catch (RuntimeException e) {
+            // the next run tries again, the log only grows until then
+            log.warn("pruning the change log failed", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        pruner.shutdownNow();
+    }
+}
@@ -0,0 +1,7 @@
+package com.amigoscode.customer;
+
+import java.util.List;
+
+// next is the since for the following request, also when there were no changes
+public record CustomerChangePage(List<CustomerChange> changes, String next) {
+}
@@ -0,0 +1,48 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+import com.amigoscode.exception.ResourceGoneException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Position in one change log: the writing transaction and the log sequence within it
+// (tx is always 0 for the in-memory log). Opaque to clients, like CustomerSearchCursor.
+record CustomerChangeToken(long tx, long seq) {
+
+    static final CustomerChangeToken START = new CustomerChangeToken(0, 0);
+
+    private static final String SEPARATOR = ".";
+
+    String encode() {
+        String value = tx + SEPARATOR + seq;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // null is the start of the log
+    static CustomerChangeToken decode(String token) {
+        if (token == null) {
+            return START;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+                    .split("\\" + SEPARATOR, -1);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException(token);
+            }
+            return new CustomerChangeToken(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException e) {
+            throw invalid();
+        }
+    }
+
+    static RequestValidationException invalid() {
+        return new RequestValidationException("invalid change token");
+    }
+
+    // the token's position has been pruned by CustomerChangeLogRetention
+    static ResourceGoneException expired() {
+        return new ResourceGoneException("change token is older than the retained change log, "
+                + "read the customers again and follow the changes from the start of the log");
+    }
+}
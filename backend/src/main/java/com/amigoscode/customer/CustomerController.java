@@ -1,9 +1,35 @@
 package com.amigoscode.customer;
 
+import com.amigoscode.exception.PreconditionFailedException;
+import com.amigoscode.exception.ResourceNotFoundException;
+import com.amigoscode.storage.StoredObject;
+import com.amigoscode.storage.StoredObjectResponses;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @RestController
 @RequiredArgsConstructor
@@ -11,15 +37,149 @@ import java.util.List;
 public class CustomerController {
 
     private final CustomerService customerService;
+    private final CustomerImportParser customerImportParser;
+    private final CustomerFormats customerFormats;
+    private final CustomerChangeFeed customerChangeFeed;
+    private final ProfileImageThumbnails profileImageThumbnails;
 
-    @GetMapping
-    public List<Customer> getCustomers() {
-        return customerService.getAllCustomers();
+    // ?fields=id,name narrows the select list as well as what is written for every customer.
+    // Streamed, so the body bypasses the message converters and negotiates its format here.
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            CustomerFormats.SMILE_VALUE, CustomerProtobuf.MEDIA_TYPE_VALUE})
+    public ResponseEntity<StreamingResponseBody> getCustomers(@RequestParam(value = "fields", required = false) String fields,
+                                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        Set<CustomerField> selected = CustomerField.parse(fields);
+        MediaType mediaType = customerFormats.negotiate(accept);
+        StreamingResponseBody body = outputStream -> {
+            try (CustomerFormats.CustomerWriter writer = customerFormats.openWriter(mediaType, outputStream, selected)) {
+                customerService.streamAllCustomers(selected, customer -> {
+                    try {
+                        writer.write(customer);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(body);
     }
 
+    // The whole table, or the ids in (after, to], in id order as CSV or Parquet, gzipped unless
+    // compression=none. Rows are read through a server-side cursor and encoded as they arrive,
+    // so memory stays flat however large the table. A broken-off CSV download resumes with
+    // after= the last id it holds; Parquet, whose footer comes last, is best fetched in ranges
+    @GetMapping("export")
+    public ResponseEntity<StreamingResponseBody> exportCustomers(@RequestParam(value = "format", required = false) String format,
+                                                                 @RequestParam(value = "compression", required = false) String compression,
+                                                                 @RequestParam(value = "after", required = false) Integer afterId,
+                                                                 @RequestParam(value = "to", required = false) Integer toId,
+                                                                 @RequestParam(value = "fields", required = false) String fields) {
+        CustomerExportFormat exportFormat = CustomerExportFormat.parse(format);
+        boolean gzip = CustomerExportFormat.parseGzip(compression);
+        Set<CustomerField> exported = CustomerService.exportFields(CustomerField.parse(fields));
+        StreamingResponseBody body = outputStream -> {
+            try (CustomerFormats.CustomerWriter writer = exportFormat.openWriter(outputStream, exported, gzip)) {
+                customerService.exportCustomers(afterId, toId, exported, customer -> {
+                    try {
+                        writer.write(customer);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(exportFormat.mediaType(gzip))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(exportFormat.filename(afterId, toId, gzip))
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
+    // a matching If-None-Match on a ResponseEntity carrying an ETag is answered
+    // with 304 by Spring MVC before the body is serialized. The format is negotiated
+    // here, as in getCustomer, so the ETag can name it
+    @GetMapping(params = "limit")
+    public ResponseEntity<CustomerFieldsValue> getCustomers(@RequestParam(value = "after", required = false) Integer afterId,
+                                                            @RequestParam("limit") int limit,
+                                                            @RequestParam(value = "fields", required = false) String fields,
+                                                            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        Set<CustomerField> selected = CustomerField.parse(fields);
+        MediaType mediaType = customerFormats.negotiate(accept);
+        List<Customer> customers = customerService.getCustomers(afterId, limit, selected);
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .eTag(pageETag(customers, mediaType, selected))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(new CustomerFieldsValue(customers, selected));
+    }
+
+    @GetMapping("search")
+    public ResponseEntity<CustomerFieldsValue> searchCustomers(@RequestParam(value = "name", required = false) String name,
+                                        @RequestParam(value = "namePrefix", required = false) String namePrefix,
+                                        @RequestParam(value = "emailDomain", required = false) String emailDomain,
+                                        @RequestParam(value = "minAge", required = false) Integer minAge,
+                                        @RequestParam(value = "maxAge", required = false) Integer maxAge,
+                                        @RequestParam(value = "sort", required = false) String sort,
+                                        @RequestParam(value = "cursor", required = false) String cursor,
+                                        @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                        @RequestParam(value = "fields", required = false) String fields,
+                                        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        Set<CustomerField> selected = CustomerField.parse(fields);
+        MediaType mediaType = customerFormats.negotiate(accept);
+        CustomerPage page = customerService.searchCustomers(
+                new CustomerSearchCriteria(name, namePrefix, emailDomain, minAge, maxAge, CustomerSort.parse(sort)),
+                cursor,
+                limit,
+                selected);
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .eTag(pageETag(page.customers(), mediaType, selected))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(new CustomerFieldsValue(page, selected));
+    }
+
+    // poll with the next token of the previous response. Without since the feed starts at the oldest
+    // entry still kept, not at a full copy: the V6 backfill ages out with customer.changes.retention
+    // like everything else. A token older than that is answered with 410; start over by paging
+    // from no token to the end, then reading all customers, then following from that token
+    @GetMapping("changes")
+    public CustomerChangePage getChanges(@RequestParam(value = "since", required = false) String since,
+                                         @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        return customerService.getChanges(since, limit);
+    }
+
+    // an EventSource reconnecting sends the id of the last event it received as Last-Event-ID
+    @GetMapping(value = "changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(value = "since", required = false) String since,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return customerChangeFeed.subscribe(lastEventId != null ? lastEventId : since);
+    }
+
+    // If-None-Match is checked against the version (served from the customer cache when
+    // present) before the row itself is read. The format is negotiated here rather than by
+    // the converters, so the ETag can name it along with the fields
     @GetMapping("{customerId}")
-    public Customer getCustomer(@PathVariable("customerId") Integer customerId) {
-        return customerService.getCustomer(customerId);
+    public ResponseEntity<CustomerFieldsValue> getCustomer(@PathVariable("customerId") Integer customerId,
+                                                           @RequestParam(value = "fields", required = false) String fields,
+                                                           @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                           WebRequest request) {
+        Set<CustomerField> selected = CustomerField.parse(fields);
+        MediaType mediaType = customerFormats.negotiate(accept);
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && request.checkNotModified(eTag(customerService.getCustomerVersion(customerId), mediaType, selected))) {
+            return null;
+        }
+        Customer customer = customerService.getCustomer(customerId);
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .eTag(eTag(customer.getVersion(), mediaType, selected))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(new CustomerFieldsValue(customer, selected));
     }
 
     @PostMapping
@@ -27,14 +187,141 @@ public class CustomerController {
         customerService.addCustomer(request);
     }
 
+    @PostMapping(value = "import", consumes = "application/x-ndjson")
+    public CustomerImportResult importCustomersFromNdjson(InputStream body) {
+        try (Stream<CustomerImportRow> rows = customerImportParser.ndjson(body)) {
+            return customerService.importCustomers(rows);
+        }
+    }
+
+    @PostMapping(value = "import", consumes = "text/csv")
+    public CustomerImportResult importCustomersFromCsv(InputStream body) {
+        try (Stream<CustomerImportRow> rows = customerImportParser.csv(body)) {
+            return customerService.importCustomers(rows);
+        }
+    }
+
     @DeleteMapping("{customerId}")
-    public void deleteCustomer(@PathVariable("customerId") Integer customerId) {
-        customerService.deleteCustomerById(customerId);
+    public void deleteCustomer(@PathVariable("customerId") Integer customerId,
+                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        customerService.deleteCustomerById(customerId, expectedVersion(ifMatch));
     }
 
     @PutMapping("{customerId}")
-    public void updateCustomer(@PathVariable Integer customerId,
-                               @RequestBody CustomerRegistrationRequest request) {
-        customerService.updateCustomer(customerId, request);
+    public ResponseEntity<Void> updateCustomer(@PathVariable Integer customerId,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                               @RequestBody CustomerRegistrationRequest request) {
+        Customer updated = customerService.updateCustomer(customerId, request, expectedVersion(ifMatch));
+        return ResponseEntity.ok()
+                .eTag(eTag(updated.getVersion()))
+                .build();
+    }
+
+    // the raw request body, streamed to the object store: no multipart parsing and no
+    // copy of the image in the heap. Answers with the image's own url; the thumbnails
+    // are queued to be made in the background
+    @PutMapping(value = "{customerId}/profile-image",
+            consumes = {MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_GIF_VALUE, "image/webp"})
+    public ResponseEntity<Void> putProfileImage(@PathVariable("customerId") Integer customerId, InputStream body) {
+        String imageId = customerService.putProfileImage(customerId, body);
+        try {
+            profileImageThumbnails.pregenerate(imageId, customerService.getProfileImage(customerId, imageId));
+        } catch (ResourceNotFoundException replacedAlready) {
+            // a concurrent upload won, its thumbnails are its own business
+        }
+        return ResponseEntity.created(profileImageUri(customerId, imageId)).build();
+    }
+
+    // a stable address that redirects to the current image, revalidated on every use
+    @GetMapping("{customerId}/profile-image")
+    public ResponseEntity<Void> redirectToProfileImage(@PathVariable("customerId") Integer customerId) {
+        String imageId = customerService.getProfileImageId(customerId);
+        return ResponseEntity.status(HttpStatus.FOUND)
+                .location(profileImageUri(customerId, imageId))
+                .cacheControl(CacheControl.noCache())
+                .build();
+    }
+
+    // every upload gets a new image id, so the bytes behind this url never change and
+    // clients and CDNs may keep them for a year. ?size=64 (or another configured size)
+    // answers with a thumbnail no larger than that on either side
+    @GetMapping("{customerId}/profile-image/{imageId}")
+    public void downloadProfileImage(@PathVariable("customerId") Integer customerId,
+                                     @PathVariable("imageId") String imageId,
+                                     @RequestParam(value = "size", required = false) Integer size,
+                                     HttpServletRequest request,
+                                     HttpServletResponse response) throws IOException {
+        StoredObject original = customerService.getProfileImage(customerId, imageId);
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+        if (size == null) {
+            StoredObjectResponses.write(original, "\"" + imageId + "\"", cacheControl, request, response);
+            return;
+        }
+        try (StoredObject thumbnail = profileImageThumbnails.thumbnail(imageId, original, size)) {
+            StoredObjectResponses.write(thumbnail, "\"" + imageId + "-" + size + "\"", cacheControl, request, response);
+        }
+    }
+
+    @DeleteMapping("{customerId}/profile-image")
+    public void deleteProfileImage(@PathVariable("customerId") Integer customerId) {
+        customerService.deleteProfileImage(customerId);
+    }
+
+    private static URI profileImageUri(Integer customerId, String imageId) {
+        return ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/v1/customers/{customerId}/profile-image/{imageId}")
+                .buildAndExpand(customerId, imageId)
+                .toUri();
+    }
+
+    private static String eTag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    // strong, so every encoding and projection of a version needs its own: "3" for the
+    // whole customer as JSON, "3-cbor", "3-id.name", "3-x-protobuf-id.name" and so on
+    static String eTag(long version, MediaType mediaType, Set<CustomerField> fields) {
+        return "\"" + version + representation(mediaType, fields) + "\"";
+    }
+
+    // weak: identifies the ids and versions on the page, not the exact bytes sent, with
+    // the same suffix as a single customer's tag so every encoding and projection differs
+    static String pageETag(List<Customer> customers, MediaType mediaType, Set<CustomerField> fields) {
+        ByteBuffer buffer = ByteBuffer.allocate(customers.size() * (Integer.BYTES + Long.BYTES));
+        for (Customer customer : customers) {
+            buffer.putInt(customer.getId()).putLong(customer.getVersion());
+        }
+        return "W/\"" + DigestUtils.md5DigestAsHex(buffer.array()) + representation(mediaType, fields) + "\"";
+    }
+
+    // nothing for the whole customer as JSON
+    private static String representation(MediaType mediaType, Set<CustomerField> fields) {
+        StringBuilder suffix = new StringBuilder();
+        if (!mediaType.equals(MediaType.APPLICATION_JSON)) {
+            suffix.append('-').append(mediaType.getSubtype());
+        }
+        if (!fields.equals(CustomerField.ALL)) {
+            suffix.append('-').append(fields.stream().map(CustomerField::column).collect(Collectors.joining(".")));
+        }
+        return suffix.toString();
+    }
+
+    // If-Match uses strong comparison, so anything but "*" or one of our own
+    // version tags can never match. Any representation's tag names its version first
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            String value = tag.substring(1, tag.length() - 1);
+            int suffix = value.indexOf('-');
+            try {
+                return Long.valueOf(suffix < 0 ? value : value.substring(0, suffix));
+            } catch (NumberFormatException e) {
+                // not one of ours
+            }
+        }
+        throw new PreconditionFailedException("If-Match %s does not match the current version".formatted(ifMatch));
     }
 }
@@ -0,0 +1,66 @@
+package com.amigoscode.customer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+// RFC 4180: a header line of column names, then a line per customer. Values holding a
+// comma, a quote or a line break are quoted; CustomerImportParser reads the file back.
+final class CustomerCsvWriter implements CustomerFormats.CustomerWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer out;
+    private final List<CustomerField> fields;
+
+    CustomerCsvWriter(OutputStream outputStream, Set<CustomerField> fields) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.fields = List.copyOf(fields);
+        for (int i = 0; i < this.fields.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(this.fields.get(i).column());
+        }
+        out.write("\r\n");
+    }
+
+    @Override
+    public void write(Customer customer) throws IOException {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            Object value = fields.get(i).get(customer);
+            if (value != null) {
+                writeValue(value.toString());
+            }
+        }
+        out.write("\r\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeValue(String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+}
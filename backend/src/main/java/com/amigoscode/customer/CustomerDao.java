@@ -1,22 +1,68 @@
 package com.amigoscode.customer;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface CustomerDao {
 
     List<Customer> selectAllCustomers();
 
+    // fills in at least the given fields plus id and version, the remaining fields may be left null
+    List<Customer> selectCustomers(Integer afterId, int limit, Set<CustomerField> fields);
+
+    // same projection contract as selectCustomers
+    void streamAllCustomers(Set<CustomerField> fields, Consumer<Customer> consumer);
+
+    // the customers with afterId < id <= toId (either null: unbounded) in id order, read without
+    // holding more than a batch in memory. Projected like selectCustomers
+    void streamCustomers(Integer afterId, Integer toId, Set<CustomerField> fields, Consumer<Customer> consumer);
+
+    // keyset paginated: returns up to limit matches ordered by criteria.sort(), starting after the cursor (if any),
+    // projected like selectCustomers
+    List<Customer> searchCustomers(CustomerSearchCriteria criteria, CustomerSearchCursor after, int limit,
+                                   Set<CustomerField> fields);
+
     Optional<Customer> selectCustomerById(Integer id);
 
+    Optional<Long> selectCustomerVersion(Integer id);
+
+    // empty when the customer is missing or has no profile image
+    Optional<String> selectProfileImageId(Integer id);
+
+    // sets the profile image id only while it is still expected (null: no image), without touching
+    // the version or the change log. False when the customer is missing or the image changed since expected was read
+    boolean updateProfileImageId(Integer id, String expected, String replacement);
+
     void insertCustomer(Customer customer);
 
+    // returns the generated id per email; customers whose email already exists are skipped
+    Map<String, Integer> insertCustomers(List<Customer> customers);
+
     boolean existsCustomerWithEmail(String email);
 
     boolean existsCustomerWithId(Integer id);
 
     void deleteCustomerById(Integer customerId);
 
-    void updateCustomer(Customer update);
+    // false when the customer is missing or no longer at expectedVersion
+    boolean deleteCustomerByIdAndVersion(Integer customerId, long expectedVersion);
+
+    // applies the non-null fields and bumps the version; when update.getVersion() is set the row must
+    // still be at that version. Empty when the row is missing, at another version or nothing changed.
+    Optional<Customer> updateCustomer(Customer update);
+
+    // up to limit entries of the change log after the since token (null: from the oldest entry still
+    // kept), oldest first. Every write above but a profile image change is logged, deletes as
+    // tombstones. Throws RequestValidationException for a token this DAO did not issue and
+    // ResourceGoneException for one from before entries deleteChangesBefore removed
+    List<CustomerChange> selectChanges(String since, int limit);
+
+    // removes up to limit change log entries written before cutoff (per shard when sharded) and
+    // returns how many went. Tokens from before the newest of them are rejected from then on
+    int deleteChangesBefore(Instant cutoff, int limit);
 
 }
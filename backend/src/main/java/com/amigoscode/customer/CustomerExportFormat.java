@@ -0,0 +1,81 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+// What GET /customers/export writes. Gzipped CSV is a .csv.gz file; Parquet compresses
+// page by page inside the file, which stays a plain .parquet readers can seek in.
+public enum CustomerExportFormat {
+    CSV("csv", MediaType.parseMediaType("text/csv")),
+    PARQUET("parquet", MediaType.parseMediaType("application/vnd.apache.parquet"));
+
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final String extension;
+    private final MediaType mediaType;
+
+    CustomerExportFormat(String extension, MediaType mediaType) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    // "csv" or "parquet", null or blank is csv
+    public static CustomerExportFormat parse(String format) {
+        if (format == null || format.isBlank()) {
+            return CSV;
+        }
+        return Arrays.stream(values())
+                .filter(value -> value.extension.equals(format.trim()))
+                .findFirst()
+                .orElseThrow(() -> new RequestValidationException("format must be one of %s"
+                        .formatted(Arrays.stream(values()).map(value -> value.extension).collect(Collectors.joining(", ")))));
+    }
+
+    // "gzip" or "none", null or blank is gzip
+    public static boolean parseGzip(String compression) {
+        if (compression == null || compression.isBlank() || compression.trim().equals("gzip")) {
+            return true;
+        }
+        if (compression.trim().equals("none")) {
+            return false;
+        }
+        throw new RequestValidationException("compression must be one of gzip, none");
+    }
+
+    MediaType mediaType(boolean gzip) {
+        return gzip && this == CSV ? GZIP : mediaType;
+    }
+
+    // customers.csv.gz, customers-after-1000-to-2000.parquet and so on
+    String filename(Integer afterId, Integer toId, boolean gzip) {
+        StringBuilder filename = new StringBuilder("customers");
+        if (afterId != null) {
+            filename.append("-after-").append(afterId);
+        }
+        if (toId != null) {
+            filename.append("-to-").append(toId);
+        }
+        filename.append('.').append(extension);
+        if (gzip && this == CSV) {
+            filename.append(".gz");
+        }
+        return filename.toString();
+    }
+
+    CustomerFormats.CustomerWriter openWriter(OutputStream outputStream, Set<CustomerField> fields, boolean gzip)
+            throws IOException {
+        return switch (this) {
+            case CSV -> new CustomerCsvWriter(gzip ? new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE) : outputStream,
+                    fields);
+            case PARQUET -> new CustomerParquetWriter(outputStream, fields, gzip);
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// The customer properties a client can pick with ?fields=. Projections always
+// read id and version as well, keyset paging and ETags depend on them.
+public enum CustomerField {
+    ID("id", Customer::getId, (customer, value) -> customer.setId((Integer) value)),
+    NAME("name", Customer::getName, (customer, value) -> customer.setName((String) value)),
+    EMAIL("email", Customer::getEmail, (customer, value) -> customer.setEmail((String) value)),
+    AGE("age", Customer::getAge, (customer, value) -> customer.setAge((Integer) value));
+
+    public static final Set<CustomerField> ALL = Collections.unmodifiableSet(EnumSet.allOf(CustomerField.class));
+
+    // the @JsonFilter id on Customer
+    static final String FILTER = "customerFields";
+
+    private final String column;
+    private final Function<Customer, Object> getter;
+    private final BiConsumer<Customer, Object> setter;
+
+    CustomerField(String column, Function<Customer, Object> getter, BiConsumer<Customer, Object> setter) {
+        this.column = column;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    // also the JSON property name
+    public String column() {
+        return column;
+    }
+
+    Object get(Customer customer) {
+        return getter.apply(customer);
+    }
+
+    void set(Customer customer, Object value) {
+        setter.accept(customer, value);
+    }
+
+    // "id,name" selects id and name, null or blank selects everything
+    public static Set<CustomerField> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Set<CustomerField> selected = EnumSet.noneOf(CustomerField.class);
+        for (String name : fields.split(",")) {
+            selected.add(Arrays.stream(values())
+                    .filter(field -> field.column.equals(name.trim()))
+                    .findFirst()
+                    .orElseThrow(CustomerField::invalid));
+        }
+        if (selected.isEmpty()) {
+            throw invalid();
+        }
+        return selected;
+    }
+
+    // id and version lead every select list
+    static String columns(Set<CustomerField> fields) {
+        StringBuilder columns = new StringBuilder("id, version");
+        for (CustomerField field : fields) {
+            if (field != ID) {
+                columns.append(", ").append(field.column);
+            }
+        }
+        return columns.toString();
+    }
+
+    public static FilterProvider filters(Set<CustomerField> fields) {
+        return new SimpleFilterProvider().addFilter(FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(
+                fields.stream().map(CustomerField::column).collect(Collectors.toSet())));
+    }
+
+    private static RequestValidationException invalid() {
+        return new RequestValidationException("fields must be a comma separated list of %s"
+                .formatted(Arrays.stream(values()).map(CustomerField::column).collect(Collectors.joining(", "))));
+    }
+}
@@ -0,0 +1,22 @@
+package com.amigoscode.customer;
+
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import java.util.Set;
+
+// A response body restricted to ?fields=. The Jackson converters (JSON, CBOR,
+// Smile) apply the filter, the protobuf converter reads the fields directly.
+public class CustomerFieldsValue extends MappingJacksonValue {
+
+    private final Set<CustomerField> fields;
+
+    public CustomerFieldsValue(Object value, Set<CustomerField> fields) {
+        super(value);
+        this.fields = fields;
+        setFilters(CustomerField.filters(fields));
+    }
+
+    public Set<CustomerField> getFields() {
+        return fields;
+    }
+}
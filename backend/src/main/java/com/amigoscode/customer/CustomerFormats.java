@@ -0,0 +1,110 @@
+package com.amigoscode.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.protobuf.CodedOutputStream;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// The encodings customer responses are offered in. CBOR and Smile are binary
+// JSON (no number formatting or string escaping, Smile also back-references
+// repeated property names), protobuf drops the property names altogether.
+// JSON is listed first so it stays the answer to Accept: */*.
+@Component
+public class CustomerFormats {
+
+    static final String SMILE_VALUE = "application/x-jackson-smile";
+    static final MediaType SMILE = MediaType.parseMediaType(SMILE_VALUE);
+
+    private final Map<MediaType, ObjectMapper> objectMappers = new LinkedHashMap<>();
+    private final List<MediaType> mediaTypes;
+
+    // the binary mappers come from Boot's builder, so they carry the same modules
+    // and the serialize-everything default filter as the JSON one
+    public CustomerFormats(ObjectMapper objectMapper, Jackson2ObjectMapperBuilder builder) {
+        objectMappers.put(MediaType.APPLICATION_JSON, objectMapper);
+        objectMappers.put(MediaType.APPLICATION_CBOR, builder.factory(new CBORFactory()).build());
+        objectMappers.put(SMILE, builder.factory(new SmileFactory()).build());
+        mediaTypes = new ArrayList<>(objectMappers.keySet());
+        mediaTypes.add(CustomerProtobuf.MEDIA_TYPE);
+    }
+
+    // replacements for the CBOR and Smile converters Spring MVC registers on its own
+    // (built from plain mappers), plus protobuf
+    public List<HttpMessageConverter<?>> converters() {
+        return List.of(
+                new MappingJackson2CborHttpMessageConverter(objectMappers.get(MediaType.APPLICATION_CBOR)),
+                new MappingJackson2SmileHttpMessageConverter(objectMappers.get(SMILE)),
+                new CustomerProtobufHttpMessageConverter());
+    }
+
+    // the best of our formats for the Accept header, JSON when there is none
+    MediaType negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> accepted = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        MimeTypeUtils.sortBySpecificity(accepted);
+        for (MediaType acceptable : accepted) {
+            for (MediaType mediaType : mediaTypes) {
+                if (acceptable.isCompatibleWith(mediaType)) {
+                    return mediaType;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    // an array (or a protobuf CustomerList) written one customer at a time
+    CustomerWriter openWriter(MediaType mediaType, OutputStream outputStream, Set<CustomerField> fields)
+            throws IOException {
+        if (mediaType.equals(CustomerProtobuf.MEDIA_TYPE)) {
+            CodedOutputStream output = CodedOutputStream.newInstance(outputStream);
+            return new CustomerWriter() {
+                @Override
+                public void write(Customer customer) throws IOException {
+                    CustomerProtobuf.writeListElement(output, customer, fields);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    output.flush();
+                }
+            };
+        }
+        SequenceWriter sequence = objectMappers.get(mediaType)
+                .writer(CustomerField.filters(fields))
+                .writeValuesAsArray(outputStream);
+        return new CustomerWriter() {
+            @Override
+            public void write(Customer customer) throws IOException {
+                sequence.write(customer);
+            }
+
+            @Override
+            public void close() throws IOException {
+                sequence.close();
+            }
+        };
+    }
+
+    interface CustomerWriter extends Closeable {
+        void write(Customer customer) throws IOException;
+    }
+}
@@ -0,0 +1,6 @@
+package com.amigoscode.customer;
+
+public record CustomerImportError(
+        long line,
+        String reason) {
+}
@@ -0,0 +1,136 @@
+package com.amigoscode.customer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+@Component
+@RequiredArgsConstructor
+public class CustomerImportParser {
+
+    private static final List<String> CSV_COLUMNS = List.of("name", "email", "age");
+
+    private final ObjectMapper objectMapper;
+
+    public Stream<CustomerImportRow> ndjson(InputStream inputStream) {
+        AtomicLong lineNumber = new AtomicLong();
+        return lines(inputStream)
+                .map(line -> {
+                    long number = lineNumber.incrementAndGet();
+                    if (line.isBlank()) {
+                        return null;
+                    }
+                    try {
+                        // a line of null, 42 or [] is well-formed JSON but no customer
+                        JsonNode node = objectMapper.readTree(line);
+                        if (node == null || !node.isObject()) {
+                            return CustomerImportRow.invalid(number, "expected a JSON object");
+                        }
+                        return CustomerImportRow.valid(number,
+                                objectMapper.treeToValue(node, CustomerRegistrationRequest.class));
+                    } catch (JsonProcessingException e) {
+                        return CustomerImportRow.invalid(number, "malformed JSON");
+                    }
+                })
+                .filter(Objects::nonNull);
+    }
+
+    public Stream<CustomerImportRow> csv(InputStream inputStream) {
+        AtomicLong lineNumber = new AtomicLong();
+        int[] columnIndexes = new int[CSV_COLUMNS.size()];
+        return lines(inputStream)
+                .map(line -> {
+                    long number = lineNumber.incrementAndGet();
+                    if (number == 1) {
+                        readHeader(line, columnIndexes);
+                        return null;
+                    }
+                    if (line.isBlank()) {
+                        return null;
+                    }
+                    return csvRow(number, splitCsvLine(line), columnIndexes);
+                })
+                .filter(Objects::nonNull);
+    }
+
+    private static Stream<String> lines(InputStream inputStream) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        return reader.lines().onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static void readHeader(String line, int[] columnIndexes) {
+        List<String> header = splitCsvLine(line).stream()
+                .map(column -> column.trim().toLowerCase())
+                .toList();
+        for (int i = 0; i < CSV_COLUMNS.size(); i++) {
+            columnIndexes[i] = header.indexOf(CSV_COLUMNS.get(i));
+        }
+    }
+
+    private static CustomerImportRow csvRow(long number, List<String> values, int[] columnIndexes) {
+        String name = value(values, columnIndexes[0]);
+        String email = value(values, columnIndexes[1]);
+        String age = value(values, columnIndexes[2]);
+        try {
+            return CustomerImportRow.valid(number, new CustomerRegistrationRequest(
+                    name,
+                    email,
+                    age == null || age.isBlank() ? null : Integer.valueOf(age.trim())));
+        } catch (NumberFormatException e) {
+            return CustomerImportRow.invalid(number, "age %s is not a number".formatted(age));
+        }
+    }
+
+    private static String value(List<String> values, int index) {
+        return index < 0 || index >= values.size() ? null : values.get(index);
+    }
+
+    // RFC 4180 quoting within a single line: "a, b" and "say ""hi""" are one field each
+    static List<String> splitCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+}
@@ -0,0 +1,9 @@
+package com.amigoscode.customer;
+
+import java.util.List;
+
+public record CustomerImportResult(
+        long imported,
+        long failed,
+        List<CustomerImportError> errors) {
+}
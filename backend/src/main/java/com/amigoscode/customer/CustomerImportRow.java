@@ -0,0 +1,15 @@
+package com.amigoscode.customer;
+
+public record CustomerImportRow(
+        long line,
+        CustomerRegistrationRequest request,
+        String error) {
+
+    static CustomerImportRow valid(long line, CustomerRegistrationRequest request) {
+        return new CustomerImportRow(line, request, null);
+    }
+
+    static CustomerImportRow invalid(long line, String error) {
+        return new CustomerImportRow(line, null, error);
+    }
+}
@@ -0,0 +1,380 @@
+package com.amigoscode.customer;
+
+import io.micrometer.observation.annotation.Observed;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+// Thread-safe store for running the web tier without a database. Ids are handed
+// out densely from a counter, so they index the store directly (IdTable, no boxed
+// keys or map entries) and keyset scans walk ids in order without sorting.
+// Writes for the same id are serialised on a lock stripe; reads never lock.
+// Stored customers are private copies and callers always receive copies.
+// Every write appends to a change log while it still holds its lock stripe; a profile
+// image change is not part of Customer and is not logged.
+@Repository("memory")
+@ConditionalOnProperty(name = "customer.dao", havingValue = "memory")
+@Observed(name = "customer.dao")
+public class CustomerInMemoryDataAccessService implements CustomerDao {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final IdTable<Customer> customersById = new IdTable<>();
+    private final Map<String, Integer> idsByEmail = new ConcurrentHashMap<>();
+    // kept apart like the column, which is not part of Customer
+    private final IdTable<String> profileImageIds = new IdTable<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    // guarded by itself, entry i has sequence number pruned + i + 1
+    private final List<LoggedChange> changeLog = new ArrayList<>();
+    private long pruned;
+
+    public CustomerInMemoryDataAccessService() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        insertCustomer(new Customer("Igor", "igor@gmail.com", 33));
+        insertCustomer(new Customer("Marina", "marina@gmail.com", 30));
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        List<Customer> customers = new ArrayList<>();
+        streamAllCustomers(CustomerField.ALL, customers::add);
+        return customers;
+    }
+
+    // nothing to save on reads here, projections return full copies
+    @Override
+    public List<Customer> selectCustomers(Integer afterId, int limit, Set<CustomerField> fields) {
+        List<Customer> customers = new ArrayList<>(limit);
+        int last = lastId.get();
+        for (int id = (afterId == null ? 0 : afterId) + 1; id <= last && customers.size() < limit; id++) {
+            Customer customer = customersById.get(id);
+            if (customer != null) {
+                customers.add(customer.copy());
+            }
+        }
+        return customers;
+    }
+
+    @Override
+    public void streamAllCustomers(Set<CustomerField> fields, Consumer<Customer> consumer) {
+        streamCustomers(null, null, fields, consumer);
+    }
+
+    @Override
+    public void streamCustomers(Integer afterId, Integer toId, Set<CustomerField> fields, Consumer<Customer> consumer) {
+        int last = toId == null ? lastId.get() : Math.min(toId, lastId.get());
+        for (int id = (afterId == null ? 0 : afterId) + 1; id <= last; id++) {
+            Customer customer = customersById.get(id);
+            if (customer != null) {
+                consumer.accept(customer.copy());
+            }
+        }
+    }
+
+    // full scan: there are no secondary indexes besides email
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria, CustomerSearchCursor after, int limit,
+                                          Set<CustomerField> fields) {
+        CustomerSort sort = criteria.sort();
+        Comparator<Customer> comparator = Comparator
+                .comparing((Customer customer) -> sortKey(customer, sort))
+                .thenComparing(Customer::getId);
+        if (sort.descending()) {
+            comparator = comparator.reversed();
+        }
+        Comparator<Customer> order = comparator;
+
+        return IntStream.rangeClosed(1, lastId.get())
+                .mapToObj(customersById::get)
+                .filter(Objects::nonNull)
+                .filter(customer -> matches(customer, criteria))
+                .filter(customer -> after == null || order.compare(customer, cursorRow(after, sort)) > 0)
+                .sorted(order)
+                .limit(limit)
+                .map(Customer::copy)
+                .toList();
+    }
+
+    private static boolean matches(Customer customer, CustomerSearchCriteria criteria) {
+        String name = customer.getName().toLowerCase(Locale.ROOT);
+        String email = customer.getEmail();
+        return (criteria.name() == null || name.contains(criteria.name().toLowerCase(Locale.ROOT)))
+                && (criteria.namePrefix() == null || name.startsWith(criteria.namePrefix().toLowerCase(Locale.ROOT)))
+                && (criteria.emailDomain() == null || email.substring(email.indexOf('@') + 1).equalsIgnoreCase(criteria.emailDomain()))
+                && (criteria.minAge() == null || customer.getAge() >= criteria.minAge())
+                && (criteria.maxAge() == null || customer.getAge() <= criteria.maxAge());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparable<Object> sortKey(Customer customer, CustomerSort sort) {
+        Object key = sort.field().keyOf(customer);
+        return key == null ? other -> 0 : (Comparable) key;
+    }
+
+    private static Customer cursorRow(CustomerSearchCursor after, CustomerSort sort) {
+        Customer row = new Customer();
+        row.setId(after.id());
+        switch (sort.field()) {
+            case NAME -> row.setName((String) after.key());
+            case AGE -> row.setAge((Integer) after.key());
+            case ID -> {
+            }
+        }
+        return row;
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return Optional.ofNullable(customersById.get(id)).map(Customer::copy);
+    }
+
+    @Override
+    public Optional<Long> selectCustomerVersion(Integer id) {
+        return Optional.ofNullable(customersById.get(id)).map(Customer::getVersion);
+    }
+
+    @Override
+    public Optional<String> selectProfileImageId(Integer id) {
+        return Optional.ofNullable(profileImageIds.get(id));
+    }
+
+    // not logged, like the V7 trigger: the image is not part of Customer
+    @Override
+    public boolean updateProfileImageId(Integer id, String expected, String replacement) {
+        synchronized (lockFor(id)) {
+            if (customersById.get(id) == null || !Objects.equals(profileImageIds.get(id), expected)) {
+                return false;
+            }
+            profileImageIds.put(id, replacement);
+            return true;
+        }
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        int id = lastId.incrementAndGet();
+        synchronized (lockFor(id)) {
+            claimEmail(customer.getEmail(), id);
+            customer.setId(id);
+            customer.setVersion(0L);
+            customersById.put(id, customer.copy());
+            logChange(id, false);
+        }
+    }
+
+    @Override
+    public Map<String, Integer> insertCustomers(List<Customer> customers) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (Customer customer : customers) {
+            try {
+                insertCustomer(customer);
+                ids.put(customer.getEmail(), customer.getId());
+            } catch (DuplicateKeyException e) {
+                // reported to the caller by its absence from the result
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return idsByEmail.containsKey(email);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer id) {
+        return customersById.get(id) != null;
+    }
+
+    @Override
+    public void deleteCustomerById(Integer customerId) {
+        synchronized (lockFor(customerId)) {
+            Customer removed = customersById.remove(customerId);
+            if (removed != null) {
+                idsByEmail.remove(removed.getEmail(), customerId);
+                profileImageIds.remove(customerId);
+                logChange(customerId, true);
+            }
+        }
+    }
+
+    @Override
+    public boolean deleteCustomerByIdAndVersion(Integer customerId, long expectedVersion) {
+        synchronized (lockFor(customerId)) {
+            Customer existing = customersById.get(customerId);
+            if (existing == null || existing.getVersion() != expectedVersion) {
+                return false;
+            }
+            deleteCustomerById(customerId);
+            return true;
+        }
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update) {
+        Integer id = update.getId();
+        synchronized (lockFor(id)) {
+            Customer existing = customersById.get(id);
+            if (existing == null
+                    || (update.getVersion() != null && !update.getVersion().equals(existing.getVersion()))) {
+                return Optional.empty();
+            }
+            Customer updated = existing.copy();
+            if (!updated.applyChanges(update)) {
+                return Optional.empty();
+            }
+            updated.setVersion(existing.getVersion() + 1);
+            boolean emailChanged = !updated.getEmail().equals(existing.getEmail());
+            if (emailChanged) {
+                claimEmail(updated.getEmail(), id);
+            }
+            customersById.put(id, updated);
+            if (emailChanged) {
+                idsByEmail.remove(existing.getEmail(), id);
+            }
+            logChange(id, false);
+            return Optional.of(updated.copy());
+        }
+    }
+
+    @Override
+    public List<CustomerChange> selectChanges(String since, int limit) {
+        CustomerChangeToken after = CustomerChangeToken.decode(since);
+        if (after.tx() != 0 || after.seq() < 0) {
+            throw CustomerChangeToken.invalid();
+        }
+        List<LoggedChange> entries;
+        long from;
+        synchronized (changeLog) {
+            if (since != null && after.seq() < pruned) {
+                throw CustomerChangeToken.expired();
+            }
+            from = Math.min(Math.max(after.seq(), pruned), pruned + changeLog.size());
+            int start = (int) (from - pruned);
+            entries = List.copyOf(changeLog.subList(start, (int) Math.min(start + (long) limit, changeLog.size())));
+        }
+        List<CustomerChange> changes = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            LoggedChange entry = entries.get(i);
+            String token = new CustomerChangeToken(0, from + i + 1).encode();
+            Customer customer = entry.deleted() ? null : customersById.get(entry.customerId());
+            changes.add(customer == null
+                    ? CustomerChange.tombstone(token, entry.customerId())
+                    : CustomerChange.upsert(token, customer.copy()));
+        }
+        return changes;
+    }
+
+    // entries are in the order they were logged, which is also the order of their timestamps
+    @Override
+    public int deleteChangesBefore(Instant cutoff, int limit) {
+        synchronized (changeLog) {
+            int count = 0;
+            while (count < Math.min(limit, changeLog.size()) && changeLog.get(count).loggedAt().isBefore(cutoff)) {
+                count++;
+            }
+            changeLog.subList(0, count).clear();
+            pruned += count;
+            return count;
+        }
+    }
+
+    private void logChange(Integer customerId, boolean deleted) {
+        synchronized (changeLog) {
+            changeLog.add(new LoggedChange(customerId, deleted, Instant.now()));
+        }
+    }
+
+    private void claimEmail(String email, Integer id) {
+        if (idsByEmail.putIfAbsent(email, id) != null) {
+            throw new DuplicateKeyException("customer_email_unique: " + email);
+        }
+    }
+
+    private Object lockFor(Integer id) {
+        return locks[Math.floorMod(id, LOCK_STRIPES)];
+    }
+
+    private record LoggedChange(Integer customerId, boolean deleted, Instant loggedAt) {
+    }
+
+    // Values by dense id in pages of an AtomicReferenceArray, read without locking. The page
+    // directory is replaced by a larger copy, under the table's lock, only when an insert runs
+    // past its end; pages themselves never move. null means absent, as for any id never stored.
+    private static final class IdTable<V> {
+
+        private static final int PAGE_BITS = 12;
+        private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+
+        private volatile AtomicReferenceArray<AtomicReferenceArray<V>> pages = new AtomicReferenceArray<>(1);
+
+        V get(int id) {
+            AtomicReferenceArray<V> page = existingPage(id);
+            return page == null ? null : page.get(id & PAGE_MASK);
+        }
+
+        void put(int id, V value) {
+            AtomicReferenceArray<V> page = value == null ? existingPage(id) : page(id);
+            if (page != null) {
+                page.set(id & PAGE_MASK, value);
+            }
+        }
+
+        V remove(int id) {
+            AtomicReferenceArray<V> page = existingPage(id);
+            return page == null ? null : page.getAndSet(id & PAGE_MASK, null);
+        }
+
+        // negative ids shift to an index past any directory
+        private AtomicReferenceArray<V> existingPage(int id) {
+            int index = id >>> PAGE_BITS;
+            AtomicReferenceArray<AtomicReferenceArray<V>> directory = pages;
+            return index < directory.length() ? directory.get(index) : null;
+        }
+
+        private AtomicReferenceArray<V> page(int id) {
+            AtomicReferenceArray<V> page = existingPage(id);
+            if (page != null) {
+                return page;
+            }
+            synchronized (this) {
+                int index = id >>> PAGE_BITS;
+                AtomicReferenceArray<AtomicReferenceArray<V>> directory = pages;
+                if (index >= directory.length()) {
+                    AtomicReferenceArray<AtomicReferenceArray<V>> grown =
+                            new AtomicReferenceArray<>(Math.max(index + 1, directory.length() * 2));
+                    for (int i = 0; i < directory.length(); i++) {
+                        grown.set(i, directory.get(i));
+                    }
+                    pages = grown;
+                    directory = grown;
+                }
+                page = directory.get(index);
+                if (page == null) {
+                    page = new AtomicReferenceArray<>(PAGE_MASK + 1);
+                    directory.set(index, page);
+                }
+                return page;
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Opt-in write-behind for registrations (customer.write-behind.enabled=true).
+// Callers enqueue and wait on a future; one flusher thread turns whatever has
+// queued up into a single INSERT ... ON CONFLICT (email) DO NOTHING RETURNING id,
+// so a burst costs one connection and one round trip per batch rather than per
+// request. A batch goes out when it is full or its oldest entry has waited
+// max-latency, which bounds the latency added to each registration; callers give
+// up after max-latency plus insert-timeout, see maxWait.
+@Component
+@ConditionalOnProperty(name = "customer.write-behind.enabled", havingValue = "true")
+@Slf4j
+public class CustomerInsertCoalescer implements DisposableBean {
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final CustomerDao customerDao;
+    private final BlockingQueue<PendingInsert> queue;
+    private final int maxBatchSize;
+    private final long maxLatencyNanos;
+    private final Duration maxWait;
+    private final DistributionSummary batchSizes;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public CustomerInsertCoalescer(@Qualifier("cached") CustomerDao customerDao,
+                                   @Value("${customer.write-behind.queue-capacity:10000}") int queueCapacity,
+                                   @Value("${customer.write-behind.max-batch-size:500}") int maxBatchSize,
+                                   @Value("${customer.write-behind.max-latency:5ms}") Duration maxLatency,
+                                   @Value("${customer.write-behind.insert-timeout:5s}") Duration insertTimeout,
+                                   MeterRegistry meterRegistry) {
+        this.customerDao = customerDao;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyNanos = maxLatency.toNanos();
+        this.maxWait = maxLatency.plus(insertTimeout);
+        this.batchSizes = DistributionSummary.builder("customer.write_behind.batch.size")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        meterRegistry.gauge("customer.write_behind.queue.size", queue, BlockingQueue::size);
+
+        this.flusher = new Thread(this::run, "customer-insert-coalescer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // completes with the generated id, or with a DuplicateKeyException when the email
+    // is taken (in the table or by an earlier registration in the same batch)
+    public CompletableFuture<Integer> insert(Customer customer) {
+        PendingInsert pending = new PendingInsert(customer, System.nanoTime(), new CompletableFuture<>());
+        if (!running) {
+            throw shuttingDown();
+        }
+        if (!queue.offer(pending)) {
+            throw new ServiceUnavailableException("registration queue is full, retry later");
+        }
+        return pending.id();
+    }
+
+    // how long a caller should wait on insert's future: the batch's latency plus its INSERT
+    public Duration maxWait() {
+        return maxWait;
+    }
+
+    // on shutdown the loop keeps going until everything accepted so far is written
+    private void run() {
+        List<PendingInsert> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                PendingInsert first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = batch.get(0).enqueuedAt() + maxLatencyNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    // a shutdown stops waiting for the deadline, the batch goes out now
+                    if (batch.size() == maxBatchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    PendingInsert next = queue.poll(
+                            Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(IDLE_POLL_MILLIS)), TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+                try {
+                    flush(batch);
+                } catch (RuntimeException e) {
+                    // fail this batch only, the next one may well go through
+                    log.warn("write-behind batch of {} registrations failed", batch.size(), e);
+                    batch.forEach(pending -> pending.id().completeExceptionally(e));
+                } finally {
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batch.forEach(pending -> pending.id().completeExceptionally(shuttingDown()));
+        }
+    }
+
+    private void flush(List<PendingInsert> batch) {
+        batchSizes.record(batch.size());
+        Map<String, PendingInsert> byEmail = new LinkedHashMap<>();
+        for (PendingInsert pending : batch) {
+            if (byEmail.putIfAbsent(pending.customer().getEmail(), pending) != null) {
+                pending.id().completeExceptionally(duplicate(pending.customer()));
+            }
+        }
+
+        Map<String, Integer> ids;
+        try {
+            ids = customerDao.insertCustomers(byEmail.values().stream().map(PendingInsert::customer).toList());
+        } catch (RuntimeException e) {
+            log.warn("write-behind batch of {} registrations failed", byEmail.size(), e);
+            byEmail.values().forEach(pending -> pending.id().completeExceptionally(e));
+            return;
+        }
+        byEmail.forEach((email, pending) -> {
+            Integer id = ids.get(email);
+            if (id != null) {
+                pending.id().complete(id);
+            } else {
+                pending.id().completeExceptionally(duplicate(pending.customer()));
+            }
+        });
+    }
+
+    private static DuplicateKeyException duplicate(Customer customer) {
+        return new DuplicateKeyException("customer_email_unique: %s".formatted(customer.getEmail()));
+    }
+
+    private static ServiceUnavailableException shuttingDown() {
+        return new ServiceUnavailableException("registrations are not accepted while shutting down");
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        // registrations that slipped in after the flusher's last look at the queue
+        List<PendingInsert> late = new ArrayList<>();
+        queue.drainTo(late);
+        late.forEach(pending -> pending.id().completeExceptionally(shuttingDown()));
+    }
+
+    private record PendingInsert(Customer customer, long enqueuedAt, CompletableFuture<Integer> id) {
+    }
+}
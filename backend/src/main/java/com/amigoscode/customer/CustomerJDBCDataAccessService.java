@@ -1,40 +1,223 @@
 package com.amigoscode.customer;
 
+import com.amigoscode.config.ReplicaRead;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Repository("jdbc")
+@ConditionalOnProperty(name = "customer.dao", havingValue = "jdbc", matchIfMissing = true)
+@Observed(name = "customer.dao")
 @RequiredArgsConstructor
 @Slf4j
 public class CustomerJDBCDataAccessService implements CustomerDao {
 
+    private static final int STREAM_FETCH_SIZE = 1000;
+    // rows per round trip for exports, a few MB of them
+    private static final int EXPORT_FETCH_SIZE = 10_000;
+    private static final int INSERT_BATCH_SIZE = 1000;
+    // spelled out rather than *, so columns added later for other features are not dragged along
+    private static final String ALL_COLUMNS = CustomerField.columns(CustomerField.ALL);
+
     private final JdbcTemplate jdbcTemplate;
     private final CustomerRowMapper rowMapper;
+    private final ObservationRegistry observationRegistry;
+    // set on shards, whose search pages are merged in code point order by CustomerSort.comparator()
+    private boolean codePointTextOrder;
+
+    void orderTextByCodePoint() {
+        this.codePointTextOrder = true;
+    }
 
     @Override
+    @ReplicaRead
     public List<Customer> selectAllCustomers() {
         String sql = """
-                SELECT * FROM customer
-                """;
+                SELECT %s FROM customer
+                """.formatted(ALL_COLUMNS);
+
+        return observe("select_all", () -> jdbcTemplate.query(sql, rowMapper.projecting(CustomerField.ALL)));
+    }
+
+    @Override
+    @ReplicaRead
+    public List<Customer> selectCustomers(Integer afterId, int limit, Set<CustomerField> fields) {
+        String sql = """
+                SELECT %s FROM customer WHERE id > ? ORDER BY id LIMIT ?
+                """.formatted(CustomerField.columns(fields));
+        return observe("select_page", () -> jdbcTemplate.query(sql, rowMapper.projecting(fields),
+                afterId == null ? 0 : afterId, limit));
+    }
+
+    // the PostgreSQL driver only honours fetchSize inside a transaction,
+    // otherwise it reads the whole result set into memory before returning
+    @Override
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public void streamAllCustomers(Set<CustomerField> fields, Consumer<Customer> consumer) {
+        String sql = """
+                SELECT %s FROM customer
+                """.formatted(CustomerField.columns(fields));
+        RowMapper<Customer> mapper = rowMapper.projecting(fields);
+        observe("stream_all", () -> jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(sql);
+                    statement.setFetchSize(STREAM_FETCH_SIZE);
+                    return statement;
+                },
+                rs -> {
+                    consumer.accept(mapper.mapRow(rs, rs.getRow()));
+                }));
+    }
 
-        return jdbcTemplate.query(sql, rowMapper);
+    // a server-side cursor as above, walking the primary key index. The transaction stays
+    // open for the whole export, so very large ones are best fetched as several id ranges
+    @Override
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public void streamCustomers(Integer afterId, Integer toId, Set<CustomerField> fields, Consumer<Customer> consumer) {
+        String sql = """
+                SELECT %s FROM customer WHERE id > ? AND id <= ? ORDER BY id
+                """.formatted(CustomerField.columns(fields));
+        RowMapper<Customer> mapper = rowMapper.projecting(fields);
+        observe("stream_range", () -> jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(sql);
+                    statement.setFetchSize(EXPORT_FETCH_SIZE);
+                    statement.setInt(1, afterId == null ? 0 : afterId);
+                    statement.setInt(2, toId == null ? Integer.MAX_VALUE : toId);
+                    return statement;
+                },
+                rs -> {
+                    consumer.accept(mapper.mapRow(rs, rs.getRow()));
+                }));
     }
 
+    // name filters hit the trigram index, the email domain its expression index and
+    // the keyset row comparison the (sort column, id) btree indexes from V4
     @Override
+    @ReplicaRead
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria, CustomerSearchCursor after, int limit,
+                                          Set<CustomerField> fields) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (criteria.name() != null) {
+            conditions.add("name ILIKE ?");
+            args.add(criteria.namePattern());
+        }
+        if (criteria.namePrefix() != null) {
+            conditions.add("name ILIKE ?");
+            args.add(criteria.namePrefixPattern());
+        }
+        if (criteria.emailDomain() != null) {
+            conditions.add("lower(split_part(email, '@', 2)) = lower(?)");
+            args.add(criteria.emailDomain());
+        }
+        if (criteria.minAge() != null) {
+            conditions.add("age >= ?");
+            args.add(criteria.minAge());
+        }
+        if (criteria.maxAge() != null) {
+            conditions.add("age <= ?");
+            args.add(criteria.maxAge());
+        }
+
+        CustomerSort sort = criteria.sort();
+        String direction = sort.descending() ? "DESC" : "ASC";
+        String sortColumn = codePointTextOrder && sort.field() == CustomerSortField.NAME
+                ? sort.field().column() + " COLLATE \"C\""
+                : sort.field().column();
+        String orderBy = sort.field() == CustomerSortField.ID
+                ? "id " + direction
+                : "%s %s, id %s".formatted(sortColumn, direction, direction);
+        if (after != null) {
+            String comparison = sort.descending() ? "<" : ">";
+            if (sort.field() == CustomerSortField.ID) {
+                conditions.add("id %s ?".formatted(comparison));
+            } else {
+                conditions.add("(%s, id) %s (?, ?)".formatted(sortColumn, comparison));
+                args.add(after.key());
+            }
+            args.add(after.id());
+        }
+        args.add(limit);
+
+        Set<CustomerField> projection = EnumSet.of(sort.field().field());
+        projection.addAll(fields);
+        String sql = """
+                SELECT %s FROM customer %s ORDER BY %s LIMIT ?
+                """.formatted(
+                CustomerField.columns(projection),
+                conditions.isEmpty() ? "" : "WHERE " + String.join(" AND ", conditions),
+                orderBy);
+        return observe("search", () -> jdbcTemplate.query(sql, rowMapper.projecting(projection), args.toArray()));
+    }
+
+    @Override
+    @ReplicaRead
     public Optional<Customer> selectCustomerById(Integer id) {
         String sql = """
-                SELECT * FROM customer WHERE id = ?
+                SELECT %s FROM customer WHERE id = ?
+                """.formatted(ALL_COLUMNS);
+        return observe("select_by_id", () -> jdbcTemplate.query(sql, rowMapper.projecting(CustomerField.ALL), id))
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    @ReplicaRead
+    public Optional<Long> selectCustomerVersion(Integer id) {
+        String sql = """
+                SELECT version FROM customer WHERE id = ?
+                """;
+        return observe("select_version", () -> jdbcTemplate.queryForList(sql, Long.class, id))
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    public Optional<String> selectProfileImageId(Integer id) {
+        String sql = """
+                SELECT profile_image_id FROM customer WHERE id = ?
                 """;
-        return jdbcTemplate.query(sql, rowMapper, id)
+        return observe("select_profile_image", () -> jdbcTemplate.queryForList(sql, String.class, id))
                 .stream()
+                .filter(Objects::nonNull)
                 .findFirst();
     }
 
+    // the CAST gives a NULL expected value the type IS NOT DISTINCT FROM needs
+    @Override
+    public boolean updateProfileImageId(Integer id, String expected, String replacement) {
+        String sql = """
+                UPDATE customer SET profile_image_id = ?
+                WHERE id = ? AND profile_image_id IS NOT DISTINCT FROM CAST(? AS VARCHAR)
+                """;
+        return observe("update_profile_image", () -> jdbcTemplate.update(sql, replacement, id, expected)) == 1;
+    }
+
     @Override
     public void insertCustomer(Customer customer) {
         String sql = """
@@ -42,30 +225,59 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
                 VALUES (?, ?, ?)
                 """;
 
-        int result = jdbcTemplate.update(sql,
+        int result = observe("insert", () -> jdbcTemplate.update(sql,
                 customer.getName(),
                 customer.getEmail(),
-                customer.getAge());
+                customer.getAge()));
 
-        log.info("jdbcTemplate.update = " + result);
+        log.debug("jdbcTemplate.update = {}", result);
     }
 
+    // one multi-row statement per batch: a single round trip, and rows whose email
+    // already exists are skipped by the database instead of aborting the batch
     @Override
+    public Map<String, Integer> insertCustomers(List<Customer> customers) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (int from = 0; from < customers.size(); from += INSERT_BATCH_SIZE) {
+            List<Customer> batch = customers.subList(from, Math.min(from + INSERT_BATCH_SIZE, customers.size()));
+            String sql = """
+                    INSERT INTO customer(name, email, age)
+                    VALUES %s
+                    ON CONFLICT (email) DO NOTHING
+                    RETURNING id, email
+                    """.formatted(String.join(", ", Collections.nCopies(batch.size(), "(?, ?, ?)")));
+
+            Object[] args = new Object[batch.size() * 3];
+            for (int i = 0; i < batch.size(); i++) {
+                Customer customer = batch.get(i);
+                args[i * 3] = customer.getName();
+                args[i * 3 + 1] = customer.getEmail();
+                args[i * 3 + 2] = customer.getAge();
+            }
+
+            observe("insert_batch", () -> jdbcTemplate.query(sql, rs -> {
+                ids.put(rs.getString("email"), rs.getInt("id"));
+            }, args));
+        }
+        return ids;
+    }
+
+    @Override
+    @ReplicaRead
     public boolean existsCustomerWithEmail(String email) {
         String sql = """
-                SELECT count(id) FROM customer WHERE email = ?
+                SELECT EXISTS(SELECT 1 FROM customer WHERE email = ?)
                 """;
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, email);
-        return count != null && count > 0;
+        return Boolean.TRUE.equals(observe("exists_by_email", () -> jdbcTemplate.queryForObject(sql, Boolean.class, email)));
     }
 
     @Override
+    @ReplicaRead
     public boolean existsCustomerWithId(Integer id) {
         String sql = """
-                SELECT count(id) FROM customer WHERE id = ?
+                SELECT EXISTS(SELECT 1 FROM customer WHERE id = ?)
                 """;
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, id);
-        return count != null && count > 0;
+        return Boolean.TRUE.equals(observe("exists_by_id", () -> jdbcTemplate.queryForObject(sql, Boolean.class, id)));
     }
 
     @Override
@@ -73,38 +285,126 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
         String sql = """
                 DELETE FROM customer WHERE id = ?
                 """;
-        int update = jdbcTemplate.update(sql, id);
-        log.info("delete customer with id %s ".formatted(id) + " " + update);
+        int update = observe("delete", () -> jdbcTemplate.update(sql, id));
+        log.debug("delete customer with id {} {}", id, update);
+    }
+
+    @Override
+    public boolean deleteCustomerByIdAndVersion(Integer customerId, long expectedVersion) {
+        String sql = """
+                DELETE FROM customer WHERE id = ? AND version = ?
+                """;
+        return observe("delete_versioned", () -> jdbcTemplate.update(sql, customerId, expectedVersion)) == 1;
     }
 
+    // sends only the columns that were supplied and only touches the row when at
+    // least one of them differs, so "no change" and "not found" both come back empty
     @Override
-    public void updateCustomer(Customer update) {
+    public Optional<Customer> updateCustomer(Customer update) {
+        Map<String, Object> columns = new LinkedHashMap<>();
         if (update.getName() != null) {
-            String sql = "UPDATE customer SET name = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    update.getName(),
-                    update.getId()
-            );
-            log.info("update customer name result = " + result);
+            columns.put("name", update.getName());
+        }
+        if (update.getEmail() != null) {
+            columns.put("email", update.getEmail());
         }
         if (update.getAge() != null) {
-            String sql = "UPDATE customer SET age = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    update.getAge(),
-                    update.getId()
-            );
-            log.info("update customer age result = " + result);
+            columns.put("age", update.getAge());
         }
-        if (update.getEmail() != null) {
-            String sql = "UPDATE customer SET email = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    update.getEmail(),
-                    update.getId()
-            );
-            log.info("update customer email result = " + result);
+        if (columns.isEmpty()) {
+            return Optional.empty();
         }
+
+        String sql = """
+                UPDATE customer SET %s, version = version + 1 WHERE id = ?%s AND (%s) RETURNING %s
+                """.formatted(
+                columns.keySet().stream().map(column -> column + " = ?").collect(Collectors.joining(", ")),
+                update.getVersion() == null ? "" : " AND version = ?",
+                columns.keySet().stream().map(column -> column + " <> ?").collect(Collectors.joining(" OR ")),
+                ALL_COLUMNS);
+
+        List<Object> args = new ArrayList<>(columns.values());
+        args.add(update.getId());
+        if (update.getVersion() != null) {
+            args.add(update.getVersion());
+        }
+        args.addAll(columns.values());
+
+        return observe("update", () -> jdbcTemplate.query(sql, rowMapper.projecting(CustomerField.ALL), args.toArray()))
+                .stream()
+                .findFirst();
+    }
+
+    // customer_change is filled by the V6 trigger. Only transactions older than the oldest
+    // one still running are read, their log rows are final; a long running transaction
+    // holds the feed back until it ends. Read on the primary, whose snapshot this is
+    @Override
+    public List<CustomerChange> selectChanges(String since, int limit) {
+        CustomerChangeToken after = CustomerChangeToken.decode(since);
+        String sql = """
+                SELECT ch.tx, ch.seq, ch.customer_id, ch.deleted OR c.id IS NULL AS gone,
+                       c.id, c.version, c.name, c.email, c.age
+                FROM customer_change ch
+                LEFT JOIN customer c ON c.id = ch.customer_id
+                WHERE (ch.tx, ch.seq) > (?, ?)
+                  AND ch.tx < pg_snapshot_xmin(pg_current_snapshot())::text::bigint
+                ORDER BY ch.tx, ch.seq
+                LIMIT ?
+                """;
+        RowMapper<Customer> customers = rowMapper.projecting(CustomerField.ALL);
+        List<CustomerChange> changes = observe("select_changes", () -> jdbcTemplate.query(sql, (rs, rowNum) -> {
+            String token = new CustomerChangeToken(rs.getLong("tx"), rs.getLong("seq")).encode();
+            return rs.getBoolean("gone")
+                    ? CustomerChange.tombstone(token, rs.getInt("customer_id"))
+                    : CustomerChange.upsert(token, customers.mapRow(rs, rowNum));
+        }, after.tx(), after.seq(), limit));
+        // checked after the read: a prune that committed before it has moved the horizon by now
+        if (since != null && beforeChangeHorizon(after)) {
+            throw CustomerChangeToken.expired();
+        }
+        return changes;
+    }
+
+    private boolean beforeChangeHorizon(CustomerChangeToken token) {
+        String sql = """
+                SELECT (CAST(? AS BIGINT), CAST(? AS BIGINT)) < (tx, seq) FROM customer_change_horizon
+                """;
+        return observe("select_change_horizon",
+                () -> jdbcTemplate.queryForObject(sql, Boolean.class, token.tx(), token.seq()));
+    }
+
+    // customer_change_changed_at_idx (V7_1) finds the batch, customer_change_horizon (V8)
+    // moves up to the newest entry deleted
+    @Override
+    public int deleteChangesBefore(Instant cutoff, int limit) {
+        String sql = """
+                WITH deleted AS (
+                    DELETE FROM customer_change
+                    WHERE seq IN (SELECT seq FROM customer_change WHERE changed_at < ? LIMIT ?)
+                    RETURNING tx, seq
+                ), horizon AS (
+                    UPDATE customer_change_horizon h
+                    SET tx = newest.tx, seq = newest.seq
+                    FROM (SELECT tx, seq FROM deleted ORDER BY tx DESC, seq DESC LIMIT 1) newest
+                    WHERE (newest.tx, newest.seq) > (h.tx, h.seq)
+                )
+                SELECT count(*) FROM deleted
+                """;
+        return observe("delete_changes",
+                () -> jdbcTemplate.queryForObject(sql, Integer.class, Timestamp.from(cutoff), limit));
+    }
+
+    // one timer (customer.sql) per statement rather than per SQL text: the batch
+    // insert and the partial update generate a different string for every shape
+    private <T> T observe(String statement, Supplier<T> query) {
+        return Observation.createNotStarted("customer.sql", observationRegistry)
+                .lowCardinalityKeyValue("statement", statement)
+                .observe(query);
+    }
+
+    private void observe(String statement, Runnable query) {
+        Observation.createNotStarted("customer.sql", observationRegistry)
+                .lowCardinalityKeyValue("statement", statement)
+                .observe(query);
     }
 }
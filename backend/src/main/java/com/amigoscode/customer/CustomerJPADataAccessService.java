@@ -1,38 +1,172 @@
 package com.amigoscode.customer;
 
+import com.amigoscode.config.ReplicaRead;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @RequiredArgsConstructor
 @Repository("jpa")
+@ConditionalOnProperty(name = "customer.dao", havingValue = "jpa")
+@Observed(name = "customer.dao")
 public class CustomerJPADataAccessService implements CustomerDao {
 
+    private static final int STREAM_BATCH_SIZE = 1000;
+    private static final int INSERT_BATCH_SIZE = 1000;
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final Set<CustomerField> SUMMARY_FIELDS = Set.of(CustomerField.ID, CustomerField.NAME);
+
     private final CustomerRepository customerRepository;
+    private final JdbcTemplate jdbcTemplate;
 
     @Override
+    @ReplicaRead
     public List<Customer> selectAllCustomers() {
         return customerRepository.findAll();
     }
 
+    // id,name is answered by the CustomerSummary projection, any wider selection
+    // reads the entity
+    @Override
+    @ReplicaRead
+    public List<Customer> selectCustomers(Integer afterId, int limit, Set<CustomerField> fields) {
+        if (SUMMARY_FIELDS.containsAll(fields)) {
+            return customerRepository.findByIdGreaterThanOrderByIdAsc(
+                            afterId == null ? 0 : afterId,
+                            PageRequest.ofSize(limit),
+                            CustomerRepository.CustomerSummary.class)
+                    .stream()
+                    .map(summary -> new Customer(summary.getId(), summary.getName(), null, null, summary.getVersion()))
+                    .toList();
+        }
+        return customerRepository.findByIdGreaterThanOrderByIdAsc(
+                afterId == null ? 0 : afterId,
+                PageRequest.ofSize(limit));
+    }
+
+    // walks the table in keyset batches so that neither the result list nor
+    // the persistence context ever holds more than one batch
+    @Override
+    @ReplicaRead
+    public void streamAllCustomers(Set<CustomerField> fields, Consumer<Customer> consumer) {
+        List<Customer> batch = selectCustomers(null, STREAM_BATCH_SIZE, fields);
+        while (!batch.isEmpty()) {
+            batch.forEach(consumer);
+            batch = selectCustomers(batch.get(batch.size() - 1).getId(), STREAM_BATCH_SIZE, fields);
+        }
+    }
+
+    // the same keyset batches, stopping at toId
+    @Override
+    @ReplicaRead
+    public void streamCustomers(Integer afterId, Integer toId, Set<CustomerField> fields, Consumer<Customer> consumer) {
+        List<Customer> batch = selectCustomers(afterId, STREAM_BATCH_SIZE, fields);
+        while (!batch.isEmpty()) {
+            for (Customer customer : batch) {
+                if (toId != null && customer.getId() > toId) {
+                    return;
+                }
+                consumer.accept(customer);
+            }
+            batch = selectCustomers(batch.get(batch.size() - 1).getId(), STREAM_BATCH_SIZE, fields);
+        }
+    }
+
     @Override
+    @ReplicaRead
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria, CustomerSearchCursor after, int limit,
+                                          Set<CustomerField> fields) {
+        return customerRepository.search(criteria, after, limit, fields);
+    }
+
+    @Override
+    @ReplicaRead
     public Optional<Customer> selectCustomerById(Integer id) {
         return customerRepository.findById(id);
     }
 
+    @Override
+    @ReplicaRead
+    public Optional<Long> selectCustomerVersion(Integer id) {
+        return customerRepository.findVersionById(id);
+    }
+
+    @Override
+    public Optional<String> selectProfileImageId(Integer id) {
+        return customerRepository.findProfileImageIdById(id);
+    }
+
+    @Override
+    public boolean updateProfileImageId(Integer id, String expected, String replacement) {
+        return customerRepository.updateProfileImageId(id, expected, replacement) == 1;
+    }
+
     @Override
     public void insertCustomer(Customer customer) {
-        customerRepository.save(customer);
+        try {
+            customerRepository.save(customer);
+        } catch (DataIntegrityViolationException e) {
+            throw translate(e);
+        }
+    }
+
+    // as in CustomerJDBCDataAccessService.insertCustomers: one statement per batch that skips
+    // taken emails itself, where an exists check and a save per row would cost two round
+    // trips each and race with other imports. Runs in the JPA transaction
+    @Override
+    @Transactional
+    public Map<String, Integer> insertCustomers(List<Customer> customers) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (int from = 0; from < customers.size(); from += INSERT_BATCH_SIZE) {
+            List<Customer> batch = customers.subList(from, Math.min(from + INSERT_BATCH_SIZE, customers.size()));
+            String sql = """
+                    INSERT INTO customer(name, email, age)
+                    VALUES %s
+                    ON CONFLICT (email) DO NOTHING
+                    RETURNING id, email
+                    """.formatted(String.join(", ", Collections.nCopies(batch.size(), "(?, ?, ?)")));
+
+            Object[] args = new Object[batch.size() * 3];
+            for (int i = 0; i < batch.size(); i++) {
+                Customer customer = batch.get(i);
+                args[i * 3] = customer.getName();
+                args[i * 3 + 1] = customer.getEmail();
+                args[i * 3 + 2] = customer.getAge();
+            }
+
+            jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+                ids.put(rs.getString("email"), rs.getInt("id"));
+            }, args);
+        }
+        return ids;
     }
 
     @Override
+    @ReplicaRead
     public boolean existsCustomerWithEmail(String email) {
         return customerRepository.existsCustomerByEmail(email);
     }
 
     @Override
+    @ReplicaRead
     public boolean existsCustomerWithId(Integer id) {
         return customerRepository.existsCustomerById(id);
     }
@@ -43,7 +177,62 @@ public class CustomerJPADataAccessService implements CustomerDao {
     }
 
     @Override
-    public void updateCustomer(Customer update) {
-        customerRepository.save(update);
+    public boolean deleteCustomerByIdAndVersion(Integer customerId, long expectedVersion) {
+        return customerRepository.deleteByIdAndVersion(customerId, expectedVersion) == 1;
+    }
+
+    @Override
+    @Transactional
+    public Optional<Customer> updateCustomer(Customer update) {
+        // a write racing in between findById and the flush is caught by @Version and
+        // surfaces as an OptimisticLockingFailureException
+        Optional<Customer> existing = customerRepository.findById(update.getId());
+        if (existing.isEmpty()
+                || (update.getVersion() != null && !update.getVersion().equals(existing.get().getVersion()))
+                || !existing.get().applyChanges(update)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(customerRepository.saveAndFlush(existing.get()));
+        } catch (DataIntegrityViolationException e) {
+            throw translate(e);
+        }
+    }
+
+    @Override
+    public List<CustomerChange> selectChanges(String since, int limit) {
+        CustomerChangeToken after = CustomerChangeToken.decode(since);
+        List<CustomerChange> changes = customerRepository.findChanges(after.tx(), after.seq(), limit)
+                .stream()
+                .map(row -> {
+                    String token = new CustomerChangeToken(row.getTx(), row.getSeq()).encode();
+                    return row.getGone()
+                            ? CustomerChange.tombstone(token, row.getCustomerId())
+                            : CustomerChange.upsert(token, new Customer(row.getId(), row.getName(), row.getEmail(),
+                            row.getAge(), row.getVersion()));
+                })
+                .toList();
+        // after the read, as in CustomerJDBCDataAccessService.selectChanges
+        if (since != null && customerRepository.isBeforeChangeHorizon(after.tx(), after.seq())) {
+            throw CustomerChangeToken.expired();
+        }
+        return changes;
+    }
+
+    @Override
+    public int deleteChangesBefore(Instant cutoff, int limit) {
+        return customerRepository.deleteChangesBefore(cutoff, limit);
+    }
+
+    // Hibernate reports every constraint violation as DataIntegrityViolationException,
+    // callers expect the same DuplicateKeyException the JDBC template throws
+    private static DataAccessException translate(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException
+                    && UNIQUE_VIOLATION.equals(sqlException.getSQLState())) {
+                return new DuplicateKeyException(e.getMessage(), e);
+            }
+        }
+        return e;
     }
 }
@@ -1,61 +0,0 @@
-package com.amigoscode.customer;
-
-import org.springframework.stereotype.Repository;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
-
-@Repository("list")
-public class CustomerListDataAccessService implements CustomerDao {
-
-    private static final List<Customer> customers;
-
-    static {
-        customers = new ArrayList<>();
-
-        Customer igor = new Customer(1, "Igor", "igor@gmail.com", 33);
-        customers.add(igor);
-        Customer marina = new Customer(2, "Marina", "marina@gmail.com", 30);
-        customers.add(marina);
-    }
-
-    @Override
-    public List<Customer> selectAllCustomers() {
-        return customers;
-    }
-
-    @Override
-    public Optional<Customer> selectCustomerById(Integer id) {
-        return customers.stream()
-                .filter(c -> c.getId().equals(id))
-                .findFirst();
-    }
-
-    @Override
-    public void insertCustomer(Customer customer) {
-        customers.add(customer);
-    }
-
-    @Override
-    public boolean existsCustomerWithEmail(String email) {
-        return customers.stream()
-                .anyMatch(c -> c.getEmail().equals(email));
-    }
-
-    @Override
-    public boolean existsCustomerWithId(Integer id) {
-        return customers.stream()
-                .anyMatch(c -> c.getId().equals(id));
-    }
-
-    @Override
-    public void deleteCustomerById(Integer customerId) {
-        customers.removeIf(c -> c.getId().equals(customerId));
-    }
-
-    @Override
-    public void updateCustomer(Customer update) {
-        customers.add(update);
-    }
-}
@@ -0,0 +1,6 @@
+package com.amigoscode.customer;
+
+import java.util.List;
+
+public record CustomerPage(List<Customer> customers, String nextCursor) {
+}
@@ -0,0 +1,181 @@
+package com.amigoscode.customer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.api.WriteSupport;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.PositionOutputStream;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.RecordConsumer;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.apache.parquet.schema.Types;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// A Parquet file written by parquet-mr while customers arrive, one NOT NULL column per
+// selected field. A row group is buffered until it reaches ROW_GROUP_SIZE and then written
+// out, gzipped page by page if asked, so memory stays at one row group whatever the export
+// size; the footer follows on close. Column statistics let readers skip row groups outside
+// an id range.
+final class CustomerParquetWriter implements CustomerFormats.CustomerWriter {
+
+    static final long ROW_GROUP_SIZE = 8 * 1024 * 1024;
+
+    private final ParquetWriter<Customer> writer;
+
+    CustomerParquetWriter(OutputStream outputStream, Set<CustomerField> fields, boolean gzip) throws IOException {
+        this(outputStream, fields, gzip, ROW_GROUP_SIZE);
+    }
+
+    CustomerParquetWriter(OutputStream outputStream, Set<CustomerField> fields, boolean gzip, long rowGroupSize)
+            throws IOException {
+        this.writer = new Builder(new ResponseFile(outputStream), List.copyOf(fields))
+                .withCompressionCodec(gzip ? CompressionCodecName.GZIP : CompressionCodecName.UNCOMPRESSED)
+                .withRowGroupSize(rowGroupSize)
+                .build();
+    }
+
+    @Override
+    public void write(Customer customer) throws IOException {
+        writer.write(customer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private static boolean isInt32(CustomerField field) {
+        return field == CustomerField.ID || field == CustomerField.AGE;
+    }
+
+    private static final class Builder extends ParquetWriter.Builder<Customer, Builder> {
+
+        private final List<CustomerField> fields;
+
+        private Builder(OutputFile file, List<CustomerField> fields) {
+            super(file);
+            this.fields = fields;
+        }
+
+        @Override
+        protected Builder self() {
+            return this;
+        }
+
+        @Override
+        protected WriteSupport<Customer> getWriteSupport(Configuration configuration) {
+            return new CustomerWriteSupport(fields);
+        }
+    }
+
+    private static final class CustomerWriteSupport extends WriteSupport<Customer> {
+
+        private final List<CustomerField> fields;
+        private RecordConsumer recordConsumer;
+
+        private CustomerWriteSupport(List<CustomerField> fields) {
+            this.fields = fields;
+        }
+
+        @Override
+        public WriteContext init(Configuration configuration) {
+            Types.MessageTypeBuilder schema = Types.buildMessage();
+            for (CustomerField field : fields) {
+                if (isInt32(field)) {
+                    schema.required(PrimitiveTypeName.INT32).named(field.column());
+                } else {
+                    schema.required(PrimitiveTypeName.BINARY).as(LogicalTypeAnnotation.stringType()).named(field.column());
+                }
+            }
+            MessageType messageType = schema.named("customer");
+            return new WriteContext(messageType, Map.of());
+        }
+
+        @Override
+        public void prepareForWrite(RecordConsumer recordConsumer) {
+            this.recordConsumer = recordConsumer;
+        }
+
+        @Override
+        public void write(Customer customer) {
+            recordConsumer.startMessage();
+            for (int i = 0; i < fields.size(); i++) {
+                CustomerField field = fields.get(i);
+                Object value = field.get(customer);
+                if (value == null) {
+                    throw new IllegalStateException("%s is null, the column is REQUIRED".formatted(field.column()));
+                }
+                recordConsumer.startField(field.column(), i);
+                if (isInt32(field)) {
+                    recordConsumer.addInteger((Integer) value);
+                } else {
+                    recordConsumer.addBinary(Binary.fromString((String) value));
+                }
+                recordConsumer.endField(field.column(), i);
+            }
+            recordConsumer.endMessage();
+        }
+    }
+
+    // the response body as a file parquet-mr only ever appends to
+    private record ResponseFile(OutputStream outputStream) implements OutputFile {
+
+        @Override
+        public PositionOutputStream create(long blockSizeHint) {
+            return new PositionOutputStream() {
+
+                private long position;
+
+                @Override
+                public long getPos() {
+                    return position;
+                }
+
+                @Override
+                public void write(int b) throws IOException {
+                    outputStream.write(b);
+                    position++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    outputStream.write(b, off, len);
+                    position += len;
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    outputStream.flush();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    outputStream.close();
+                }
+            };
+        }
+
+        @Override
+        public PositionOutputStream createOrOverwrite(long blockSizeHint) {
+            return create(blockSizeHint);
+        }
+
+        @Override
+        public boolean supportsBlockSize() {
+            return false;
+        }
+
+        @Override
+        public long defaultBlockSize() {
+            return 0;
+        }
+    }
+}
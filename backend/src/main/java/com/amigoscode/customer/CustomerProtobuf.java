@@ -0,0 +1,57 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.customer.proto.CustomerList;
+import com.google.protobuf.CodedOutputStream;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.util.Set;
+
+// Maps customers onto the messages protoc generates from src/main/proto/customer.proto.
+// A CustomerList is nothing but repeated field 1 entries, so a list is written one
+// customer message at a time instead of being built up as a whole first.
+final class CustomerProtobuf {
+
+    static final String MEDIA_TYPE_VALUE = "application/x-protobuf";
+    static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    private CustomerProtobuf() {
+    }
+
+    static com.amigoscode.customer.proto.Customer toMessage(Customer customer, Set<CustomerField> fields) {
+        com.amigoscode.customer.proto.Customer.Builder message = com.amigoscode.customer.proto.Customer.newBuilder();
+        if (selected(fields, CustomerField.ID, customer.getId())) {
+            message.setId(customer.getId());
+        }
+        if (selected(fields, CustomerField.NAME, customer.getName())) {
+            message.setName(customer.getName());
+        }
+        if (selected(fields, CustomerField.EMAIL, customer.getEmail())) {
+            message.setEmail(customer.getEmail());
+        }
+        if (selected(fields, CustomerField.AGE, customer.getAge())) {
+            message.setAge(customer.getAge());
+        }
+        return message.build();
+    }
+
+    static com.amigoscode.customer.proto.CustomerPage toMessage(CustomerPage page, Set<CustomerField> fields) {
+        com.amigoscode.customer.proto.CustomerPage.Builder message = com.amigoscode.customer.proto.CustomerPage.newBuilder();
+        for (Customer customer : page.customers()) {
+            message.addCustomers(toMessage(customer, fields));
+        }
+        if (page.nextCursor() != null) {
+            message.setNextCursor(page.nextCursor());
+        }
+        return message.build();
+    }
+
+    // one entry of CustomerList.customers
+    static void writeListElement(CodedOutputStream output, Customer customer, Set<CustomerField> fields) throws IOException {
+        output.writeMessage(CustomerList.CUSTOMERS_FIELD_NUMBER, toMessage(customer, fields));
+    }
+
+    private static boolean selected(Set<CustomerField> fields, CustomerField field, Object value) {
+        return value != null && fields.contains(field);
+    }
+}
@@ -0,0 +1,62 @@
+package com.amigoscode.customer;
+
+import com.google.protobuf.CodedOutputStream;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+// Writes Customer, CustomerPage and customer lists (the latter only wrapped in a
+// CustomerFieldsValue, which carries the element type) as application/x-protobuf.
+// Responses only, request bodies stay JSON.
+class CustomerProtobufHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    CustomerProtobufHttpMessageConverter() {
+        super(CustomerProtobuf.MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == Customer.class || clazz == CustomerPage.class || clazz == CustomerFieldsValue.class;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("protobuf request bodies are not supported", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object body, HttpOutputMessage outputMessage) throws IOException {
+        Object value = body;
+        Set<CustomerField> fields = CustomerField.ALL;
+        if (body instanceof CustomerFieldsValue fieldsValue) {
+            value = fieldsValue.getValue();
+            fields = fieldsValue.getFields();
+        }
+
+        CodedOutputStream output = CodedOutputStream.newInstance(outputMessage.getBody());
+        if (value instanceof Customer customer) {
+            CustomerProtobuf.toMessage(customer, fields).writeTo(output);
+        } else if (value instanceof CustomerPage page) {
+            CustomerProtobuf.toMessage(page, fields).writeTo(output);
+        } else if (value instanceof List<?> customers) {
+            for (Object customer : customers) {
+                CustomerProtobuf.writeListElement(output, (Customer) customer, fields);
+            }
+        } else {
+            throw new HttpMessageNotWritableException("cannot write %s as protobuf".formatted(value.getClass().getName()));
+        }
+        output.flush();
+    }
+}
@@ -0,0 +1,156 @@
+package com.amigoscode.customer;
+
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository("r2dbc")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "customer.r2dbc.enabled", havingValue = "true")
+public class CustomerR2dbcDataAccessService implements ReactiveCustomerDao {
+
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    private final DatabaseClient databaseClient;
+
+    // fetchSize makes the driver pull the result in portal-sized chunks as
+    // downstream demand arrives instead of buffering the whole table
+    @Override
+    public Flux<Customer> selectAllCustomers() {
+        String sql = """
+                SELECT * FROM customer
+                """;
+        return databaseClient.sql(sql)
+                .filter(statement -> statement.fetchSize(STREAM_FETCH_SIZE))
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .all();
+    }
+
+    @Override
+    public Flux<Customer> selectCustomers(Integer afterId, int limit) {
+        String sql = """
+                SELECT * FROM customer WHERE id > $1 ORDER BY id LIMIT $2
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, afterId == null ? 0 : afterId)
+                .bind(1, limit)
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .all();
+    }
+
+    @Override
+    public Mono<Customer> selectCustomerById(Integer id) {
+        String sql = """
+                SELECT * FROM customer WHERE id = $1
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, id)
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .one();
+    }
+
+    @Override
+    public Mono<Void> insertCustomer(Customer customer) {
+        String sql = """
+                INSERT INTO customer(name, email, age)
+                VALUES ($1, $2, $3)
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, customer.getName())
+                .bind(1, customer.getEmail())
+                .bind(2, customer.getAge())
+                .then();
+    }
+
+    @Override
+    public Mono<Boolean> existsCustomerWithEmail(String email) {
+        String sql = """
+                SELECT EXISTS(SELECT 1 FROM customer WHERE email = $1)
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, email)
+                .map(row -> Boolean.TRUE.equals(row.get(0, Boolean.class)))
+                .one();
+    }
+
+    @Override
+    public Mono<Boolean> existsCustomerWithId(Integer id) {
+        String sql = """
+                SELECT EXISTS(SELECT 1 FROM customer WHERE id = $1)
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, id)
+                .map(row -> Boolean.TRUE.equals(row.get(0, Boolean.class)))
+                .one();
+    }
+
+    @Override
+    public Mono<Void> deleteCustomerById(Integer customerId) {
+        String sql = """
+                DELETE FROM customer WHERE id = $1
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, customerId)
+                .then();
+    }
+
+    // same single conditional UPDATE as the JDBC variant
+    @Override
+    public Mono<Customer> updateCustomer(Customer update) {
+        Map<String, Object> columns = new LinkedHashMap<>();
+        if (update.getName() != null) {
+            columns.put("name", update.getName());
+        }
+        if (update.getEmail() != null) {
+            columns.put("email", update.getEmail());
+        }
+        if (update.getAge() != null) {
+            columns.put("age", update.getAge());
+        }
+        if (columns.isEmpty()) {
+            return Mono.empty();
+        }
+
+        List<String> assignments = new ArrayList<>();
+        List<String> differences = new ArrayList<>();
+        int idIndex = columns.size() + 1;
+        int i = 1;
+        for (String column : columns.keySet()) {
+            assignments.add("%s = $%d".formatted(column, i));
+            differences.add("%s <> $%d".formatted(column, i));
+            i++;
+        }
+
+        String sql = """
+                UPDATE customer SET %s, version = version + 1 WHERE id = $%d AND (%s) RETURNING *
+                """.formatted(String.join(", ", assignments), idIndex, String.join(" OR ", differences));
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql);
+        int index = 0;
+        for (Object value : columns.values()) {
+            spec = spec.bind(index++, value);
+        }
+        return spec.bind(index, update.getId())
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .one();
+    }
+
+    private static Customer mapRow(Readable row) {
+        return new Customer(
+                row.get("id", Integer.class),
+                row.get("name", String.class),
+                row.get("email", String.class),
+                row.get("age", Integer.class),
+                row.get("version", Long.class)
+        );
+    }
+}
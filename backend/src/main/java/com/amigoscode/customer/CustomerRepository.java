@@ -1,12 +1,111 @@
 package com.amigoscode.customer;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
 
-public interface CustomerRepository extends JpaRepository<Customer, Integer> {
+public interface CustomerRepository extends JpaRepository<Customer, Integer>, CustomerSearchRepository {
 
     boolean existsCustomerByEmail(String email);
 
     boolean existsCustomerById(Integer id);
 
+    List<Customer> findByIdGreaterThanOrderByIdAsc(Integer id, Pageable pageable);
+
+    // with a projection interface only its properties are selected
+    <T> List<T> findByIdGreaterThanOrderByIdAsc(Integer id, Pageable pageable, Class<T> type);
+
+    @Query("select c.version from Customer c where c.id = :id")
+    Optional<Long> findVersionById(Integer id);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Customer c where c.id = :id and c.version = :version")
+    int deleteByIdAndVersion(Integer id, long version);
+
+    // profile_image_id is not mapped on the entity, it never travels with a Customer
+    @Query(nativeQuery = true, value = "SELECT profile_image_id FROM customer WHERE id = :id")
+    Optional<String> findProfileImageIdById(Integer id);
+
+    // as in CustomerJDBCDataAccessService.updateProfileImageId
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            UPDATE customer SET profile_image_id = CAST(:replacement AS VARCHAR)
+            WHERE id = :id AND profile_image_id IS NOT DISTINCT FROM CAST(:expected AS VARCHAR)
+            """)
+    int updateProfileImageId(Integer id, String expected, String replacement);
+
+    // the change log written by the V6 trigger, read as in CustomerJDBCDataAccessService.selectChanges
+    @Query(nativeQuery = true, value = """
+            SELECT ch.tx AS "tx", ch.seq AS "seq", ch.customer_id AS "customerId",
+                   ch.deleted OR c.id IS NULL AS "gone",
+                   c.id AS "id", c.version AS "version", c.name AS "name", c.email AS "email", c.age AS "age"
+            FROM customer_change ch
+            LEFT JOIN customer c ON c.id = ch.customer_id
+            WHERE (ch.tx, ch.seq) > (:tx, :seq)
+              AND ch.tx < pg_snapshot_xmin(pg_current_snapshot())::text::bigint
+            ORDER BY ch.tx, ch.seq
+            LIMIT :limit
+            """)
+    List<CustomerChangeRow> findChanges(long tx, long seq, int limit);
+
+    @Query(nativeQuery = true, value = """
+            SELECT (CAST(:tx AS BIGINT), CAST(:seq AS BIGINT)) < (tx, seq) FROM customer_change_horizon
+            """)
+    boolean isBeforeChangeHorizon(long tx, long seq);
+
+    // as in CustomerJDBCDataAccessService.deleteChangesBefore; a query rather than @Modifying
+    // because the statement answers with the count of its DELETE
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            WITH deleted AS (
+                DELETE FROM customer_change
+                WHERE seq IN (SELECT seq FROM customer_change WHERE changed_at < :cutoff LIMIT :limit)
+                RETURNING tx, seq
+            ), horizon AS (
+                UPDATE customer_change_horizon h
+                SET tx = newest.tx, seq = newest.seq
+                FROM (SELECT tx, seq FROM deleted ORDER BY tx DESC, seq DESC LIMIT 1) newest
+                WHERE (newest.tx, newest.seq) > (h.tx, h.seq)
+            )
+            SELECT count(*) FROM deleted
+            """)
+    int deleteChangesBefore(Instant cutoff, int limit);
+
+    // what the typeahead asks for with ?fields=id,name
+    interface CustomerSummary {
+        Integer getId();
+
+        String getName();
+
+        Long getVersion();
+    }
+
+    interface CustomerChangeRow {
+        Long getTx();
+
+        Long getSeq();
+
+        Integer getCustomerId();
+
+        Boolean getGone();
+
+        Integer getId();
+
+        Long getVersion();
+
+        String getName();
+
+        String getEmail();
+
+        Integer getAge();
+    }
+
 }
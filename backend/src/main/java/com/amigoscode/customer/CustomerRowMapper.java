@@ -5,16 +5,74 @@ import org.springframework.stereotype.Component;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Set;
 
 @Component
 public class CustomerRowMapper implements RowMapper<Customer> {
+    // by column name on every row, for callers that map the odd row themselves
     @Override
     public Customer mapRow(ResultSet rs, int rowNum) throws SQLException {
         return new Customer(
                 rs.getInt("id"),
                 rs.getString("name"),
                 rs.getString("email"),
-                rs.getInt("age")
+                rs.getInt("age"),
+                rs.getLong("version")
         );
     }
+
+    // for select lists built by CustomerField.columns(fields). The column ordinals are looked
+    // up once per result set rather than by name for every row, which makes the mapper
+    // stateful: take a new one for every query
+    public RowMapper<Customer> projecting(Set<CustomerField> fields) {
+        return new OrdinalRowMapper(fields);
+    }
+
+    private static final class OrdinalRowMapper implements RowMapper<Customer> {
+
+        private final boolean name;
+        private final boolean email;
+        private final boolean age;
+        private ResultSet resolvedFor;
+        private int idColumn;
+        private int versionColumn;
+        private int nameColumn;
+        private int emailColumn;
+        private int ageColumn;
+
+        private OrdinalRowMapper(Set<CustomerField> fields) {
+            this.name = fields.contains(CustomerField.NAME);
+            this.email = fields.contains(CustomerField.EMAIL);
+            this.age = fields.contains(CustomerField.AGE);
+        }
+
+        @Override
+        public Customer mapRow(ResultSet rs, int rowNum) throws SQLException {
+            if (rs != resolvedFor) {
+                resolve(rs);
+            }
+            Customer customer = new Customer();
+            customer.setId(rs.getInt(idColumn));
+            customer.setVersion(rs.getLong(versionColumn));
+            if (name) {
+                customer.setName(rs.getString(nameColumn));
+            }
+            if (email) {
+                customer.setEmail(rs.getString(emailColumn));
+            }
+            if (age) {
+                customer.setAge(rs.getInt(ageColumn));
+            }
+            return customer;
+        }
+
+        private void resolve(ResultSet rs) throws SQLException {
+            idColumn = rs.findColumn("id");
+            versionColumn = rs.findColumn("version");
+            nameColumn = name ? rs.findColumn("name") : 0;
+            emailColumn = email ? rs.findColumn("email") : 0;
+            ageColumn = age ? rs.findColumn("age") : 0;
+            resolvedFor = rs;
+        }
+    }
 }
@@ -0,0 +1,22 @@
+package com.amigoscode.customer;
+
+public record CustomerSearchCriteria(String name,
+                                     String namePrefix,
+                                     String emailDomain,
+                                     Integer minAge,
+                                     Integer maxAge,
+                                     CustomerSort sort) {
+
+    // LIKE patterns with the user's own wildcards escaped (backslash is the default escape character)
+    String namePattern() {
+        return "%" + escapeLike(name) + "%";
+    }
+
+    String namePrefixPattern() {
+        return escapeLike(namePrefix) + "%";
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
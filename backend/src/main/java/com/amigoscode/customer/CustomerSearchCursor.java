@@ -0,0 +1,35 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// position of the last row of a page: its sort key and id. Opaque to clients and
+// bound to the sort it was issued for, so it cannot be replayed against another order.
+public record CustomerSearchCursor(Object key, Integer id) {
+
+    private static final String SEPARATOR = "\u0000";
+
+    static CustomerSearchCursor after(Customer customer, CustomerSort sort) {
+        return new CustomerSearchCursor(sort.field().keyOf(customer), customer.getId());
+    }
+
+    String encode(CustomerSort sort) {
+        String value = sort + SEPARATOR + (key == null ? "" : key) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static CustomerSearchCursor decode(String cursor, CustomerSort sort) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                    .split(SEPARATOR, -1);
+            if (parts.length != 3 || !parts[0].equals(sort.toString())) {
+                throw new IllegalArgumentException(cursor);
+            }
+            return new CustomerSearchCursor(sort.field().parseKey(parts[1]), Integer.valueOf(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new RequestValidationException("invalid cursor for sort %s".formatted(sort));
+        }
+    }
+}
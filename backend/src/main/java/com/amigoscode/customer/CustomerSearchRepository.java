@@ -0,0 +1,11 @@
+package com.amigoscode.customer;
+
+import java.util.List;
+import java.util.Set;
+
+public interface CustomerSearchRepository {
+
+    List<Customer> search(CustomerSearchCriteria criteria, CustomerSearchCursor after, int limit,
+                          Set<CustomerField> fields);
+
+}
@@ -0,0 +1,108 @@
+package com.amigoscode.customer;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+class CustomerSearchRepositoryImpl implements CustomerSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<Customer> search(CustomerSearchCriteria criteria, CustomerSearchCursor after, int limit,
+                                 Set<CustomerField> fields) {
+        HibernateCriteriaBuilder cb = (HibernateCriteriaBuilder) entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Customer> customer = query.from(Customer.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (criteria.name() != null) {
+            predicates.add(cb.ilike(customer.get("name"), criteria.namePattern(), '\\'));
+        }
+        if (criteria.namePrefix() != null) {
+            predicates.add(cb.ilike(customer.get("name"), criteria.namePrefixPattern(), '\\'));
+        }
+        if (criteria.emailDomain() != null) {
+            Expression<String> domain = cb.function("split_part", String.class,
+                    new Expression<?>[]{customer.get("email"), cb.literal("@"), cb.literal(2)});
+            predicates.add(cb.equal(cb.lower(domain), criteria.emailDomain().toLowerCase()));
+        }
+        if (criteria.minAge() != null) {
+            predicates.add(cb.ge(customer.get("age"), criteria.minAge()));
+        }
+        if (criteria.maxAge() != null) {
+            predicates.add(cb.le(customer.get("age"), criteria.maxAge()));
+        }
+
+        CustomerSort sort = criteria.sort();
+        Path<Integer> id = customer.get("id");
+        if (after != null) {
+            // JPQL has no row value comparison, so (key, id) > (?, ?) is spelled out
+            Predicate idAfter = sort.descending() ? cb.lt(id, after.id()) : cb.gt(id, after.id());
+            if (sort.field() == CustomerSortField.ID) {
+                predicates.add(idAfter);
+            } else {
+                Path<Comparable> key = customer.get(sort.field().column());
+                Comparable value = (Comparable) after.key();
+                predicates.add(cb.or(
+                        sort.descending() ? cb.lessThan(key, value) : cb.greaterThan(key, value),
+                        cb.and(cb.equal(key, value), idAfter)));
+            }
+        }
+
+        List<Order> orderBy = new ArrayList<>();
+        if (sort.field() != CustomerSortField.ID) {
+            Path<?> key = customer.get(sort.field().column());
+            orderBy.add(sort.descending() ? cb.desc(key) : cb.asc(key));
+        }
+        orderBy.add(sort.descending() ? cb.desc(id) : cb.asc(id));
+
+        // a tuple of just the selected columns instead of managed entities, so neither
+        // the unused columns nor the persistence context bookkeeping are paid for
+        Set<CustomerField> projection = EnumSet.of(sort.field().field());
+        projection.addAll(fields);
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(id.alias("id"));
+        selections.add(customer.get("version").alias("version"));
+        for (CustomerField field : projection) {
+            if (field != CustomerField.ID) {
+                selections.add(customer.get(field.column()).alias(field.column()));
+            }
+        }
+
+        query.multiselect(selections)
+                .where(predicates.toArray(Predicate[]::new))
+                .orderBy(orderBy);
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList()
+                .stream()
+                .map(tuple -> toCustomer(tuple, projection))
+                .toList();
+    }
+
+    private static Customer toCustomer(Tuple tuple, Set<CustomerField> projection) {
+        Customer customer = new Customer();
+        customer.setId(tuple.get("id", Integer.class));
+        customer.setVersion(tuple.get("version", Long.class));
+        for (CustomerField field : projection) {
+            field.set(customer, tuple.get(field.column()));
+        }
+        return customer;
+    }
+}
@@ -2,45 +2,309 @@ package com.amigoscode.customer;
 
 import com.amigoscode.exception.RequestValidationException;
 import com.amigoscode.exception.DuplicateResourceException;
+import com.amigoscode.exception.PreconditionFailedException;
 import com.amigoscode.exception.ResourceNotFoundException;
+import com.amigoscode.exception.ServiceUnavailableException;
+import com.amigoscode.storage.ObjectStore;
+import com.amigoscode.storage.StoredObject;
+import io.micrometer.observation.annotation.Observed;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
+@Observed(name = "customer.service")
 public class CustomerService {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    private static final int MAX_REPORTED_IMPORT_ERRORS = 1000;
+
     private final CustomerDao customerDao;
+    private final Optional<CustomerInsertCoalescer> insertCoalescer;
+    private final ObjectStore objectStore;
+    private final long maxProfileImageSize;
 
-    public CustomerService(@Qualifier("jdbc") CustomerDao customerDao) {
+    public CustomerService(@Qualifier("cached") CustomerDao customerDao,
+                           Optional<CustomerInsertCoalescer> insertCoalescer,
+                           ObjectStore objectStore,
+                           @Value("${customer.profile-images.max-size:5MB}") DataSize maxProfileImageSize) {
         this.customerDao = customerDao;
+        this.insertCoalescer = insertCoalescer;
+        this.objectStore = objectStore;
+        this.maxProfileImageSize = maxProfileImageSize.toBytes();
     }
 
     public List<Customer> getAllCustomers() {
         return customerDao.selectAllCustomers();
     }
 
+    public List<Customer> getCustomers(Integer afterId, int limit, Set<CustomerField> fields) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new RequestValidationException("limit must be between 1 and %s".formatted(MAX_PAGE_SIZE));
+        }
+        return customerDao.selectCustomers(afterId, limit, fields);
+    }
+
+    // fetches one row more than requested to know whether another page exists
+    public CustomerPage searchCustomers(CustomerSearchCriteria criteria, String cursor, int limit,
+                                        Set<CustomerField> fields) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new RequestValidationException("limit must be between 1 and %s".formatted(MAX_PAGE_SIZE));
+        }
+        if (criteria.minAge() != null && criteria.maxAge() != null && criteria.minAge() > criteria.maxAge()) {
+            throw new RequestValidationException("minAge must not be greater than maxAge");
+        }
+        CustomerSort sort = criteria.sort();
+        CustomerSearchCursor after = cursor == null ? null : CustomerSearchCursor.decode(cursor, sort);
+
+        List<Customer> customers = customerDao.searchCustomers(criteria, after, limit + 1, fields);
+        if (customers.size() <= limit) {
+            return new CustomerPage(customers, null);
+        }
+        List<Customer> page = customers.subList(0, limit);
+        return new CustomerPage(page, CustomerSearchCursor.after(page.get(limit - 1), sort).encode(sort));
+    }
+
+    public void streamAllCustomers(Set<CustomerField> fields, Consumer<Customer> consumer) {
+        customerDao.streamAllCustomers(fields, consumer);
+    }
+
+    // afterId < id <= toId in id order, with id whatever the fields, so an export that broke
+    // off can go on after the last id it wrote
+    public void exportCustomers(Integer afterId, Integer toId, Set<CustomerField> fields, Consumer<Customer> consumer) {
+        customerDao.streamCustomers(afterId, toId, exportFields(fields), consumer);
+    }
+
+    public static Set<CustomerField> exportFields(Set<CustomerField> fields) {
+        Set<CustomerField> exported = EnumSet.of(CustomerField.ID);
+        exported.addAll(fields);
+        return exported;
+    }
+
     public Customer getCustomer(Integer id) {
         return customerDao.selectCustomerById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("customer with id %s not found".formatted(id)));
     }
 
+    public long getCustomerVersion(Integer id) {
+        return customerDao.selectCustomerVersion(id)
+                .orElseThrow(() -> new ResourceNotFoundException("customer with id %s not found".formatted(id)));
+    }
+
+    // relies on customer_email_unique instead of probing for the email first,
+    // which saves a round trip and cannot race with a concurrent registration
     public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
         String email = customerRegistrationRequest.email();
-        emailCheck(email);
-        customerDao.insertCustomer(
-                new Customer(customerRegistrationRequest.name(),
-                        customerRegistrationRequest.email(),
-                        customerRegistrationRequest.age()));
+        Customer customer = new Customer(customerRegistrationRequest.name(),
+                email,
+                customerRegistrationRequest.age());
+        try {
+            if (insertCoalescer.isPresent()) {
+                await(insertCoalescer.get().insert(customer), insertCoalescer.get().maxWait());
+            } else {
+                customerDao.insertCustomer(customer);
+            }
+        } catch (DuplicateKeyException e) {
+            throw new DuplicateResourceException("Customer with email %s already exist".formatted(email));
+        }
+    }
+
+    // the request thread waits for its batch: at most max-latency plus one INSERT.
+    // A registration that times out may still be written, a retry then reports the email as taken
+    private static <T> T await(CompletableFuture<T> future, Duration maxWait) {
+        try {
+            return future.get(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ServiceUnavailableException("registration was not written within %s, retry later"
+                    .formatted(maxWait));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("interrupted while waiting for the registration to be written");
+        }
+    }
+
+    public CustomerImportResult importCustomers(Stream<CustomerImportRow> rows) {
+        ImportReport report = new ImportReport();
+        List<CustomerImportRow> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
 
+        Iterator<CustomerImportRow> iterator = rows.iterator();
+        while (iterator.hasNext()) {
+            CustomerImportRow row = iterator.next();
+            String error = row.error() != null ? row.error() : validate(row.request());
+            if (error != null) {
+                report.reject(row.line(), error);
+                continue;
+            }
+            batch.add(row);
+            if (batch.size() == IMPORT_BATCH_SIZE) {
+                importBatch(batch, report);
+                batch.clear();
+            }
+        }
+        importBatch(batch, report);
+
+        return report.toResult();
+    }
+
+    private void importBatch(List<CustomerImportRow> batch, ImportReport report) {
+        Set<String> emails = new HashSet<>();
+        List<CustomerImportRow> accepted = new ArrayList<>(batch.size());
+        for (CustomerImportRow row : batch) {
+            if (emails.add(row.request().email())) {
+                accepted.add(row);
+            } else {
+                report.reject(row.line(), "duplicate email %s in import".formatted(row.request().email()));
+            }
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        Map<String, Integer> ids = customerDao.insertCustomers(accepted.stream()
+                .map(row -> new Customer(row.request().name(), row.request().email(), row.request().age()))
+                .toList());
+
+        for (CustomerImportRow row : accepted) {
+            if (ids.containsKey(row.request().email())) {
+                report.imported++;
+            } else {
+                report.reject(row.line(), "Customer with email %s already exist".formatted(row.request().email()));
+            }
+        }
+    }
+
+    private static String validate(CustomerRegistrationRequest request) {
+        if (request.name() == null || request.name().isBlank()
+                || request.email() == null || request.email().isBlank()
+                || request.age() == null) {
+            return "name, email and age are required";
+        }
+        if (request.age() < 0) {
+            return "age must not be negative";
+        }
+        return null;
     }
 
+    // the profile image goes with the customer; one uploaded between reading its id and
+    // the delete is left behind in the object store
     public void deleteCustomerById(Integer id) {
         if (!customerDao.existsCustomerWithId(id)) {
             throw new ResourceNotFoundException("customer with id %s not found".formatted(id));
         }
+        Optional<String> profileImageId = customerDao.selectProfileImageId(id);
         customerDao.deleteCustomerById(id);
+        profileImageId.ifPresent(this::deleteObject);
+    }
+
+    public void deleteCustomerById(Integer id, Long expectedVersion) {
+        if (expectedVersion == null) {
+            deleteCustomerById(id);
+            return;
+        }
+        Optional<String> profileImageId = customerDao.selectProfileImageId(id);
+        if (!customerDao.deleteCustomerByIdAndVersion(id, expectedVersion)) {
+            throw versionMismatch(id, expectedVersion);
+        }
+        profileImageId.ifPresent(this::deleteObject);
+    }
+
+    // Streams the image into the object store under a new id, then points the customer at
+    // it with a compare-and-set, so of concurrent uploads exactly one wins and every
+    // replaced image is deleted. Returns the new image id.
+    public String putProfileImage(Integer id, InputStream content) {
+        if (!customerDao.existsCustomerWithId(id)) {
+            throw new ResourceNotFoundException("customer with id %s not found".formatted(id));
+        }
+        String imageId = UUID.randomUUID().toString();
+        try {
+            BufferedInputStream buffered = new BufferedInputStream(content);
+            ProfileImageFormat format = ProfileImageFormat.detect(buffered)
+                    .orElseThrow(() -> new RequestValidationException("profile image must be a JPEG, PNG, GIF or WebP image"));
+            objectStore.put(imageId, format.contentType(), buffered, maxProfileImageSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        while (true) {
+            Optional<String> previous = customerDao.selectProfileImageId(id);
+            if (customerDao.updateProfileImageId(id, previous.orElse(null), imageId)) {
+                previous.ifPresent(this::deleteObject);
+                return imageId;
+            }
+            if (!customerDao.existsCustomerWithId(id)) {
+                deleteObject(imageId);
+                throw new ResourceNotFoundException("customer with id %s not found".formatted(id));
+            }
+        }
+    }
+
+    public String getProfileImageId(Integer id) {
+        return customerDao.selectProfileImageId(id)
+                .orElseThrow(() -> new ResourceNotFoundException("customer with id %s has no profile image".formatted(id)));
+    }
+
+    // only the customer's current image, so a replaced one is gone at once even where the
+    // store has not deleted it yet
+    public StoredObject getProfileImage(Integer id, String imageId) {
+        if (!customerDao.selectProfileImageId(id).map(imageId::equals).orElse(false)) {
+            throw new ResourceNotFoundException("customer with id %s has no profile image %s".formatted(id, imageId));
+        }
+        try {
+            return objectStore.get(imageId)
+                    .orElseThrow(() -> new ResourceNotFoundException("profile image %s not found".formatted(imageId)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void deleteProfileImage(Integer id) {
+        while (true) {
+            Optional<String> previous = customerDao.selectProfileImageId(id);
+            if (previous.isEmpty()) {
+                throw new ResourceNotFoundException("customer with id %s has no profile image".formatted(id));
+            }
+            if (customerDao.updateProfileImageId(id, previous.get(), null)) {
+                deleteObject(previous.get());
+                return;
+            }
+        }
+    }
+
+    private void deleteObject(String key) {
+        try {
+            objectStore.delete(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
 //    public void updateCustomer(Integer customerId, CustomerRegistrationRequest updateRequest) {
@@ -66,32 +330,74 @@ public class CustomerService {
 //            customerDao.insertCustomer(customer);
 //        }
 //    }
-    public void updateCustomer(Integer customerId, CustomerRegistrationRequest updateRequest) {
-        Customer customer = getCustomer(customerId);
-        boolean changes = false;
+    public Customer updateCustomer(Integer customerId, CustomerRegistrationRequest updateRequest) {
+        return updateCustomer(customerId, updateRequest, null);
+    }
+
+    // with an expectedVersion the write is conditional in the same statement, so
+    // If-Match costs no extra read unless the update is rejected
+    public Customer updateCustomer(Integer customerId, CustomerRegistrationRequest updateRequest, Long expectedVersion) {
+        Customer update = new Customer(customerId,
+                updateRequest.name(),
+                updateRequest.email(),
+                updateRequest.age(),
+                expectedVersion);
 
-        if (updateRequest.email() != null && !updateRequest.email().equals(customer.getEmail())) {
-            emailCheck(updateRequest.email());
-            customer.setEmail(updateRequest.email());
-            changes = true;
+        Optional<Customer> updated;
+        try {
+            updated = customerDao.updateCustomer(update);
+        } catch (DuplicateKeyException e) {
+            throw new DuplicateResourceException("Customer with email %s already exist".formatted(updateRequest.email()));
+        } catch (OptimisticLockingFailureException e) {
+            throw new PreconditionFailedException("customer with id %s was modified concurrently".formatted(customerId));
         }
-        if (updateRequest.name() != null && !updateRequest.name().equals(customer.getName())) {
-            customer.setName(updateRequest.name());
-            changes = true;
+
+        if (updated.isPresent()) {
+            return updated.get();
         }
-        if (updateRequest.age() != null && !updateRequest.age().equals(customer.getAge())) {
-            customer.setAge(updateRequest.age());
-            changes = true;
+        if (expectedVersion != null) {
+            throw versionMismatch(customerId, expectedVersion);
         }
-        if (!changes) {
-            throw new RequestValidationException("no data change found");
+        if (!customerDao.existsCustomerWithId(customerId)) {
+            throw new ResourceNotFoundException("customer with id %s not found".formatted(customerId));
         }
-        customerDao.updateCustomer(customer);
+        throw new RequestValidationException("no data change found");
     }
 
-    private void emailCheck(String email) {
-        if (customerDao.existsCustomerWithEmail(email)) {
-            throw new DuplicateResourceException("Customer with email %s already exist".formatted(email));
+    public CustomerChangePage getChanges(String since, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new RequestValidationException("limit must be between 1 and %s".formatted(MAX_PAGE_SIZE));
+        }
+        List<CustomerChange> changes = customerDao.selectChanges(since, limit);
+        return new CustomerChangePage(changes, changes.isEmpty() ? since : changes.get(changes.size() - 1).token());
+    }
+
+    private RuntimeException versionMismatch(Integer customerId, long expectedVersion) {
+        Optional<Long> version = customerDao.selectCustomerVersion(customerId);
+        if (version.isEmpty()) {
+            return new ResourceNotFoundException("customer with id %s not found".formatted(customerId));
+        }
+        if (version.get() != expectedVersion) {
+            return new PreconditionFailedException("customer with id %s is at version %s, not %s"
+                    .formatted(customerId, version.get(), expectedVersion));
+        }
+        return new RequestValidationException("no data change found");
+    }
+
+    private static final class ImportReport {
+        private long imported;
+        private long failed;
+        private final List<CustomerImportError> errors = new ArrayList<>();
+
+        private void reject(long line, String reason) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_IMPORT_ERRORS) {
+                errors.add(new CustomerImportError(line, reason));
+            }
+        }
+
+        private CustomerImportResult toResult() {
+            return new CustomerImportResult(imported, failed, errors);
         }
     }
 }
@@ -0,0 +1,471 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.config.ShardDataSources;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.annotation.Observed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Spreads customers over the shards of customer.sharding.shards by a consistent hash of
+// the id. customer_directory on the main database hands out ids and owns email uniqueness:
+// an insert claims its email there first, and an email lookup probes exactly one shard.
+// Queries that are not by id go to every shard in parallel and the sorted pages are merged.
+// The change feed token is a vector of per-shard tokens.
+// Writes spanning the directory and a shard are not atomic. A failed shard write releases
+// the email again, but a crash in between can leave an email reserved without a customer.
+@Repository("sharded")
+@ConditionalOnProperty(name = "customer.sharding.enabled", havingValue = "true")
+@Observed(name = "customer.dao")
+@Slf4j
+public class CustomerShardedDataAccessService implements CustomerDao, DisposableBean {
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+    private static final int EXPORT_BATCH_SIZE = 10_000;
+    // scatter queries per shard in flight at once, beyond that they queue
+    private static final int THREADS_PER_SHARD = 4;
+
+    private final JdbcTemplate directory;
+    private final ConsistentHashRing<Shard> ring;
+    private final ExecutorService executor;
+
+    public CustomerShardedDataAccessService(JdbcTemplate jdbcTemplate,
+                                            ShardDataSources shardDataSources,
+                                            CustomerRowMapper rowMapper,
+                                            ObservationRegistry observationRegistry,
+                                            @Value("${customer.sharding.virtual-nodes:128}") int virtualNodes) {
+        this.directory = jdbcTemplate;
+        Map<String, Shard> shards = new LinkedHashMap<>();
+        shardDataSources.shards().forEach((name, dataSource) -> {
+            JdbcTemplate shardTemplate = new JdbcTemplate(dataSource);
+            CustomerJDBCDataAccessService customers =
+                    new CustomerJDBCDataAccessService(shardTemplate, rowMapper, observationRegistry);
+            customers.orderTextByCodePoint();
+            // the shard DAOs are not Spring beans, so their @Transactional does nothing
+            TransactionTemplate reads = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            reads.setReadOnly(true);
+            shards.put(name, new Shard(name, shardTemplate, customers, reads));
+        });
+        this.ring = new ConsistentHashRing<>(shards, virtualNodes);
+
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(shards.size() * THREADS_PER_SHARD, task -> {
+            Thread thread = new Thread(task, "customer-shard-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return merge(scatter(CustomerDao::selectAllCustomers), Comparator.comparing(Customer::getId), Integer.MAX_VALUE);
+    }
+
+    // every shard returns its first `limit` ids after afterId, the global page is among them
+    @Override
+    public List<Customer> selectCustomers(Integer afterId, int limit, Set<CustomerField> fields) {
+        return merge(scatter(shard -> shard.selectCustomers(afterId, limit, fields)),
+                Comparator.comparing(Customer::getId), limit);
+    }
+
+    // one shard after another: the consumer writes to a single response stream. Each in a
+    // transaction of its own, without one pgjdbc ignores the fetch size and reads the shard's
+    // whole table into memory
+    @Override
+    public void streamAllCustomers(Set<CustomerField> fields, Consumer<Customer> consumer) {
+        for (Shard shard : ring.nodes()) {
+            shard.reads().executeWithoutResult(status -> shard.customers().streamAllCustomers(fields, consumer));
+        }
+    }
+
+    // a merge of the shards' keyset pages, so the whole range comes out in id order
+    // and an export can resume after the last id it wrote; every row is read once.
+    // No cursor is needed: memory is bounded by the LIMIT of one page per shard
+    @Override
+    public void streamCustomers(Integer afterId, Integer toId, Set<CustomerField> fields, Consumer<Customer> consumer) {
+        PriorityQueue<ShardPages> heads = new PriorityQueue<>(Comparator.comparing(pages -> pages.head().getId()));
+        for (Shard shard : ring.nodes()) {
+            ShardPages pages = new ShardPages(shard.customers(), afterId, fields);
+            if (pages.advance()) {
+                heads.add(pages);
+            }
+        }
+        while (!heads.isEmpty()) {
+            ShardPages pages = heads.poll();
+            if (toId != null && pages.head().getId() > toId) {
+                return;
+            }
+            consumer.accept(pages.head());
+            if (pages.advance()) {
+                heads.add(pages);
+            }
+        }
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria, CustomerSearchCursor after, int limit,
+                                          Set<CustomerField> fields) {
+        return merge(scatter(shard -> shard.searchCustomers(criteria, after, limit, fields)),
+                criteria.sort().comparator(), limit);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return shardFor(id).customers().selectCustomerById(id);
+    }
+
+    @Override
+    public Optional<Long> selectCustomerVersion(Integer id) {
+        return shardFor(id).customers().selectCustomerVersion(id);
+    }
+
+    @Override
+    public Optional<String> selectProfileImageId(Integer id) {
+        return shardFor(id).customers().selectProfileImageId(id);
+    }
+
+    @Override
+    public boolean updateProfileImageId(Integer id, String expected, String replacement) {
+        return shardFor(id).customers().updateProfileImageId(id, expected, replacement);
+    }
+
+    // a taken email fails the directory insert with the usual DuplicateKeyException
+    @Override
+    public void insertCustomer(Customer customer) {
+        String sql = """
+                INSERT INTO customer_directory(email) VALUES (?) RETURNING id
+                """;
+        Integer id = directory.queryForObject(sql, Integer.class, customer.getEmail());
+        Shard shard = shardFor(id);
+        try {
+            insertIntoShard(shard, Map.of(id, customer));
+        } catch (RuntimeException e) {
+            release(List.of(id));
+            throw e;
+        }
+    }
+
+    @Override
+    public Map<String, Integer> insertCustomers(List<Customer> customers) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (int from = 0; from < customers.size(); from += INSERT_BATCH_SIZE) {
+            List<Customer> batch = customers.subList(from, Math.min(from + INSERT_BATCH_SIZE, customers.size()));
+            ids.putAll(insertBatch(batch));
+        }
+        return ids;
+    }
+
+    // emails already in the directory are skipped there, the rest is written to the shards in parallel
+    private Map<String, Integer> insertBatch(List<Customer> batch) {
+        String sql = """
+                INSERT INTO customer_directory(email)
+                VALUES %s
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id, email
+                """.formatted(String.join(", ", Collections.nCopies(batch.size(), "(?)")));
+        Map<String, Integer> claimed = new HashMap<>();
+        directory.query(sql, rs -> {
+            claimed.put(rs.getString("email"), rs.getInt("id"));
+        }, batch.stream().map(Customer::getEmail).toArray());
+
+        Map<Shard, Map<Integer, Customer>> byShard = new HashMap<>();
+        Set<Integer> placed = new HashSet<>();
+        for (Customer customer : batch) {
+            Integer id = claimed.get(customer.getEmail());
+            // a repeated email in the batch was claimed once, for its first occurrence
+            if (id != null && placed.add(id)) {
+                byShard.computeIfAbsent(shardFor(id), shard -> new LinkedHashMap<>()).put(id, customer);
+            }
+        }
+
+        RuntimeException failure = null;
+        List<Integer> failed = new ArrayList<>();
+        Map<Shard, CompletableFuture<Void>> writes = new LinkedHashMap<>();
+        byShard.forEach((shard, rows) -> writes.put(shard,
+                CompletableFuture.runAsync(() -> insertIntoShard(shard, rows), executor)));
+        for (Map.Entry<Shard, CompletableFuture<Void>> write : writes.entrySet()) {
+            try {
+                join(write.getValue());
+            } catch (RuntimeException e) {
+                log.warn("insert into {} failed, releasing its emails", write.getKey().name(), e);
+                failed.addAll(byShard.get(write.getKey()).keySet());
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure != null) {
+            release(failed);
+            throw failure;
+        }
+        return claimed;
+    }
+
+    private void insertIntoShard(Shard shard, Map<Integer, Customer> rows) {
+        String sql = """
+                INSERT INTO customer(id, name, email, age)
+                VALUES %s
+                """.formatted(String.join(", ", Collections.nCopies(rows.size(), "(?, ?, ?, ?)")));
+        List<Object> args = new ArrayList<>(rows.size() * 4);
+        rows.forEach((id, customer) -> {
+            args.add(id);
+            args.add(customer.getName());
+            args.add(customer.getEmail());
+            args.add(customer.getAge());
+        });
+        shard.jdbcTemplate().update(sql, args.toArray());
+    }
+
+    private void release(List<Integer> ids) {
+        String sql = """
+                DELETE FROM customer_directory WHERE id = ANY (?)
+                """;
+        directory.update(sql, (Object) ids.toArray(Integer[]::new));
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        String sql = """
+                SELECT id FROM customer_directory WHERE email = ?
+                """;
+        return directory.queryForList(sql, Integer.class, email)
+                .stream()
+                .findFirst()
+                .map(id -> shardFor(id).customers().existsCustomerWithId(id))
+                .orElse(false);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer id) {
+        return shardFor(id).customers().existsCustomerWithId(id);
+    }
+
+    @Override
+    public void deleteCustomerById(Integer customerId) {
+        shardFor(customerId).customers().deleteCustomerById(customerId);
+        release(List.of(customerId));
+    }
+
+    @Override
+    public boolean deleteCustomerByIdAndVersion(Integer customerId, long expectedVersion) {
+        boolean deleted = shardFor(customerId).customers().deleteCustomerByIdAndVersion(customerId, expectedVersion);
+        if (deleted) {
+            release(List.of(customerId));
+        }
+        return deleted;
+    }
+
+    // a new email is claimed in the directory before the shard row changes, and handed
+    // back when the shard update does not go through
+    @Override
+    public Optional<Customer> updateCustomer(Customer update) {
+        CustomerJDBCDataAccessService customers = shardFor(update.getId()).customers();
+        if (update.getEmail() == null) {
+            return customers.updateCustomer(update);
+        }
+
+        String select = """
+                SELECT email FROM customer_directory WHERE id = ?
+                """;
+        Optional<String> previous = directory.queryForList(select, String.class, update.getId()).stream().findFirst();
+        if (previous.isEmpty()) {
+            return Optional.empty();
+        }
+        boolean changed = !previous.get().equals(update.getEmail());
+        if (changed) {
+            setDirectoryEmail(update.getId(), update.getEmail());
+        }
+
+        Optional<Customer> updated;
+        try {
+            updated = customers.updateCustomer(update);
+        } catch (RuntimeException e) {
+            if (changed) {
+                setDirectoryEmail(update.getId(), previous.get());
+            }
+            throw e;
+        }
+        if (updated.isEmpty() && changed) {
+            setDirectoryEmail(update.getId(), previous.get());
+        }
+        return updated;
+    }
+
+    private void setDirectoryEmail(Integer id, String email) {
+        String sql = """
+                UPDATE customer_directory SET email = ? WHERE id = ?
+                """;
+        directory.update(sql, email, id);
+    }
+
+    // each shard's log in its own order, interleaved; every entry's token records how far
+    // into every shard the feed has got. Shards missing from a token start from the beginning
+    @Override
+    public List<CustomerChange> selectChanges(String since, int limit) {
+        Map<String, String> positions = decodePositions(since);
+        List<Shard> shards = List.copyOf(ring.nodes());
+        List<List<CustomerChange>> pages = scatter(shards, shard -> shard.customers()
+                .selectChanges(positions.get(shard.name()), limit));
+
+        List<CustomerChange> changes = new ArrayList<>();
+        for (int i = 0; changes.size() < limit; i++) {
+            boolean more = false;
+            for (int s = 0; s < shards.size() && changes.size() < limit; s++) {
+                List<CustomerChange> page = pages.get(s);
+                if (i < page.size()) {
+                    CustomerChange change = page.get(i);
+                    positions.put(shards.get(s).name(), change.token());
+                    changes.add(new CustomerChange(encodePositions(positions), change.customerId(),
+                            change.deleted(), change.customer()));
+                    more = true;
+                }
+            }
+            if (!more) {
+                break;
+            }
+        }
+        return changes;
+    }
+
+    // every shard keeps its own log, each prunes up to limit of it
+    @Override
+    public int deleteChangesBefore(Instant cutoff, int limit) {
+        return scatter(shard -> shard.deleteChangesBefore(cutoff, limit)).stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+    }
+
+    // shard tokens are url safe base64, so neither separator occurs in them
+    private static String encodePositions(Map<String, String> positions) {
+        String value = positions.entrySet().stream()
+                .map(position -> position.getKey() + "=" + position.getValue())
+                .collect(Collectors.joining(","));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, String> decodePositions(String token) {
+        Map<String, String> positions = new LinkedHashMap<>();
+        if (token == null) {
+            return positions;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            for (String position : value.split(",")) {
+                String[] parts = position.split("=", -1);
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException(token);
+                }
+                positions.put(parts[0], parts[1]);
+            }
+        } catch (IllegalArgumentException e) {
+            throw CustomerChangeToken.invalid();
+        }
+        return positions;
+    }
+
+    private Shard shardFor(Integer id) {
+        return ring.nodeFor(id);
+    }
+
+    private <T> List<T> scatter(Function<CustomerDao, T> query) {
+        return scatter(ring.nodes(), shard -> query.apply(shard.customers()));
+    }
+
+    // results in the order of shards
+    private <T> List<T> scatter(Collection<Shard> shards, Function<Shard, T> query) {
+        List<CompletableFuture<T>> results = shards.stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> query.apply(shard), executor))
+                .toList();
+        return results.stream().map(CustomerShardedDataAccessService::join).toList();
+    }
+
+    private static List<Customer> merge(List<List<Customer>> pages, Comparator<Customer> order, int limit) {
+        return pages.stream()
+                .flatMap(List::stream)
+                .sorted(order)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private static <T> T join(CompletableFuture<T> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    private record Shard(String name, JdbcTemplate jdbcTemplate, CustomerJDBCDataAccessService customers,
+                         TransactionTemplate reads) {
+    }
+
+    // one shard's customers in id order, EXPORT_BATCH_SIZE at a time
+    private static final class ShardPages {
+
+        private final CustomerDao customers;
+        private final Set<CustomerField> fields;
+        private Iterator<Customer> page = Collections.emptyIterator();
+        private boolean lastPage;
+        private Customer head;
+
+        ShardPages(CustomerDao customers, Integer afterId, Set<CustomerField> fields) {
+            this.customers = customers;
+            this.fields = fields;
+            this.head = afterId == null ? null : new Customer(afterId, null, null, null);
+        }
+
+        Customer head() {
+            return head;
+        }
+
+        // false once the shard has no more
+        boolean advance() {
+            if (!page.hasNext() && !lastPage) {
+                List<Customer> next = customers.selectCustomers(head == null ? null : head.getId(), EXPORT_BATCH_SIZE, fields);
+                lastPage = next.size() < EXPORT_BATCH_SIZE;
+                page = next.iterator();
+            }
+            if (!page.hasNext()) {
+                return false;
+            }
+            head = page.next();
+            return true;
+        }
+    }
+}
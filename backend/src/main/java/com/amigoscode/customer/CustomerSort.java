@@ -0,0 +1,50 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+
+public record CustomerSort(CustomerSortField field, boolean descending) {
+
+    public static final CustomerSort DEFAULT = new CustomerSort(CustomerSortField.ID, false);
+
+    // "name" sorts ascending, "-name" descending
+    public static CustomerSort parse(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return DEFAULT;
+        }
+        boolean descending = sort.startsWith("-");
+        String column = descending ? sort.substring(1) : sort;
+        return Arrays.stream(CustomerSortField.values())
+                .filter(field -> field.column().equals(column))
+                .findFirst()
+                .map(field -> new CustomerSort(field, descending))
+                .orElseThrow(() -> new RequestValidationException("sort must be one of %s, optionally prefixed with -"
+                        .formatted(Arrays.stream(CustomerSortField.values())
+                                .map(CustomerSortField::column)
+                                .collect(Collectors.joining(", ")))));
+    }
+
+    // the order searchCustomers returns rows in, for merging pages from several shards. Names
+    // compare by code point, which is how shards are told to sort them (COLLATE "C")
+    Comparator<Customer> comparator() {
+        Comparator<Customer> order = switch (field) {
+            case ID -> Comparator.comparing(Customer::getId);
+            case NAME -> Comparator.comparing(Customer::getName, CustomerSort::compareCodePoints)
+                    .thenComparing(Customer::getId);
+            case AGE -> Comparator.comparing(Customer::getAge).thenComparing(Customer::getId);
+        };
+        return descending ? order.reversed() : order;
+    }
+
+    private static int compareCodePoints(String a, String b) {
+        return Arrays.compare(a.codePoints().toArray(), b.codePoints().toArray());
+    }
+
+    @Override
+    public String toString() {
+        return descending ? "-" + field.column() : field.column();
+    }
+}
@@ -0,0 +1,37 @@
+package com.amigoscode.customer;
+
+import java.util.function.Function;
+
+// every sort is completed with id as a tie breaker so keyset pagination is stable
+public enum CustomerSortField {
+    ID(CustomerField.ID, customer -> null, key -> null),
+    NAME(CustomerField.NAME, Customer::getName, key -> key),
+    AGE(CustomerField.AGE, Customer::getAge, Integer::valueOf);
+
+    private final CustomerField field;
+    private final Function<Customer, Object> key;
+    private final Function<String, Object> keyParser;
+
+    CustomerSortField(CustomerField field, Function<Customer, Object> key, Function<String, Object> keyParser) {
+        this.field = field;
+        this.key = key;
+        this.keyParser = keyParser;
+    }
+
+    public String column() {
+        return field.column();
+    }
+
+    // the key has to be read even when ?fields= leaves it out, the next cursor is built from it
+    public CustomerField field() {
+        return field;
+    }
+
+    Object keyOf(Customer customer) {
+        return key.apply(customer);
+    }
+
+    Object parseKey(String key) {
+        return keyParser.apply(key);
+    }
+}
@@ -0,0 +1,49 @@
+package com.amigoscode.customer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+
+// The image formats accepted as profile images, recognised by their leading bytes
+// rather than by the Content-Type the client claims.
+enum ProfileImageFormat {
+    JPEG("image/jpeg", new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+    PNG("image/png", new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}),
+    GIF("image/gif", "GIF8".getBytes(StandardCharsets.US_ASCII)),
+    // RIFF, four bytes of length, WEBP
+    WEBP("image/webp", "RIFF".getBytes(StandardCharsets.US_ASCII)) {
+        @Override
+        boolean matches(byte[] head) {
+            return super.matches(head) && head.length >= 12
+                    && Arrays.equals(head, 8, 12, "WEBP".getBytes(StandardCharsets.US_ASCII), 0, 4);
+        }
+    };
+
+    static final int HEAD_SIZE = 12;
+
+    private final String contentType;
+    private final byte[] magic;
+
+    ProfileImageFormat(String contentType, byte[] magic) {
+        this.contentType = contentType;
+        this.magic = magic;
+    }
+
+    String contentType() {
+        return contentType;
+    }
+
+    boolean matches(byte[] head) {
+        return head.length >= magic.length && Arrays.equals(head, 0, magic.length, magic, 0, magic.length);
+    }
+
+    // peeks at the first bytes; content must support mark, which leaves it where it was
+    static Optional<ProfileImageFormat> detect(InputStream content) throws IOException {
+        content.mark(HEAD_SIZE);
+        byte[] head = content.readNBytes(HEAD_SIZE);
+        content.reset();
+        return Arrays.stream(values()).filter(format -> format.matches(head)).findFirst();
+    }
+}
@@ -0,0 +1,267 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+import com.amigoscode.exception.ServiceUnavailableException;
+import com.amigoscode.storage.DiskLruCache;
+import com.amigoscode.storage.OpenedFile;
+import com.amigoscode.storage.StoredFile;
+import com.amigoscode.storage.StoredObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Smaller variants of profile images, ?size=64 and so on, made on upload and again on the
+// first request after they have been evicted. Decoding is CPU and memory heavy, so it
+// runs on a fixed pool behind a bounded queue: when the queue is full a request is
+// answered 503 rather than piling up, and a pre-generation is just skipped. A request
+// for a variant that is already being made waits for that one, so a cold cache costs
+// one decode per image and size however many clients ask at once.
+// Variants go to a DiskLruCache under <imageId>-<size>; those of replaced images are
+// never asked for again and age out of it.
+@Component
+@Slf4j
+public class ProfileImageThumbnails implements DisposableBean {
+
+    private static final String JPEG = ProfileImageFormat.JPEG.contentType();
+    private static final String PNG = ProfileImageFormat.PNG.contentType();
+
+    private final List<Integer> sizes;
+    private final Duration timeout;
+    private final boolean pregenerate;
+    private final DiskLruCache cache;
+    private final ThreadPoolExecutor workers;
+    private final Map<String, CompletableFuture<StoredFile>> inProgress = new ConcurrentHashMap<>();
+
+    public ProfileImageThumbnails(@Value("${customer.profile-images.thumbnails.sizes:64,128,256}") List<Integer> sizes,
+                                  @Value("${customer.profile-images.thumbnails.workers:0}") int workers,
+                                  @Value("${customer.profile-images.thumbnails.queue-capacity:64}") int queueCapacity,
+                                  @Value("${customer.profile-images.thumbnails.timeout:10s}") Duration timeout,
+                                  @Value("${customer.profile-images.thumbnails.pregenerate:true}") boolean pregenerate,
+                                  @Value("${customer.profile-images.thumbnails.cache.directory}") Path cacheDirectory,
+                                  @Value("${customer.profile-images.thumbnails.cache.max-size:512MB}") DataSize cacheMaxSize)
+            throws IOException {
+        this.sizes = List.copyOf(sizes);
+        this.timeout = timeout;
+        this.pregenerate = pregenerate;
+        this.cache = new DiskLruCache(cacheDirectory, cacheMaxSize.toBytes());
+        int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger names = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> {
+            Thread thread = new Thread(task, "profile-image-thumbnail-" + names.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // the variant of original at most size pixels wide and high, or original itself when
+    // it is in a format ImageIO cannot read (WebP). A variant comes opened, see DiskLruCache:
+    // the caller closes it
+    public StoredObject thumbnail(String imageId, StoredObject original, int size) {
+        if (!sizes.contains(size)) {
+            throw new RequestValidationException("size must be one of %s".formatted(sizes));
+        }
+        String key = key(imageId, size, original.contentType());
+        // made again when a put for other images evicted it before it could be opened
+        for (int attempt = 0; attempt < 2; attempt++) {
+            if (await(imageId, variant(imageId, original, size)) == null) {
+                return original;
+            }
+            try {
+                Optional<OpenedFile> opened = cache.open(key, outputType(original));
+                if (opened.isPresent()) {
+                    return opened.get();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        throw new ServiceUnavailableException("thumbnails of profile image %s are evicted as fast as they are made, retry later"
+                .formatted(imageId));
+    }
+
+    private StoredFile await(String imageId, CompletableFuture<StoredFile> variant) {
+        try {
+            return variant.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ServiceUnavailableException("profile image %s is still being resized, retry later".formatted(imageId));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("interrupted resizing profile image " + imageId);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getCause());
+        }
+    }
+
+    // every size in the background, best effort: skipped while the workers are busy
+    public void pregenerate(String imageId, StoredObject original) {
+        if (!pregenerate || !resizable(original)) {
+            return;
+        }
+        for (int size : sizes) {
+            try {
+                variant(imageId, original, size);
+            } catch (ServiceUnavailableException e) {
+                log.debug("not pre-generating thumbnails of {}, the queue is full", imageId);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        workers.shutdownNow();
+    }
+
+    // completes with null when original is served as it is
+    private CompletableFuture<StoredFile> variant(String imageId, StoredObject original, int size) {
+        if (!resizable(original)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String key = key(imageId, size, original.contentType());
+        Optional<StoredFile> cached = cache.get(key, outputType(original));
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.get());
+        }
+        CompletableFuture<StoredFile> made = new CompletableFuture<>();
+        CompletableFuture<StoredFile> running = inProgress.putIfAbsent(key, made);
+        if (running != null) {
+            return running;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    made.complete(make(key, original, size));
+                } catch (IOException e) {
+                    made.completeExceptionally(new UncheckedIOException(e));
+                } catch (RuntimeException e) {
+                    made.completeExceptionally(e);
+                } finally {
+                    inProgress.remove(key, made);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            ServiceUnavailableException busy =
+                    new ServiceUnavailableException("too many profile images being resized, retry later");
+            inProgress.remove(key, made);
+            // for anyone who joined in the meantime
+            made.completeExceptionally(busy);
+            throw busy;
+        }
+        return made;
+    }
+
+    private StoredFile make(String key, StoredObject original, int size) throws IOException {
+        // made while this task sat in the queue
+        Optional<StoredFile> cached = cache.get(key, outputType(original));
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        BufferedImage image = decode(original, size);
+        if (image == null) {
+            return null;
+        }
+        boolean jpeg = original.contentType().equals(JPEG);
+        BufferedImage resized = resize(image, size, jpeg);
+        String format = jpeg ? "jpeg" : "png";
+        Path file = cache.put(key, temporary -> {
+            if (!ImageIO.write(resized, format, temporary.toFile())) {
+                throw new IOException("no ImageIO writer for " + format);
+            }
+        });
+        return new StoredFile(file, outputType(original), Files.size(file));
+    }
+
+    // reads every n-th pixel when the image is more than twice the target size, so a
+    // large photo is never decoded at full resolution
+    private static BufferedImage decode(StoredObject original, int size) throws IOException {
+        try (InputStream content = original.openStream();
+             ImageInputStream input = ImageIO.createImageInputStream(content)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, longest / (size * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // halves until within twice the target, then one last bilinear step: a single
+    // bilinear step from far larger skips pixels and aliases. Never scales up
+    static BufferedImage resize(BufferedImage image, int size, boolean opaque) {
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        double scale = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage current = image;
+        do {
+            int stepWidth = Math.max(width, current.getWidth() / 2);
+            int stepHeight = Math.max(height, current.getHeight() / 2);
+            if (current.getWidth() <= width * 2 && current.getHeight() <= height * 2) {
+                stepWidth = width;
+                stepHeight = height;
+            }
+            BufferedImage step = new BufferedImage(stepWidth, stepHeight, type);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(current, 0, 0, stepWidth, stepHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = step;
+        } while (current.getWidth() != width || current.getHeight() != height);
+        return current;
+    }
+
+    private static boolean resizable(StoredObject original) {
+        return !original.contentType().equals(ProfileImageFormat.WEBP.contentType());
+    }
+
+    // JPEG stays JPEG; PNG and GIF, which may be transparent, become PNG
+    private static String outputType(StoredObject original) {
+        return original.contentType().equals(JPEG) ? JPEG : PNG;
+    }
+
+    private static String key(String imageId, int size, String contentType) {
+        return "%s-%d.%s".formatted(imageId, size, contentType.equals(JPEG) ? "jpg" : "png");
+    }
+}
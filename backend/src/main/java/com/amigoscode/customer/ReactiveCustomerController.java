@@ -0,0 +1,53 @@
+package com.amigoscode.customer;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Same contract as CustomerController on top of R2DBC. The full listing is
+// served as NDJSON: MVC only streams a Flux (requesting one element at a time
+// as each write completes) for streaming media types, and would otherwise
+// collect the whole table into a list before writing it.
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/reactive/customers")
+@ConditionalOnProperty(name = "customer.r2dbc.enabled", havingValue = "true")
+public class ReactiveCustomerController {
+
+    private final ReactiveCustomerService customerService;
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Customer> getCustomers() {
+        return customerService.getAllCustomers();
+    }
+
+    @GetMapping(params = "limit")
+    public Flux<Customer> getCustomers(@RequestParam(value = "after", required = false) Integer afterId,
+                                       @RequestParam("limit") int limit) {
+        return customerService.getCustomers(afterId, limit);
+    }
+
+    @GetMapping("{customerId}")
+    public Mono<Customer> getCustomer(@PathVariable("customerId") Integer customerId) {
+        return customerService.getCustomer(customerId);
+    }
+
+    @PostMapping
+    public Mono<Void> registerCustomer(@RequestBody CustomerRegistrationRequest request) {
+        return customerService.addCustomer(request);
+    }
+
+    @DeleteMapping("{customerId}")
+    public Mono<Void> deleteCustomer(@PathVariable("customerId") Integer customerId) {
+        return customerService.deleteCustomerById(customerId);
+    }
+
+    @PutMapping("{customerId}")
+    public Mono<Void> updateCustomer(@PathVariable Integer customerId,
+                                     @RequestBody CustomerRegistrationRequest request) {
+        return customerService.updateCustomer(customerId, request);
+    }
+}
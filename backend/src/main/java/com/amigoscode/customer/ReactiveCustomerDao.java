@@ -0,0 +1,25 @@
+package com.amigoscode.customer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveCustomerDao {
+
+    Flux<Customer> selectAllCustomers();
+
+    Flux<Customer> selectCustomers(Integer afterId, int limit);
+
+    Mono<Customer> selectCustomerById(Integer id);
+
+    Mono<Void> insertCustomer(Customer customer);
+
+    Mono<Boolean> existsCustomerWithEmail(String email);
+
+    Mono<Boolean> existsCustomerWithId(Integer id);
+
+    Mono<Void> deleteCustomerById(Integer customerId);
+
+    // empty when the row does not exist or nothing would change
+    Mono<Customer> updateCustomer(Customer update);
+
+}
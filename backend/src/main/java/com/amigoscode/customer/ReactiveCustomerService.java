@@ -0,0 +1,70 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.DuplicateResourceException;
+import com.amigoscode.exception.RequestValidationException;
+import com.amigoscode.exception.ResourceNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "customer.r2dbc.enabled", havingValue = "true")
+public class ReactiveCustomerService {
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final ReactiveCustomerDao customerDao;
+
+    public Flux<Customer> getAllCustomers() {
+        return customerDao.selectAllCustomers();
+    }
+
+    public Flux<Customer> getCustomers(Integer afterId, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Flux.error(new RequestValidationException("limit must be between 1 and %s".formatted(MAX_PAGE_SIZE)));
+        }
+        return customerDao.selectCustomers(afterId, limit);
+    }
+
+    public Mono<Customer> getCustomer(Integer id) {
+        return customerDao.selectCustomerById(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("customer with id %s not found".formatted(id))));
+    }
+
+    public Mono<Void> addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
+        String email = customerRegistrationRequest.email();
+        return customerDao.insertCustomer(
+                        new Customer(customerRegistrationRequest.name(),
+                                email,
+                                customerRegistrationRequest.age()))
+                .onErrorMap(DuplicateKeyException.class,
+                        e -> new DuplicateResourceException("Customer with email %s already exist".formatted(email)));
+    }
+
+    public Mono<Void> deleteCustomerById(Integer id) {
+        return customerDao.existsCustomerWithId(id)
+                .flatMap(exists -> exists
+                        ? customerDao.deleteCustomerById(id)
+                        : Mono.error(new ResourceNotFoundException("customer with id %s not found".formatted(id))));
+    }
+
+    public Mono<Void> updateCustomer(Integer customerId, CustomerRegistrationRequest updateRequest) {
+        Customer update = new Customer(customerId,
+                updateRequest.name(),
+                updateRequest.email(),
+                updateRequest.age());
+
+        return customerDao.updateCustomer(update)
+                .onErrorMap(DuplicateKeyException.class,
+                        e -> new DuplicateResourceException("Customer with email %s already exist".formatted(updateRequest.email())))
+                .switchIfEmpty(Mono.defer(() -> customerDao.existsCustomerWithId(customerId))
+                        .flatMap(exists -> Mono.<Customer>error(exists
+                                ? new RequestValidationException("no data change found")
+                                : new ResourceNotFoundException("customer with id %s not found".formatted(customerId)))))
+                .then();
+    }
+}
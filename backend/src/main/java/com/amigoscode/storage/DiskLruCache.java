@@ -0,0 +1,156 @@
+package com.amigoscode.storage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Files in one directory, at most maxBytes of them, the least recently used going first.
+// Entries are written to a temporary file and moved into place, so a reader sees a
+// complete file or none. The index lives in memory and is rebuilt from the directory on
+// start, oldest modification first. Any put may evict any other entry, so a path from
+// get can be gone by the time it is opened: entries are served through open, whose
+// channel keeps the bytes readable until it is closed, however soon they are evicted.
+public class DiskLruCache {
+
+    // no separators, and never the temporary prefix
+    private static final Pattern KEY = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9_.-]*");
+    private static final String TEMPORARY_PREFIX = ".tmp-";
+
+    private final Path directory;
+    private final long maxBytes;
+    // access order, guarded by this
+    private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    public DiskLruCache(Path directory, long maxBytes) throws IOException {
+        this.directory = Files.createDirectories(directory).toRealPath();
+        this.maxBytes = maxBytes;
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(this.directory)) {
+            files = listing.filter(Files::isRegularFile).toList();
+        }
+        List<Existing> existing = new ArrayList<>();
+        for (Path file : files) {
+            if (file.getFileName().toString().startsWith(TEMPORARY_PREFIX)) {
+                // a write the last run did not finish
+                Files.deleteIfExists(file);
+            } else {
+                existing.add(new Existing(file.getFileName().toString(), Files.getLastModifiedTime(file), Files.size(file)));
+            }
+        }
+        existing.sort(Comparator.comparing(Existing::modified));
+        for (Existing entry : existing) {
+            sizes.put(entry.key(), entry.size());
+            totalBytes += entry.size();
+        }
+        evict(null);
+    }
+
+    // opened under the lock eviction takes, so the entry cannot go between lookup and open
+    public Optional<OpenedFile> open(String key, String contentType) throws IOException {
+        Path file = file(key);
+        synchronized (this) {
+            Long size = sizes.get(key);
+            if (size == null) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(new OpenedFile(FileChannel.open(file, StandardOpenOption.READ), contentType, size));
+            } catch (NoSuchFileException e) {
+                // removed behind our back
+                sizes.remove(key);
+                totalBytes -= size;
+                return Optional.empty();
+            }
+        }
+    }
+
+    // by path, only good for knowing the entry is there
+    public Optional<StoredFile> get(String key, String contentType) {
+        Path file = file(key);
+        synchronized (this) {
+            Long size = sizes.get(key);
+            if (size == null) {
+                return Optional.empty();
+            }
+            if (!Files.exists(file)) {
+                // removed behind our back
+                sizes.remove(key);
+                totalBytes -= size;
+                return Optional.empty();
+            }
+            return Optional.of(new StoredFile(file, contentType, size));
+        }
+    }
+
+    // writer fills the temporary file it is given; an entry already under key is replaced
+    public Path put(String key, Writer writer) throws IOException {
+        Path target = file(key);
+        Path temporary = directory.resolve(TEMPORARY_PREFIX + UUID.randomUUID());
+        try {
+            writer.write(temporary);
+            long size = Files.size(temporary);
+            synchronized (this) {
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                Long replaced = sizes.put(key, size);
+                totalBytes += size - (replaced == null ? 0 : replaced);
+                evict(key);
+            }
+            return target;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    // never the entry just written, even when it alone is over the limit
+    private synchronized void evict(String keep) {
+        Iterator<Map.Entry<String, Long>> eldest = sizes.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (entry.getKey().equals(keep)) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(directory.resolve(entry.getKey()));
+            } catch (IOException e) {
+                // left on disk, forgotten here and picked up again on the next start
+            }
+            totalBytes -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    private Path file(String key) {
+        if (!KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("not a valid cache key: " + key);
+        }
+        return directory.resolve(key);
+    }
+
+    private record Existing(String key, FileTime modified, long size) {
+    }
+
+    @FunctionalInterface
+    public interface Writer {
+        void write(Path file) throws IOException;
+    }
+}
@@ -0,0 +1,91 @@
+package com.amigoscode.storage;
+
+import com.amigoscode.exception.PayloadTooLargeException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+// Objects as files under customer.object-store.local.root, for development and tests.
+// Each key is a file plus a <key>.type file holding its content type. Uploads are
+// copied in 64 KB chunks to a temporary file that is moved into place once complete,
+// so a reader never sees half an object.
+@Component
+@ConditionalOnProperty(name = "customer.object-store.type", havingValue = "local", matchIfMissing = true)
+public class LocalFileObjectStore implements ObjectStore {
+
+    // no separators and no dots, so a key can neither leave the root nor collide
+    // with the temporary and type files
+    private static final Pattern KEY = Pattern.compile("[A-Za-z0-9_-]+");
+    private static final String TYPE_SUFFIX = ".type";
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Path root;
+
+    public LocalFileObjectStore(@Value("${customer.object-store.local.root}") Path root) throws IOException {
+        this.root = Files.createDirectories(root).toRealPath();
+    }
+
+    @Override
+    public void put(String key, String contentType, InputStream content, long maxSize) throws IOException {
+        Path target = file(key);
+        Path upload = root.resolve(".upload-" + UUID.randomUUID());
+        try {
+            try (OutputStream out = Files.newOutputStream(upload, StandardOpenOption.CREATE_NEW)) {
+                byte[] chunk = new byte[CHUNK_SIZE];
+                long size = 0;
+                for (int read; (read = content.read(chunk)) != -1; ) {
+                    size += read;
+                    if (size > maxSize) {
+                        throw new PayloadTooLargeException("larger than %d bytes".formatted(maxSize));
+                    }
+                    out.write(chunk, 0, read);
+                }
+            }
+            Files.writeString(typeFile(key), contentType, StandardCharsets.UTF_8);
+            Files.move(upload, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+    }
+
+    @Override
+    public Optional<StoredObject> get(String key) throws IOException {
+        Path file = file(key);
+        try {
+            String contentType = Files.readString(typeFile(key), StandardCharsets.UTF_8);
+            return Optional.of(new StoredFile(file, contentType, Files.size(file)));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(file(key));
+        Files.deleteIfExists(typeFile(key));
+    }
+
+    private Path file(String key) {
+        if (!KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("not a valid object key: " + key);
+        }
+        return root.resolve(key);
+    }
+
+    private Path typeFile(String key) {
+        return root.resolve(key + TYPE_SUFFIX);
+    }
+}
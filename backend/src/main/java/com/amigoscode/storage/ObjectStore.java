@@ -0,0 +1,19 @@
+package com.amigoscode.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+// Write-once blobs by key, streamed both ways so neither an upload nor a download is
+// ever held in the heap as a whole. customer.object-store.type picks the implementation.
+public interface ObjectStore {
+
+    // reads content to its end; throws PayloadTooLargeException, storing nothing,
+    // once more than maxSize bytes arrive
+    void put(String key, String contentType, InputStream content, long maxSize) throws IOException;
+
+    Optional<StoredObject> get(String key) throws IOException;
+
+    // nothing happens for a missing key
+    void delete(String key) throws IOException;
+}
@@ -0,0 +1,50 @@
+package com.amigoscode.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+// A file read through the channel it was opened with when it was looked up, never again
+// by path: what DiskLruCache hands out, whose entries may be deleted at any moment. So it
+// has no file() for sendfile, the servlet container would open the path afresh. Close it
+// once the bytes are sent.
+public final class OpenedFile implements StoredObject {
+
+    private final FileChannel channel;
+    private final String contentType;
+    private final long size;
+
+    OpenedFile(FileChannel channel, String contentType, long size) {
+        this.channel = channel;
+        this.contentType = contentType;
+        this.size = size;
+    }
+
+    @Override
+    public String contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    // from the start, closing it closes the file
+    @Override
+    public InputStream openStream() throws IOException {
+        return Channels.newInputStream(channel.position(0));
+    }
+
+    @Override
+    public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        StoredFile.transfer(channel, position, count, target, "opened file");
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,45 @@
+package com.amigoscode.storage;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+// A stored object that is a file on this machine, read through FileChannel.transferTo.
+public record StoredFile(Path path, String contentType, long size) implements StoredObject {
+
+    @Override
+    public InputStream openStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            transfer(channel, position, count, target, path.toString());
+        }
+    }
+
+    // transferTo may move fewer bytes than asked, on Linux to a socket it is sendfile(2)
+    static void transfer(FileChannel channel, long position, long count, WritableByteChannel target, String name)
+            throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long sent = channel.transferTo(position, end - position, target);
+            if (sent == 0 && position >= channel.size()) {
+                throw new EOFException("%s ends before byte %d".formatted(name, end));
+            }
+            position += sent;
+        }
+    }
+
+    @Override
+    public Optional<Path> file() {
+        return Optional.of(path);
+    }
+}
@@ -0,0 +1,31 @@
+package com.amigoscode.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+
+public interface StoredObject extends Closeable {
+
+    String contentType();
+
+    long size();
+
+    // the whole object, for consumers that parse it rather than pass it on
+    InputStream openStream() throws IOException;
+
+    // count bytes starting at position, without staging them in the heap where the store allows
+    void transferTo(long position, long count, WritableByteChannel target) throws IOException;
+
+    // set when the bytes are a local file the servlet container can send by itself
+    default Optional<Path> file() {
+        return Optional.empty();
+    }
+
+    // releases what the object holds open, nothing for most
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,91 @@
+package com.amigoscode.storage;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.List;
+
+// Writes a stored object as the response body, honouring If-None-Match and a single
+// byte Range (If-Range permitting). Local files are handed to Tomcat's sendfile, which
+// opens them by path and copies from the page cache straight to the socket once the
+// headers are out; other objects, an OpenedFile among them, go through
+// StoredObject.transferTo. Several ranges in one request are answered with the whole
+// object, which RFC 9110 allows.
+public final class StoredObjectResponses {
+
+    // request attributes of Tomcat's NIO connector, org.apache.catalina.Globals
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private StoredObjectResponses() {
+    }
+
+    // eTag must be a quoted entity tag identifying these exact bytes
+    public static void write(StoredObject object, String eTag, CacheControl cacheControl,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long size = object.size();
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(eTag))) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        long start = 0;
+        long end = size - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.trim().equals(eTag))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(size);
+                    end = ranges.get(0).getRangeEnd(size);
+                }
+            } catch (IllegalArgumentException unparseable) {
+                notSatisfiable(size, response);
+                return;
+            }
+            // HttpRange clamps the end to the object but lets a first byte past it through
+            if (ranges.size() == 1 && (start >= size || start > end)) {
+                notSatisfiable(size, response);
+                return;
+            }
+            if (ranges.size() == 1) {
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes %d-%d/%d".formatted(start, end, size));
+            }
+        }
+
+        long length = end - start + 1;
+        response.setContentType(object.contentType());
+        response.setContentLengthLong(length);
+        if (request.getMethod().equals("HEAD") || length == 0) {
+            return;
+        }
+        if (object.file().isPresent() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, object.file().get().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        object.transferTo(start, length, Channels.newChannel(response.getOutputStream()));
+    }
+
+    private static void notSatisfiable(long size, HttpServletResponse response) {
+        response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+    }
+}
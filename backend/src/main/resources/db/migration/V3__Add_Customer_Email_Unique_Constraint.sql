@@ -0,0 +1,2 @@
+ALTER TABLE customer
+    ADD CONSTRAINT customer_email_unique UNIQUE (email);
@@ -0,0 +1,2 @@
+-- name ILIKE '%...%' and ILIKE '...%'
+CREATE INDEX CONCURRENTLY customer_name_trgm_idx ON customer USING gin (name gin_trgm_ops);
@@ -0,0 +1,2 @@
+-- lower(split_part(email, '@', 2)) = lower(?)
+CREATE INDEX CONCURRENTLY customer_email_domain_idx ON customer (lower(split_part(email, '@', 2)), id);
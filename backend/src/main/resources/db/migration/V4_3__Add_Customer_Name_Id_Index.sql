@@ -0,0 +1,3 @@
+-- keyset pagination: (name, id) > (?, ?) ORDER BY name, id; the remaining columns are
+-- included so pages can be served by index-only scans
+CREATE INDEX CONCURRENTLY customer_name_id_idx ON customer (name, id) INCLUDE (email, age, profile_image_id);
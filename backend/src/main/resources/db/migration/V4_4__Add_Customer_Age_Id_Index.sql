@@ -0,0 +1,2 @@
+-- the age range and age order, covering like customer_name_id_idx
+CREATE INDEX CONCURRENTLY customer_age_id_idx ON customer (age, id) INCLUDE (name, email, profile_image_id);
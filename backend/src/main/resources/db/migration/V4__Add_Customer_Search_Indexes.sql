@@ -0,0 +1,5 @@
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- the indexes themselves follow in V4_1 to V4_4, one per migration: CREATE INDEX
+-- CONCURRENTLY keeps customer writable while they build but cannot run inside a
+-- transaction, so Flyway runs each of those files on its own without one
@@ -0,0 +1 @@
+CREATE INDEX CONCURRENTLY customer_name_id_covering_idx ON customer (name, id) INCLUDE (email, age, profile_image_id, version);
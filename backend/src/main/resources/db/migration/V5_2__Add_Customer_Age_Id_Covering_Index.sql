@@ -0,0 +1 @@
+CREATE INDEX CONCURRENTLY customer_age_id_covering_idx ON customer (age, id) INCLUDE (name, email, profile_image_id, version);
@@ -0,0 +1,2 @@
+-- replaced by customer_name_id_covering_idx
+DROP INDEX CONCURRENTLY customer_name_id_idx;
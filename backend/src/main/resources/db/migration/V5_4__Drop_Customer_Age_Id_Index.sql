@@ -0,0 +1,2 @@
+-- replaced by customer_age_id_covering_idx
+DROP INDEX CONCURRENTLY customer_age_id_idx;
@@ -0,0 +1,6 @@
+ALTER TABLE customer
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+-- the keyset search indexes keep covering every column of the row: V5_1 and V5_2 build
+-- the replacements next to the V4 ones, V5_3 and V5_4 drop those, all concurrently and
+-- one statement per migration, so searches and writes go on meanwhile
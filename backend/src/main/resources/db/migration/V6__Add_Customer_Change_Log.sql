@@ -0,0 +1,42 @@
+-- transactional outbox for the change feed. Written by a trigger, so every writer
+-- (JDBC, JPA, R2DBC, a psql session) records its changes in its own transaction.
+-- tx is the writing transaction's id: readers only return rows of transactions older
+-- than every transaction still running, so a late commit can never be skipped
+CREATE TABLE customer_change
+(
+    seq         BIGSERIAL PRIMARY KEY,
+    tx          BIGINT      NOT NULL DEFAULT pg_current_xact_id()::text::bigint,
+    customer_id BIGINT      NOT NULL,
+    deleted     BOOLEAN     NOT NULL,
+    changed_at  TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+-- (tx, seq) > (?, ?) ORDER BY tx, seq
+CREATE INDEX customer_change_tx_seq_idx ON customer_change (tx, seq);
+
+CREATE FUNCTION record_customer_change() RETURNS trigger
+    LANGUAGE plpgsql
+    SET search_path FROM CURRENT
+AS
+$$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        INSERT INTO customer_change(customer_id, deleted) VALUES (OLD.id, true);
+    ELSE
+        INSERT INTO customer_change(customer_id, deleted) VALUES (NEW.id, false);
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER customer_change_trigger
+    AFTER INSERT OR UPDATE OR DELETE
+    ON customer
+    FOR EACH ROW
+EXECUTE FUNCTION record_customer_change();
+
+-- existing customers, so a consumer can start from an empty token instead of a full pull
+INSERT INTO customer_change(customer_id, deleted)
+SELECT id, false
+FROM customer
+ORDER BY id;
@@ -0,0 +1,4 @@
+-- CustomerChangeLogRetention deletes entries older than customer.changes.retention
+-- in batches of the oldest first. Concurrently, like the V4 indexes: every customer
+-- write appends to this table
+CREATE INDEX CONCURRENTLY customer_change_changed_at_idx ON customer_change (changed_at);
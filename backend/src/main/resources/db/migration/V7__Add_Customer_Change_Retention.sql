@@ -0,0 +1,17 @@
+-- a profile image change touches neither Customer nor its version, so a change event
+-- for it would repeat the customer as it was. Only updates that change the customer
+-- are logged; a WHEN clause on NEW or OLD needs the update trigger on its own
+DROP TRIGGER customer_change_trigger ON customer;
+
+CREATE TRIGGER customer_change_trigger
+    AFTER INSERT OR DELETE
+    ON customer
+    FOR EACH ROW
+EXECUTE FUNCTION record_customer_change();
+
+CREATE TRIGGER customer_change_update_trigger
+    AFTER UPDATE
+    ON customer
+    FOR EACH ROW
+    WHEN ((OLD.name, OLD.email, OLD.age, OLD.version) IS DISTINCT FROM (NEW.name, NEW.email, NEW.age, NEW.version))
+EXECUTE FUNCTION record_customer_change();
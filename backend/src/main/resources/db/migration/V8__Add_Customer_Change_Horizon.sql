@@ -0,0 +1,12 @@
+-- the newest position deleted from customer_change by CustomerChangeLogRetention. A token
+-- before it has missed entries that are gone and is answered with 410 instead of resuming
+-- at whatever is left
+CREATE TABLE customer_change_horizon
+(
+    id  BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (id),
+    tx  BIGINT NOT NULL,
+    seq BIGINT NOT NULL
+);
+
+INSERT INTO customer_change_horizon (tx, seq)
+VALUES (0, 0);
@@ -0,0 +1,7 @@
+-- global id sequence and email uniqueness for sharded customers
+CREATE TABLE customer_directory
+(
+    id    BIGSERIAL PRIMARY KEY,
+    email TEXT NOT NULL,
+    CONSTRAINT customer_directory_email_unique UNIQUE (email)
+);
@@ -0,0 +1,218 @@
+package com.amigoscode.startup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Time from process start to the first answered request, and resident memory at that
+// point, for each way of launching the app the fast-startup profile builds:
+//   jvm           java -jar, Spring's usual reflection-driven start
+//   aot           java -Dspring.aot.enabled=true -jar, the bean definitions generated at build time
+//   aot-cds       the same with the class-data-sharing archive written by --train
+//   native        the GraalVM executable, when mvn -Pnative native:compile has built one
+// Each variant starts --runs times (5) after one discarded run that warms the page cache
+// (and, the very first time, migrates the embedded database all runs share).
+//
+// --train <archive> instead starts the aot variant once with -XX:ArchiveClassesAtExit,
+// sends a few requests so the request path is loaded too, and stops it to write the archive.
+public final class StartupBenchmark {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    private final Map<String, String> options;
+    private final EmbeddedPostgres postgres;
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(100))
+            .build();
+
+    private StartupBenchmark(Map<String, String> options, EmbeddedPostgres postgres) {
+        this.options = options;
+        this.postgres = postgres;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start()) {
+            StartupBenchmark benchmark = new StartupBenchmark(options, postgres);
+            if (options.containsKey("train")) {
+                benchmark.train(Path.of(options.get("train")));
+            } else {
+                benchmark.measure();
+            }
+        }
+    }
+
+    private void train(Path archive) throws Exception {
+        Files.createDirectories(archive.toAbsolutePath().getParent());
+        Files.deleteIfExists(archive);
+        List<String> command = java("-XX:ArchiveClassesAtExit=" + archive, "-Dspring.aot.enabled=true");
+        Launch launch = launch("train", command);
+        for (String path : List.of("customers?limit=10", "customers/1", "customers/search?namePrefix=a")) {
+            client.send(HttpRequest.newBuilder(launch.api().resolve(path)).build(),
+                    HttpResponse.BodyHandlers.discarding());
+        }
+        launch.stop();
+        if (!Files.exists(archive)) {
+            throw new IllegalStateException("no archive written, see " + launch.log());
+        }
+        System.out.printf("class-data archive %s, %d MB%n", archive, Files.size(archive) >> 20);
+    }
+
+    private void measure() throws Exception {
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        variants.put("jvm", java());
+        variants.put("aot", java("-Dspring.aot.enabled=true"));
+        Path archive = Path.of(options.getOrDefault("archive", "target/app.jsa"));
+        if (Files.exists(archive)) {
+            // -Xshare:on fails the start rather than silently ignoring a stale archive
+            variants.put("aot-cds", java("-XX:SharedArchiveFile=" + archive, "-Xshare:on",
+                    "-Dspring.aot.enabled=true"));
+        }
+        Path executable = Path.of(options.getOrDefault("native", "target/amigoscode-api"));
+        if (Files.isExecutable(executable)) {
+            variants.put("native", new ArrayList<>(List.of(executable.toString())));
+        }
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", Instant.now().toString());
+        report.put("runs", runs);
+        System.out.printf("%-8s %14s %14s %14s %12s%n",
+                "variant", "min ms", "median ms", "max ms", "rss MB");
+        for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+            launch(variant.getKey(), variant.getValue()).stop();
+            List<Long> millis = new ArrayList<>();
+            List<Long> rss = new ArrayList<>();
+            for (int run = 1; run <= runs; run++) {
+                Launch launch = launch(variant.getKey(), variant.getValue());
+                millis.add(launch.firstRequestMillis());
+                rss.add(launch.rssKb());
+                launch.stop();
+            }
+            millis.sort(null);
+            rss.sort(null);
+            long medianRssMb = rss.get(rss.size() / 2) >> 10;
+            System.out.printf("%-8s %14d %14d %14d %12d%n", variant.getKey(),
+                    millis.get(0), millis.get(millis.size() / 2), millis.get(millis.size() - 1), medianRssMb);
+            report.put(variant.getKey(), Map.of(
+                    "command", String.join(" ", variant.getValue()),
+                    "firstRequestMillis", millis,
+                    "rssKb", rss));
+        }
+
+        Path path = Path.of("target", "startup", "startup-" + Instant.now().getEpochSecond() + ".json");
+        Files.createDirectories(path.getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(path.toFile(), report);
+        System.out.println("report written to " + path);
+    }
+
+    // the jar the profile packages, with its dependencies in lib/ next to it on the
+    // manifest Class-Path: CDS only archives classes loaded from plain jars
+    private List<String> java(String... flags) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(List.of(flags));
+        command.add("-jar");
+        command.add(options.getOrDefault("jar", "target/amigoscode-api-1.0-SNAPSHOT.jar"));
+        return command;
+    }
+
+    private Launch launch(String variant, List<String> command) throws Exception {
+        int port = freePort();
+        List<String> withArgs = new ArrayList<>(command);
+        withArgs.addAll(List.of(
+                "--server.port=" + port,
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=postgres"));
+        Path log = log(variant, port);
+        Files.createDirectories(log.getParent());
+
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(withArgs)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        URI api = URI.create("http://localhost:" + port + "/api/v1/");
+        HttpRequest probe = HttpRequest.newBuilder(api.resolve("customers?limit=1"))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        long deadline = started + STARTUP_TIMEOUT.toNanos();
+        while (true) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException(variant + " exited with " + process.exitValue() + ", see " + log);
+            }
+            if (System.nanoTime() > deadline) {
+                process.destroyForcibly();
+                throw new IllegalStateException(variant + " did not answer within " + STARTUP_TIMEOUT + ", see " + log);
+            }
+            try {
+                if (client.send(probe, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    break;
+                }
+            } catch (IOException notListeningYet) {
+                // refused or reset until Tomcat is up
+            }
+            Thread.sleep(5);
+        }
+        long firstRequestMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        return new Launch(process, api, log, firstRequestMillis, rssKb(process.pid()));
+    }
+
+    private static Path log(String variant, int port) {
+        return Path.of("target", "startup", variant + "-" + port + ".log");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    // VmRSS on Linux, ps elsewhere
+    private static long rssKb(long pid) throws IOException, InterruptedException {
+        Path status = Path.of("/proc", Long.toString(pid), "status");
+        if (Files.exists(status)) {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        }
+        Process ps = new ProcessBuilder("ps", "-o", "rss=", "-p", Long.toString(pid)).start();
+        String out = new String(ps.getInputStream().readAllBytes()).trim();
+        ps.waitFor();
+        return Long.parseLong(out);
+    }
+
+    private record Launch(Process process, URI api, Path log, long firstRequestMillis, long rssKb) {
+
+        // SIGTERM, so the JVM exits through its shutdown hooks and writes the archive when training
+        void stop() throws InterruptedException {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+}
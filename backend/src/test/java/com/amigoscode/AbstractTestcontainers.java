@@ -1,5 +1,6 @@
 package com.amigoscode;
 
+import com.amigoscode.config.FlywayConfig;
 import com.amigoscode.customer.Customer;
 import com.github.javafaker.Faker;
 import org.flywaydb.core.Flyway;
@@ -20,8 +21,8 @@ public abstract class AbstractTestcontainers {
 
     @BeforeAll
     static void beforeAll() {
-        Flyway flyway = Flyway
-                .configure()
+        Flyway flyway = FlywayConfig
+                .sessionLock(Flyway.configure())
                 .dataSource(
                         postgreSQLContainer.getJdbcUrl(),
                         postgreSQLContainer.getUsername(),
@@ -0,0 +1,45 @@
+package com.amigoscode;
+
+import com.amigoscode.customer.CustomerService;
+import com.amigoscode.exception.DuplicateResourceException;
+import com.amigoscode.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class MainTest {
+
+    private final CustomerService customerService = mock(CustomerService.class);
+
+    @Test
+    void seedingRetriesWithAnotherEmailWhenOneIsTaken() throws Exception {
+        //Given
+        doThrow(new DuplicateResourceException("Customer with email taken@gmail.com already exist"))
+                .doNothing()
+                .when(customerService).addCustomer(any());
+
+        //When
+        new Main().runner(customerService).run();
+
+        //Then
+        verify(customerService, times(2)).addCustomer(any());
+    }
+
+    @Test
+    void seedingNeverFailsStartup() {
+        //Given
+        doThrow(new DuplicateResourceException("Customer with email taken@gmail.com already exist"))
+                .when(customerService).addCustomer(any());
+
+        //When
+        //Then
+        assertThatNoException().isThrownBy(() -> new Main().runner(customerService).run());
+        verify(customerService, times(5)).addCustomer(any());
+
+        doThrow(new ServiceUnavailableException("registration queue is full, retry later"))
+                .when(customerService).addCustomer(any());
+        assertThatNoException().isThrownBy(() -> new Main().runner(customerService).run());
+    }
+}
@@ -0,0 +1,104 @@
+package com.amigoscode.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConcurrencyLimitingDataSourceTest {
+
+    private ConcurrencyLimitingDataSource underTest;
+    @Mock
+    private DataSource dataSource;
+    @Mock
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ConcurrencyLimitingDataSource(dataSource, 2, Duration.ofMillis(50));
+    }
+
+    @Test
+    void willTimeOutWhenAllPermitsAreTaken() throws SQLException {
+        //Given
+        when(dataSource.getConnection()).thenReturn(connection);
+        underTest.getConnection();
+        underTest.getConnection();
+
+        //When
+        assertThatThrownBy(() -> underTest.getConnection())
+                .isInstanceOf(SQLTransientConnectionException.class);
+
+        //Then
+        verify(dataSource, times(2)).getConnection();
+    }
+
+    @Test
+    void closingConnectionReleasesPermitOnlyOnce() throws SQLException {
+        //Given
+        when(dataSource.getConnection()).thenReturn(connection);
+        Connection actual = underTest.getConnection();
+
+        //When
+        actual.close();
+        actual.close();
+
+        //Then
+        assertThat(underTest.availablePermits()).isEqualTo(2);
+        verify(connection).close();
+    }
+
+    @Test
+    void permitIsReleasedWhenPoolFails() throws SQLException {
+        //Given
+        when(dataSource.getConnection()).thenThrow(new SQLException("pool exhausted"));
+
+        //When
+        assertThatThrownBy(() -> underTest.getConnection())
+                .hasMessage("pool exhausted");
+
+        //Then
+        assertThat(underTest.availablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    void aPoolGetsAPermitPerConnection() throws Exception {
+        //Given
+        HikariDataSource pool = new HikariDataSource();
+        pool.setMaximumPoolSize(4);
+        pool.setConnectionTimeout(1_500);
+
+        //When
+        Object actual = VirtualThreadConfig.concurrencyLimitingDataSourcePostProcessor()
+                .postProcessAfterInitialization(pool, "dataSource");
+
+        //Then
+        assertThat(actual).isInstanceOfSatisfying(ConcurrencyLimitingDataSource.class, limited ->
+                assertThat(limited.availablePermits()).isEqualTo(4));
+        ((ConcurrencyLimitingDataSource) actual).close();
+        assertThat(pool.isClosed()).isTrue();
+    }
+
+    @Test
+    void aDataSourceThatIsNotAPoolIsLeftAlone() {
+        //When
+        Object actual = VirtualThreadConfig.concurrencyLimitingDataSourcePostProcessor()
+                .postProcessAfterInitialization(dataSource, "dataSource");
+
+        //Then
+        assertThat(actual).isSameAs(dataSource);
+    }
+}
@@ -0,0 +1,58 @@
+package com.amigoscode.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerDaoEnvironmentPostProcessorTest {
+
+    private final CustomerDaoEnvironmentPostProcessor underTest = new CustomerDaoEnvironmentPostProcessor();
+    private final MockEnvironment environment = new MockEnvironment()
+            .withProperty("spring.autoconfigure.exclude", R2dbcAutoConfiguration.class.getName());
+
+    @Test
+    void jdbcExcludesOnlyJpaAndKeepsExistingExclusions() {
+        //When
+        underTest.postProcessEnvironment(environment, new SpringApplication());
+
+        //Then
+        assertThat(environment.getProperty("spring.autoconfigure.exclude"))
+                .contains(R2dbcAutoConfiguration.class.getName())
+                .contains(HibernateJpaAutoConfiguration.class.getName())
+                .doesNotContain(DataSourceAutoConfiguration.class.getName());
+    }
+
+    @Test
+    void memoryExcludesTheDatabase() {
+        //Given
+        environment.setProperty("customer.dao", "memory");
+
+        //When
+        underTest.postProcessEnvironment(environment, new SpringApplication());
+
+        //Then
+        assertThat(environment.getProperty("spring.autoconfigure.exclude"))
+                .contains(HibernateJpaAutoConfiguration.class.getName())
+                .contains(DataSourceAutoConfiguration.class.getName())
+                .contains(FlywayAutoConfiguration.class.getName());
+    }
+
+    @Test
+    void jpaExcludesNothing() {
+        //Given
+        environment.setProperty("customer.dao", "jpa");
+
+        //When
+        underTest.postProcessEnvironment(environment, new SpringApplication());
+
+        //Then
+        assertThat(environment.getProperty("spring.autoconfigure.exclude"))
+                .isEqualTo(R2dbcAutoConfiguration.class.getName());
+    }
+}
@@ -0,0 +1,27 @@
+package com.amigoscode.config;
+
+import com.amigoscode.customer.Customer;
+import com.github.javafaker.Name;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NativeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @Test
+    void registersWhatTheNativeImageCannotDiscover() {
+        //When
+        new NativeHints().registerHints(hints, getClass().getClassLoader());
+
+        //Then
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(Customer.class, "getEmail")).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(Name.class, "firstName")).accepts(hints);
+        assertThat(RuntimeHintsPredicates.resource().forResource("db/sharding/V1__Customer_Directory.sql"))
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.resource().forResource("en.yml")).accepts(hints);
+    }
+}
@@ -0,0 +1,76 @@
+package com.amigoscode.config;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadYourWritesFilterTest {
+
+    private final Clock clock = Clock.fixed(Instant.ofEpochMilli(1_000_000), ZoneOffset.UTC);
+    private final ReadYourWritesFilter underTest = new ReadYourWritesFilter(Duration.ofSeconds(3), clock);
+
+    @Test
+    void writePinsClientToPrimary() throws Exception {
+        //Given
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/v1/customers/1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        //When
+        boolean allowed = filter(request, response);
+
+        //Then
+        assertThat(allowed).isFalse();
+        assertThat(response.getHeader(HttpHeaders.SET_COOKIE))
+                .startsWith(ReadYourWritesFilter.COOKIE + "=1003000")
+                .contains("Max-Age=4");
+    }
+
+    @Test
+    void readAfterOwnWriteStaysOnPrimary() throws Exception {
+        //Given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customers/1");
+        request.setCookies(new Cookie(ReadYourWritesFilter.COOKIE, "1003000"));
+
+        //When
+        boolean allowed = filter(request, new MockHttpServletResponse());
+
+        //Then
+        assertThat(allowed).isFalse();
+    }
+
+    @Test
+    void readMayUseReplicaOnceWindowHasPassed() throws Exception {
+        //Given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customers/1");
+        request.setCookies(new Cookie(ReadYourWritesFilter.COOKIE, "999999"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        //When
+        boolean allowed = filter(request, response);
+
+        //Then
+        assertThat(allowed).isTrue();
+        assertThat(response.getHeader(HttpHeaders.SET_COOKIE)).isNull();
+        assertThat(ReplicaRouting.routeToReplica()).isFalse();
+    }
+
+    private boolean filter(MockHttpServletRequest request, MockHttpServletResponse response) throws Exception {
+        AtomicBoolean allowed = new AtomicBoolean();
+        underTest.doFilter(request, response, (req, res) -> {
+            boolean previous = ReplicaRouting.reading(true);
+            allowed.set(ReplicaRouting.routeToReplica());
+            ReplicaRouting.reading(previous);
+        });
+        return allowed.get();
+    }
+}
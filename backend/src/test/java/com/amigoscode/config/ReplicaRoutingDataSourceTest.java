@@ -0,0 +1,194 @@
+package com.amigoscode.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicaRoutingDataSourceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ReplicaRoutingDataSource underTest;
+    @Mock
+    private DataSource primary;
+    @Mock
+    private DataSource replica;
+    @Mock
+    private Connection primaryConnection;
+    @Mock
+    private Connection replicaConnection;
+    @Mock
+    private Statement statement;
+    @Mock
+    private ResultSet lag;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        underTest = new ReplicaRoutingDataSource(primary, Map.of("replica-1", replica),
+                Duration.ofSeconds(1), Duration.ofHours(1), Duration.ofSeconds(60), meterRegistry);
+        lenient().when(primary.getConnection()).thenReturn(primaryConnection);
+        lenient().when(replicaConnection.createStatement()).thenReturn(statement);
+        lenient().when(statement.executeQuery(anyString())).thenReturn(lag);
+        lenient().when(lag.next()).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        ReplicaRouting.allowReplicas(false);
+        ReplicaRouting.reading(false);
+        underTest.close();
+    }
+
+    @Test
+    void replicaReadGoesToReplicaWithinMaxLag() throws SQLException {
+        //Given
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        when(lag.getDouble(1)).thenReturn(0.2);
+        underTest.afterPropertiesSet();
+        ReplicaRouting.allowReplicas(true);
+        ReplicaRouting.reading(true);
+
+        //When
+        Connection actual = underTest.getConnection();
+
+        //Then
+        assertThat(actual).isSameAs(replicaConnection);
+        assertThat(meterRegistry.get("customer.datasource.connections").tag("pool", "replica-1").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("customer.replica.lag").tag("pool", "replica-1").gauge().value())
+                .isEqualTo(0.2);
+    }
+
+    @Test
+    void readsGoToPrimaryUnlessRequestAllowsReplicas() throws SQLException {
+        //Given
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        when(lag.getDouble(1)).thenReturn(0.0);
+        underTest.afterPropertiesSet();
+        ReplicaRouting.reading(true);
+
+        //When
+        Connection actual = underTest.getConnection();
+
+        //Then
+        assertThat(actual).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void laggingReplicaIsTakenOutOfRotation() throws SQLException {
+        //Given
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        when(lag.getDouble(1)).thenReturn(5.0);
+        underTest.afterPropertiesSet();
+        ReplicaRouting.allowReplicas(true);
+        ReplicaRouting.reading(true);
+
+        //When
+        Connection actual = underTest.getConnection();
+
+        //Then
+        assertThat(actual).isSameAs(primaryConnection);
+        assertThat(meterRegistry.get("customer.replica.available").tag("pool", "replica-1").gauge().value())
+                .isZero();
+    }
+
+    @Test
+    void replicaWithDisconnectedWalReceiverIsTakenOutOfRotation() throws SQLException {
+        //Given
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        // received and replayed LSNs match, but only because nothing arrives any more
+        when(lag.getDouble(1)).thenReturn(0.0);
+        when(lag.getDouble(2)).thenReturn(0.0);
+        when(lag.wasNull()).thenReturn(true);
+        underTest.afterPropertiesSet();
+        ReplicaRouting.allowReplicas(true);
+        ReplicaRouting.reading(true);
+
+        //When
+        Connection actual = underTest.getConnection();
+
+        //Then
+        assertThat(actual).isSameAs(primaryConnection);
+        assertThat(meterRegistry.get("customer.replica.available").tag("pool", "replica-1").gauge().value())
+                .isZero();
+    }
+
+    @Test
+    void replicaWhoseWalReceiverWentSilentIsTakenOutOfRotation() throws SQLException {
+        //Given
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        when(lag.getDouble(1)).thenReturn(0.0);
+        when(lag.getDouble(2)).thenReturn(90.0);
+        underTest.afterPropertiesSet();
+        ReplicaRouting.allowReplicas(true);
+        ReplicaRouting.reading(true);
+
+        //When
+        Connection actual = underTest.getConnection();
+
+        //Then
+        assertThat(actual).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void fallsBackToPrimaryWhenReplicaFails() throws SQLException {
+        //Given
+        when(replica.getConnection())
+                .thenReturn(replicaConnection)
+                .thenThrow(new SQLTransientConnectionException("replica-1 - Connection is not available"));
+        when(lag.getDouble(1)).thenReturn(0.0);
+        underTest.afterPropertiesSet();
+        ReplicaRouting.allowReplicas(true);
+        ReplicaRouting.reading(true);
+
+        //When
+        Connection first = underTest.getConnection();
+        Connection second = underTest.getConnection();
+
+        //Then
+        assertThat(first).isSameAs(primaryConnection);
+        assertThat(second).isSameAs(primaryConnection);
+        verify(replica, times(2)).getConnection();
+    }
+
+    @Test
+    void readInsideReadWriteTransactionStaysOnPrimary() throws SQLException {
+        //Given
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        when(lag.getDouble(1)).thenReturn(0.0);
+        underTest.afterPropertiesSet();
+        ReplicaRouting.allowReplicas(true);
+        ReplicaRouting.reading(true);
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        //When
+        Connection actual;
+        try {
+            actual = underTest.getConnection();
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        //Then
+        assertThat(actual).isSameAs(primaryConnection);
+    }
+}
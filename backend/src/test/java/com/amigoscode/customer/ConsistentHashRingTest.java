@@ -0,0 +1,59 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 100_000;
+
+    @Test
+    void spreadsSequentialIdsEvenly() {
+        //Given
+        ConsistentHashRing<String> underTest = new ConsistentHashRing<>(shards(4), 128);
+
+        //When
+        Map<String, Integer> counts = new HashMap<>();
+        for (int id = 1; id <= KEYS; id++) {
+            counts.merge(underTest.nodeFor(id), 1, Integer::sum);
+        }
+
+        //Then
+        assertThat(counts).hasSize(4);
+        counts.values().forEach(count -> assertThat(count.doubleValue()).isCloseTo(KEYS / 4.0, within(KEYS * 0.05)));
+    }
+
+    @Test
+    void addingShardOnlyMovesKeysOntoIt() {
+        //Given
+        ConsistentHashRing<String> before = new ConsistentHashRing<>(shards(4), 128);
+        ConsistentHashRing<String> after = new ConsistentHashRing<>(shards(5), 128);
+
+        //When
+        int moved = 0;
+        for (int id = 1; id <= KEYS; id++) {
+            String owner = after.nodeFor(id);
+            if (!owner.equals(before.nodeFor(id))) {
+                assertThat(owner).isEqualTo("shard-5");
+                moved++;
+            }
+        }
+
+        //Then
+        assertThat((double) moved).isCloseTo(KEYS / 5.0, within(KEYS * 0.05));
+    }
+
+    private static Map<String, String> shards(int count) {
+        Map<String, String> shards = new LinkedHashMap<>();
+        for (int i = 1; i <= count; i++) {
+            shards.put("shard-" + i, "shard-" + i);
+        }
+        return shards;
+    }
+}
@@ -0,0 +1,145 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerCachingDataAccessServiceTest {
+
+    private CustomerCachingDataAccessService underTest;
+    private SimpleMeterRegistry meterRegistry;
+    @Mock
+    private CustomerDao delegate;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new CustomerCachingDataAccessService(Map.of("jdbc", delegate), "jdbc", 100, Duration.ofMinutes(5), meterRegistry);
+    }
+
+    @Test
+    void selectCustomerByIdIsServedFromCacheAfterFirstRead() {
+        //Given
+        int id = 1;
+        Customer customer = new Customer(id, "test", "test@gmail.com", 20);
+        when(delegate.selectCustomerById(id)).thenReturn(Optional.of(customer));
+
+        //When
+        underTest.selectCustomerById(id);
+        Optional<Customer> actual = underTest.selectCustomerById(id);
+
+        //Then
+        assertThat(actual).hasValue(customer);
+        verify(delegate, times(1)).selectCustomerById(id);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void changingAReturnedCustomerLeavesTheCachedOneAlone() {
+        //Given
+        int id = 1;
+        when(delegate.selectCustomerById(id)).thenReturn(Optional.of(new Customer(id, "test", "test@gmail.com", 20)));
+
+        //When
+        underTest.selectCustomerById(id).orElseThrow().setName("changed");
+        underTest.selectCustomerById(id).orElseThrow().setName("changed again");
+
+        //Then
+        assertThat(underTest.selectCustomerById(id)).hasValueSatisfying(customer ->
+                assertThat(customer.getName()).isEqualTo("test"));
+        verify(delegate, times(1)).selectCustomerById(id);
+    }
+
+    @Test
+    void missingCustomerIsNotCached() {
+        //Given
+        int id = 1;
+        when(delegate.selectCustomerById(id)).thenReturn(Optional.empty());
+
+        //When
+        underTest.selectCustomerById(id);
+        Optional<Customer> actual = underTest.selectCustomerById(id);
+
+        //Then
+        assertThat(actual).isEmpty();
+        verify(delegate, times(2)).selectCustomerById(id);
+    }
+
+    @Test
+    void updateCustomerInvalidatesCachedEntry() {
+        //Given
+        int id = 1;
+        Customer customer = new Customer(id, "test", "test@gmail.com", 20);
+        Customer updated = new Customer(id, "new name", "test@gmail.com", 20);
+        when(delegate.selectCustomerById(id))
+                .thenReturn(Optional.of(customer))
+                .thenReturn(Optional.of(updated));
+        underTest.selectCustomerById(id);
+
+        //When
+        underTest.updateCustomer(new Customer(id, "new name", null, null));
+
+        //Then
+        assertThat(underTest.selectCustomerById(id)).hasValue(updated);
+        verify(delegate, times(2)).selectCustomerById(id);
+    }
+
+    @Test
+    void deleteCustomerByIdInvalidatesCachedEntry() {
+        //Given
+        int id = 1;
+        Customer customer = new Customer(id, "test", "test@gmail.com", 20);
+        when(delegate.selectCustomerById(id))
+                .thenReturn(Optional.of(customer))
+                .thenReturn(Optional.empty());
+        underTest.selectCustomerById(id);
+
+        //When
+        underTest.deleteCustomerById(id);
+
+        //Then
+        assertThat(underTest.selectCustomerById(id)).isEmpty();
+        verify(delegate).deleteCustomerById(id);
+    }
+
+    @Test
+    void selectCustomerVersionIsServedFromCachedCustomer() {
+        //Given
+        int id = 1;
+        Customer customer = new Customer(id, "test", "test@gmail.com", 20, 4L);
+        when(delegate.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(id);
+
+        //When
+        Optional<Long> actual = underTest.selectCustomerVersion(id);
+
+        //Then
+        assertThat(actual).hasValue(4L);
+        verify(delegate, never()).selectCustomerVersion(id);
+    }
+
+    @Test
+    void selectCustomerVersionFallsBackToDelegate() {
+        //Given
+        int id = 1;
+        when(delegate.selectCustomerVersion(id)).thenReturn(Optional.of(2L));
+
+        //When
+        Optional<Long> actual = underTest.selectCustomerVersion(id);
+
+        //Then
+        assertThat(actual).hasValue(2L);
+    }
+}
@@ -0,0 +1,55 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+class CustomerChangeFeedTest {
+
+    private final CustomerService customerService = mock(CustomerService.class);
+    // polled by hand, the scheduled poll never comes round during a test
+    private final CustomerChangeFeed underTest = new CustomerChangeFeed(customerService, Duration.ofHours(1), 10);
+
+    @AfterEach
+    void tearDown() {
+        underTest.destroy();
+    }
+
+    @Test
+    void subscribersAtTheSamePositionShareOneRead() {
+        //Given
+        CustomerChange change = CustomerChange.tombstone("a", 1);
+        when(customerService.getChanges(null, 500)).thenReturn(new CustomerChangePage(List.of(change), "a"));
+        when(customerService.getChanges("a", 500)).thenReturn(new CustomerChangePage(List.of(), "a"));
+        underTest.subscribe(null);
+        underTest.subscribe(null);
+        underTest.subscribe("a");
+
+        //When
+        underTest.poll();
+
+        //Then
+        verify(customerService, times(2)).getChanges(null, 500);
+        verify(customerService, times(2)).getChanges("a", 500);
+    }
+
+    @Test
+    void subscribersFallingBehindTheRetainedLogAreLetGo() {
+        //Given
+        when(customerService.getChanges("a", 500))
+                .thenReturn(new CustomerChangePage(List.of(), "a"))
+                .thenThrow(CustomerChangeToken.expired());
+        underTest.subscribe("a");
+
+        //When
+        underTest.poll();
+        underTest.poll();
+
+        //Then
+        verify(customerService, times(2)).getChanges("a", 500);
+    }
+}
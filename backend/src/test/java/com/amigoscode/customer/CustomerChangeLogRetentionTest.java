@@ -0,0 +1,52 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CustomerChangeLogRetentionTest {
+
+    private final CustomerDao customerDao = mock(CustomerDao.class);
+    private final CustomerChangeLogRetention underTest =
+            new CustomerChangeLogRetention(customerDao, Duration.ofDays(7), Duration.ofHours(1));
+
+    @AfterEach
+    void tearDown() {
+        underTest.destroy();
+    }
+
+    @Test
+    void deletesBatchesOlderThanTheRetentionUntilNoneAreLeft() {
+        //Given
+        Instant now = Instant.parse("2023-05-08T12:00:00Z");
+        Instant cutoff = Instant.parse("2023-05-01T12:00:00Z");
+        when(customerDao.deleteChangesBefore(eq(cutoff), anyInt())).thenReturn(10_000, 42, 0);
+
+        //When
+        long deleted = underTest.prune(now);
+
+        //Then
+        assertThat(deleted).isEqualTo(10_042);
+        verify(customerDao, times(3)).deleteChangesBefore(eq(cutoff), anyInt());
+    }
+
+    @Test
+    void deletesNothingFromALogWithinTheRetention() {
+        //Given
+        when(customerDao.deleteChangesBefore(any(), anyInt())).thenReturn(0);
+
+        //When
+        long deleted = underTest.prune(Instant.now());
+
+        //Then
+        assertThat(deleted).isZero();
+        verify(customerDao, times(1)).deleteChangesBefore(any(), anyInt());
+    }
+}
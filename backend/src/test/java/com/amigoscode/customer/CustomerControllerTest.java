@@ -0,0 +1,139 @@
+package com.amigoscode.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// the controller on its own with the application's formats, no server or database
+class CustomerControllerTest {
+
+    private final CustomerService customerService = mock(CustomerService.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .setFilterProvider(new SimpleFilterProvider().setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+        CustomerFormats customerFormats = new CustomerFormats(objectMapper,
+                new Jackson2ObjectMapperBuilder().filters(new SimpleFilterProvider()
+                        .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll())));
+        List<HttpMessageConverter<?>> converters = new ArrayList<>(customerFormats.converters());
+        converters.add(new MappingJackson2HttpMessageConverter(objectMapper));
+        mockMvc = MockMvcBuilders.standaloneSetup(new CustomerController(customerService,
+                        mock(CustomerImportParser.class), customerFormats, mock(CustomerChangeFeed.class),
+                        mock(ProfileImageThumbnails.class)))
+                .setMessageConverters(converters.toArray(HttpMessageConverter[]::new))
+                .build();
+
+        when(customerService.getCustomer(1)).thenReturn(new Customer(1, "test", "test@gmail.com", 20, 3L));
+        when(customerService.getCustomerVersion(1)).thenReturn(3L);
+    }
+
+    @Test
+    void eTagDiffersByMediaTypeAndFields() throws Exception {
+        //When
+        String json = eTagOf("/api/v1/customers/1", MediaType.APPLICATION_JSON_VALUE);
+        String cbor = eTagOf("/api/v1/customers/1", MediaType.APPLICATION_CBOR_VALUE);
+        String projected = eTagOf("/api/v1/customers/1?fields=id,name", MediaType.APPLICATION_JSON_VALUE);
+
+        //Then
+        assertThat(json).isEqualTo("\"3\"");
+        assertThat(cbor).isEqualTo("\"3-cbor\"");
+        assertThat(projected).isEqualTo("\"3-id.name\"");
+    }
+
+    @Test
+    void pageETagDiffersByMediaTypeAndFields() throws Exception {
+        //Given
+        when(customerService.getCustomers(isNull(), eq(10), any()))
+                .thenReturn(List.of(new Customer(1, "test", "test@gmail.com", 20, 3L)));
+
+        //When
+        String json = eTagOf("/api/v1/customers?limit=10", MediaType.APPLICATION_JSON_VALUE);
+        String cbor = eTagOf("/api/v1/customers?limit=10", MediaType.APPLICATION_CBOR_VALUE);
+        String projected = eTagOf("/api/v1/customers?limit=10&fields=id,name", MediaType.APPLICATION_JSON_VALUE);
+
+        //Then
+        assertThat(json).startsWith("W/\"").doesNotContain("-");
+        assertThat(cbor).isEqualTo(json.substring(0, json.length() - 1) + "-cbor\"");
+        assertThat(projected).isEqualTo(json.substring(0, json.length() - 1) + "-id.name\"");
+    }
+
+    @Test
+    void searchAnswersInTheFormatItsETagNames() throws Exception {
+        //Given
+        when(customerService.searchCustomers(any(), isNull(), eq(100), any()))
+                .thenReturn(new CustomerPage(List.of(new Customer(1, "test", "test@gmail.com", 20, 3L)), null));
+
+        //When
+        //Then
+        mockMvc.perform(get("/api/v1/customers/search?name=test").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string(HttpHeaders.ETAG, endsWith("-cbor\"")));
+    }
+
+    @Test
+    void answersTheBodyInTheFormatItsETagNames() throws Exception {
+        //When
+        //Then
+        mockMvc.perform(get("/api/v1/customers/1").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+    }
+
+    @Test
+    void aJsonETagDoesNotRevalidateTheCborRepresentation() throws Exception {
+        //When
+        //Then
+        mockMvc.perform(get("/api/v1/customers/1")
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/v1/customers/1")
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"3-cbor\""))
+                .andExpect(status().isNotModified());
+        verify(customerService, times(1)).getCustomer(1);
+    }
+
+    @Test
+    void ifMatchTakesTheVersionOfAnyRepresentationsETag() throws Exception {
+        //When
+        mockMvc.perform(delete("/api/v1/customers/1").header(HttpHeaders.IF_MATCH, "\"3-cbor-id.name\""))
+                .andExpect(status().isOk());
+
+        //Then
+        verify(customerService).deleteCustomerById(1, 3L);
+    }
+
+    private String eTagOf(String uri, String accept) throws Exception {
+        return mockMvc.perform(get(uri).header(HttpHeaders.ACCEPT, accept))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+    }
+}
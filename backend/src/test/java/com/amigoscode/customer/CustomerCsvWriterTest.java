@@ -0,0 +1,47 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerCsvWriterTest {
+
+    @Test
+    void writesAHeaderAndQuotesWhatNeedsQuoting() throws IOException {
+        //Given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        //When
+        try (CustomerCsvWriter underTest = new CustomerCsvWriter(out, EnumSet.allOf(CustomerField.class))) {
+            underTest.write(new Customer(1, "Anna", "anna@gmail.com", 30));
+            underTest.write(new Customer(2, "Smith, \"Jo\"", "jo@gmail.com", 40));
+        }
+
+        //Then
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("""
+                id,name,email,age\r
+                1,Anna,anna@gmail.com,30\r
+                2,"Smith, ""Jo\"\"\",jo@gmail.com,40\r
+                """);
+    }
+
+    @Test
+    void quotedValuesReadBackThroughTheImportParser() throws IOException {
+        //Given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CustomerCsvWriter underTest = new CustomerCsvWriter(out, EnumSet.of(CustomerField.ID, CustomerField.NAME))) {
+            underTest.write(new Customer(7, "a, \"b\"", null, null));
+        }
+
+        //When
+        String line = out.toString(StandardCharsets.UTF_8).split("\r\n")[1];
+
+        //Then
+        assertThat(CustomerImportParser.splitCsvLine(line)).containsExactly("7", "a, \"b\"");
+    }
+}
@@ -0,0 +1,68 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.aop.ObservedAspect;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerDaoObservationTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CustomerDao underTest;
+
+    @BeforeEach
+    void setUp() {
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(new DefaultMeterObservationHandler(meterRegistry));
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new CustomerInMemoryDataAccessService());
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new ObservedAspect(observationRegistry));
+        underTest = proxyFactory.getProxy();
+    }
+
+    @Test
+    void recordsTimerPerDaoMethod() {
+        //When
+        underTest.selectCustomerById(1);
+        underTest.selectCustomerById(2);
+        underTest.existsCustomerWithId(1);
+
+        //Then
+        Timer selectById = meterRegistry.find("customer.dao")
+                .tags("class", CustomerInMemoryDataAccessService.class.getName(), "method", "selectCustomerById")
+                .timer();
+        Timer existsById = meterRegistry.find("customer.dao")
+                .tags("method", "existsCustomerWithId")
+                .timer();
+        assertThat(selectById).isNotNull();
+        assertThat(selectById.count()).isEqualTo(2);
+        assertThat(existsById).isNotNull();
+        assertThat(existsById.count()).isEqualTo(1);
+    }
+
+    @Test
+    void tagsFailedCallsWithTheException() {
+        //Given
+        Customer customer = new Customer("Alex", "alex@gmail.com", 19);
+        underTest.insertCustomer(customer);
+
+        //When
+        try {
+            underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 19));
+        } catch (RuntimeException ignored) {
+        }
+
+        //Then
+        assertThat(meterRegistry.find("customer.dao")
+                .tags("method", "insertCustomer", "error", "DuplicateKeyException")
+                .timer())
+                .isNotNull();
+    }
+}
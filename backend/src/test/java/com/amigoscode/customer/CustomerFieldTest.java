@@ -0,0 +1,58 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerFieldTest {
+
+    @Test
+    void parseSelectsListedFields() {
+        //When
+        Set<CustomerField> actual = CustomerField.parse("name, id");
+
+        //Then
+        assertThat(actual).containsExactlyInAnyOrder(CustomerField.ID, CustomerField.NAME);
+    }
+
+    @Test
+    void parseSelectsAllFieldsWhenAbsent() {
+        assertThat(CustomerField.parse(null)).isEqualTo(CustomerField.ALL);
+        assertThat(CustomerField.parse(" ")).isEqualTo(CustomerField.ALL);
+    }
+
+    @Test
+    void willThrowWhenFieldIsUnknown() {
+        assertThatThrownBy(() -> CustomerField.parse("id,version"))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("fields must be a comma separated list of id, name, email, age");
+        assertThatThrownBy(() -> CustomerField.parse(","))
+                .isInstanceOf(RequestValidationException.class);
+    }
+
+    @Test
+    void columnsAlwaysStartWithIdAndVersion() {
+        assertThat(CustomerField.columns(CustomerField.parse("name"))).isEqualTo("id, version, name");
+        assertThat(CustomerField.columns(CustomerField.ALL)).isEqualTo("id, version, name, email, age");
+    }
+
+    @Test
+    void filtersWriteOnlySelectedProperties() throws JsonProcessingException {
+        //Given
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 19, 2L);
+
+        //When
+        String actual = new ObjectMapper()
+                .writer(CustomerField.filters(CustomerField.parse("id,name")))
+                .writeValueAsString(customer);
+
+        //Then
+        assertThat(actual).isEqualTo("{\"id\":1,\"name\":\"Alex\"}");
+    }
+}
@@ -0,0 +1,55 @@
+package com.amigoscode.customer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerFormatsTest {
+
+    private final CustomerFormats underTest = new CustomerFormats(
+            new ObjectMapper(),
+            new Jackson2ObjectMapperBuilder().filters(new SimpleFilterProvider()
+                    .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll())));
+
+    @Test
+    void negotiatesJsonByDefault() {
+        assertThat(underTest.negotiate(null)).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(underTest.negotiate("*/*")).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(underTest.negotiate("application/*")).isEqualTo(MediaType.APPLICATION_JSON);
+    }
+
+    @Test
+    void negotiatesMostSpecificAcceptedFormat() {
+        assertThat(underTest.negotiate("*/*, application/cbor")).isEqualTo(MediaType.APPLICATION_CBOR);
+        assertThat(underTest.negotiate("application/x-protobuf")).isEqualTo(CustomerProtobuf.MEDIA_TYPE);
+        assertThat(underTest.negotiate("application/json;q=0.5, application/x-jackson-smile"))
+                .isEqualTo(CustomerFormats.SMILE);
+    }
+
+    @Test
+    void writesCborArrayOfSelectedFields() throws IOException {
+        //Given
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        //When
+        try (CustomerFormats.CustomerWriter writer = underTest.openWriter(
+                MediaType.APPLICATION_CBOR, outputStream, CustomerField.parse("name"))) {
+            writer.write(new Customer(1, "Alex", "alex@gmail.com", 19));
+            writer.write(new Customer(2, "Jamila", "jamila@gmail.com", 30));
+        }
+
+        //Then
+        JsonNode actual = new CBORMapper().readTree(outputStream.toByteArray());
+        assertThat(actual.toString()).isEqualTo("[{\"name\":\"Alex\"},{\"name\":\"Jamila\"}]");
+    }
+}
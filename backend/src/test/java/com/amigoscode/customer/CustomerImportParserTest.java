@@ -0,0 +1,79 @@
+package com.amigoscode.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerImportParserTest {
+
+    private final CustomerImportParser underTest = new CustomerImportParser(new ObjectMapper());
+
+    @Test
+    void canParseNdjson() {
+        //Given
+        InputStream body = stream("""
+                {"name":"test","email":"test@gmail.com","age":20}
+
+                {"name":"broken"
+                """);
+
+        //When
+        List<CustomerImportRow> actual = underTest.ndjson(body).toList();
+
+        //Then
+        assertThat(actual).containsExactly(
+                CustomerImportRow.valid(1, new CustomerRegistrationRequest("test", "test@gmail.com", 20)),
+                CustomerImportRow.invalid(3, "malformed JSON"));
+    }
+
+    @Test
+    void rejectsNdjsonLinesThatAreNotObjects() {
+        //Given
+        InputStream body = stream("""
+                null
+                42
+                ["test","test@gmail.com",20]
+                {"name":"test","email":"test@gmail.com","age":"old"}
+                """);
+
+        //When
+        List<CustomerImportRow> actual = underTest.ndjson(body).toList();
+
+        //Then
+        assertThat(actual).containsExactly(
+                CustomerImportRow.invalid(1, "expected a JSON object"),
+                CustomerImportRow.invalid(2, "expected a JSON object"),
+                CustomerImportRow.invalid(3, "expected a JSON object"),
+                CustomerImportRow.invalid(4, "malformed JSON"));
+    }
+
+    @Test
+    void canParseCsvWithQuotedFieldsAndAnyColumnOrder() {
+        //Given
+        InputStream body = stream("""
+                email,age,name
+                test@gmail.com,20,"Doe, John"
+                quote@gmail.com,30,"say ""hi\"""
+                nan@gmail.com,old,test
+                """);
+
+        //When
+        List<CustomerImportRow> actual = underTest.csv(body).toList();
+
+        //Then
+        assertThat(actual).containsExactly(
+                CustomerImportRow.valid(2, new CustomerRegistrationRequest("Doe, John", "test@gmail.com", 20)),
+                CustomerImportRow.valid(3, new CustomerRegistrationRequest("say \"hi\"", "quote@gmail.com", 30)),
+                CustomerImportRow.invalid(4, "age old is not a number"));
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,322 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.ResourceGoneException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerInMemoryDataAccessServiceTest {
+
+    private CustomerInMemoryDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerInMemoryDataAccessService();
+    }
+
+    @Test
+    void insertCustomerAssignsIdAndIndexesEmail() {
+        //Given
+        Customer customer = new Customer("test", "test@gmail.com", 20);
+
+        //When
+        underTest.insertCustomer(customer);
+
+        //Then
+        assertThat(customer.getId()).isNotNull();
+        assertThat(underTest.selectCustomerById(customer.getId())).hasValue(customer);
+        assertThat(underTest.existsCustomerWithEmail("test@gmail.com")).isTrue();
+    }
+
+    @Test
+    void idsKeepWorkingPastTheFirstPagesOfTheStore() {
+        //Given
+        IntStream.range(0, 10_000).forEach(i -> underTest.insertCustomer(new Customer("c" + i, i + "@gmail.com", 20)));
+
+        //When
+        List<Customer> page = underTest.selectCustomers(4_090, 10, CustomerField.ALL);
+
+        //Then
+        assertThat(page).extracting(Customer::getId).containsExactlyElementsOf(IntStream.rangeClosed(4_091, 4_100).boxed().toList());
+        assertThat(underTest.selectCustomerById(10_002)).map(Customer::getEmail).hasValue("9999@gmail.com");
+        assertThat(underTest.selectCustomerById(10_003)).isEmpty();
+        assertThat(underTest.selectCustomerById(-1)).isEmpty();
+    }
+
+    @Test
+    void profileImageIdIsSwappedOnlyFromTheExpectedOneAndGoesWithTheCustomer() {
+        //Given
+        Customer customer = new Customer("test", "test@gmail.com", 20);
+        underTest.insertCustomer(customer);
+        Integer id = customer.getId();
+
+        //When
+        boolean set = underTest.updateProfileImageId(id, null, "a");
+        boolean stale = underTest.updateProfileImageId(id, "b", "c");
+
+        //Then
+        assertThat(set).isTrue();
+        assertThat(stale).isFalse();
+        assertThat(underTest.selectProfileImageId(id)).hasValue("a");
+
+        underTest.deleteCustomerById(id);
+        assertThat(underTest.selectProfileImageId(id)).isEmpty();
+        assertThat(underTest.updateProfileImageId(id, null, "d")).isFalse();
+    }
+
+    @Test
+    void willThrowWhenInsertingExistingEmail() {
+        //When
+        assertThatThrownBy(() -> underTest.insertCustomer(new Customer("test", "igor@gmail.com", 20)))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void concurrentInsertsOfSameEmailLetOnlyOneThrough() throws Exception {
+        //Given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger duplicates = new AtomicInteger();
+
+        //When
+        List<Future<?>> futures = IntStream.range(0, 100)
+                .<Future<?>>mapToObj(i -> executor.submit(() -> {
+                    try {
+                        underTest.insertCustomer(new Customer("test " + i, "race@gmail.com", 20));
+                    } catch (DuplicateKeyException e) {
+                        duplicates.incrementAndGet();
+                    }
+                }))
+                .toList();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        //Then
+        assertThat(duplicates).hasValue(99);
+        assertThat(underTest.selectAllCustomers())
+                .filteredOn(c -> c.getEmail().equals("race@gmail.com"))
+                .hasSize(1);
+    }
+
+    @Test
+    void selectCustomersWalksIdsInOrderSkippingDeleted() {
+        //Given
+        Customer first = new Customer("first", "first@gmail.com", 20);
+        Customer second = new Customer("second", "second@gmail.com", 20);
+        underTest.insertCustomer(first);
+        underTest.insertCustomer(second);
+        underTest.deleteCustomerById(first.getId());
+
+        //When
+        List<Customer> actual = underTest.selectCustomers(2, 10, CustomerField.ALL);
+
+        //Then
+        assertThat(actual).containsExactly(second);
+    }
+
+    @Test
+    void streamCustomersStopsAtTheEndOfTheRange() {
+        //Given
+        Customer first = new Customer("first", "first@gmail.com", 20);
+        Customer second = new Customer("second", "second@gmail.com", 20);
+        Customer third = new Customer("third", "third@gmail.com", 20);
+        underTest.insertCustomer(first);
+        underTest.insertCustomer(second);
+        underTest.insertCustomer(third);
+
+        //When
+        List<Customer> actual = new ArrayList<>();
+        underTest.streamCustomers(first.getId(), second.getId(), CustomerField.ALL, actual::add);
+
+        //Then
+        assertThat(actual).containsExactly(second);
+    }
+
+    @Test
+    void updateCustomerReplacesInsteadOfAppending() {
+        //Given
+        int id = 1;
+
+        //When
+        Optional<Customer> actual = underTest.updateCustomer(new Customer(id, null, "new@gmail.com", null));
+
+        //Then
+        assertThat(actual).hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo("new@gmail.com"));
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+        assertThat(underTest.existsCustomerWithEmail("igor@gmail.com")).isFalse();
+        assertThat(underTest.existsCustomerWithEmail("new@gmail.com")).isTrue();
+    }
+
+    @Test
+    void willThrowWhenUpdatingToExistingEmail() {
+        //When
+        assertThatThrownBy(() -> underTest.updateCustomer(new Customer(1, null, "marina@gmail.com", null)))
+                .isInstanceOf(DuplicateKeyException.class);
+
+        //Then
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo("igor@gmail.com"));
+    }
+
+    @Test
+    void returnedCustomersAreCopies() {
+        //Given
+        Customer customer = underTest.selectCustomerById(1).orElseThrow();
+
+        //When
+        customer.setName("changed");
+
+        //Then
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Igor"));
+    }
+
+    @Test
+    void searchCustomersFiltersSortsAndPagesByKeyset() {
+        //Given
+        underTest.insertCustomer(new Customer("Irina", "irina@ACME.com", 41));
+        underTest.insertCustomer(new Customer("Ivan", "ivan@acme.com", 29));
+        underTest.insertCustomer(new Customer("Ilya", "ilya@acme.com", 29));
+        CustomerSearchCriteria criteria = new CustomerSearchCriteria(
+                null, "i", "acme.com", null, 40, CustomerSort.parse("-age"));
+
+        //When
+        List<Customer> firstPage = underTest.searchCustomers(criteria, null, 1, CustomerField.ALL);
+        List<Customer> secondPage = underTest.searchCustomers(
+                criteria, CustomerSearchCursor.after(firstPage.get(0), criteria.sort()), 1, CustomerField.ALL);
+
+        //Then
+        assertThat(firstPage).extracting(Customer::getName).containsExactly("Ilya");
+        assertThat(secondPage).extracting(Customer::getName).containsExactly("Ivan");
+    }
+
+    @Test
+    void searchCustomersMatchesNameSubstringIgnoringCase() {
+        //When
+        List<Customer> actual = underTest.searchCustomers(
+                new CustomerSearchCriteria("RIN", null, null, 18, null, CustomerSort.parse("name")), null, 10, CustomerField.ALL);
+
+        //Then
+        assertThat(actual).extracting(Customer::getName).containsExactly("Marina");
+    }
+
+    @Test
+    void updateCustomerBumpsVersionAndHonoursExpectedVersion() {
+        //Given
+        Customer customer = new Customer("test", "test@gmail.com", 20);
+        underTest.insertCustomer(customer);
+        int id = customer.getId();
+
+        //When
+        Optional<Customer> updated = underTest.updateCustomer(new Customer(id, "changed", null, null));
+        Optional<Customer> stale = underTest.updateCustomer(new Customer(id, "again", null, null, 0L));
+        Optional<Customer> current = underTest.updateCustomer(new Customer(id, "again", null, null, 1L));
+
+        //Then
+        assertThat(updated).hasValueSatisfying(c -> assertThat(c.getVersion()).isEqualTo(1L));
+        assertThat(stale).isEmpty();
+        assertThat(current).hasValueSatisfying(c -> assertThat(c.getVersion()).isEqualTo(2L));
+        assertThat(underTest.selectCustomerVersion(id)).hasValue(2L);
+    }
+
+    @Test
+    void deleteCustomerByIdAndVersionOnlyDeletesCurrentVersion() {
+        //Given
+        Customer customer = new Customer("test", "test@gmail.com", 20);
+        underTest.insertCustomer(customer);
+        int id = customer.getId();
+
+        //When
+        boolean stale = underTest.deleteCustomerByIdAndVersion(id, 1L);
+        boolean current = underTest.deleteCustomerByIdAndVersion(id, 0L);
+
+        //Then
+        assertThat(stale).isFalse();
+        assertThat(current).isTrue();
+        assertThat(underTest.existsCustomerWithEmail("test@gmail.com")).isFalse();
+    }
+
+    @Test
+    void selectChangesReplaysTheLogFromAnyToken() {
+        //Given
+        Customer customer = new Customer("test", "test@gmail.com", 20);
+        underTest.insertCustomer(customer);
+        underTest.updateCustomer(new Customer(customer.getId(), "changed", null, null));
+        underTest.deleteCustomerById(1);
+
+        //When
+        List<CustomerChange> all = underTest.selectChanges(null, 100);
+        List<CustomerChange> rest = underTest.selectChanges(all.get(2).token(), 100);
+
+        //Then
+        assertThat(all).extracting(CustomerChange::customerId)
+                .containsExactly(1, 2, customer.getId(), customer.getId(), 1);
+        assertThat(all.get(0).deleted()).isTrue();
+        assertThat(all.get(2).customer().getName()).isEqualTo("changed");
+        assertThat(rest).containsExactlyElementsOf(all.subList(3, 5));
+        assertThat(underTest.selectChanges(all.get(4).token(), 100)).isEmpty();
+    }
+
+    @Test
+    void profileImageChangesAreNotLogged() {
+        //Given
+        String head = underTest.selectChanges(null, 100).get(1).token();
+
+        //When
+        underTest.updateProfileImageId(1, null, "a");
+
+        //Then
+        assertThat(underTest.selectChanges(head, 100)).isEmpty();
+    }
+
+    @Test
+    void deleteChangesBeforeDropsTheOldestEntriesAndKeepsTokensValid() {
+        //Given
+        List<CustomerChange> before = underTest.selectChanges(null, 100);
+        Instant cutoff = Instant.now().plusSeconds(1);
+        underTest.deleteCustomerById(2);
+
+        //When
+        int deleted = underTest.deleteChangesBefore(cutoff, 1);
+        int notOldEnough = underTest.deleteChangesBefore(Instant.now().minusSeconds(3600), 100);
+
+        //Then
+        assertThat(deleted).isEqualTo(1);
+        assertThat(notOldEnough).isZero();
+        assertThat(underTest.selectChanges(null, 100)).extracting(CustomerChange::customerId)
+                .containsExactly(2, 2);
+        assertThat(underTest.selectChanges(before.get(0).token(), 100)).extracting(CustomerChange::customerId)
+                .containsExactly(2, 2);
+        assertThat(underTest.selectChanges(before.get(1).token(), 100)).extracting(CustomerChange::customerId)
+                .containsExactly(2);
+    }
+
+    @Test
+    void selectChangesRejectsATokenFromBeforeThePrunedEntries() {
+        //Given
+        String first = underTest.selectChanges(null, 100).get(0).token();
+        underTest.deleteChangesBefore(Instant.now().plusSeconds(1), 100);
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.selectChanges(first, 100))
+                .isInstanceOf(ResourceGoneException.class);
+        assertThat(underTest.selectChanges(null, 100)).isEmpty();
+    }
+}
@@ -0,0 +1,172 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class CustomerInsertCoalescerTest {
+
+    private static final Duration INSERT_TIMEOUT = Duration.ofSeconds(5);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CustomerInsertCoalescer underTest;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        underTest.destroy();
+    }
+
+    @Test
+    void completesEachRegistrationWithItsIdOrDuplicateError() {
+        //Given
+        CustomerInMemoryDataAccessService customerDao = new CustomerInMemoryDataAccessService();
+        underTest = new CustomerInsertCoalescer(customerDao, 100, 10, Duration.ofMillis(20), INSERT_TIMEOUT, meterRegistry);
+
+        //When
+        CompletableFuture<Integer> alex = underTest.insert(new Customer("Alex", "alex@gmail.com", 19));
+        CompletableFuture<Integer> alexAgain = underTest.insert(new Customer("Alex", "alex@gmail.com", 20));
+        CompletableFuture<Integer> igor = underTest.insert(new Customer("Igor", "igor@gmail.com", 33));
+
+        //Then
+        Integer id = alex.join();
+        assertThat(customerDao.selectCustomerById(id)).map(Customer::getEmail).contains("alex@gmail.com");
+        assertThat(alexAgain).failsWithin(Duration.ofSeconds(5))
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(DuplicateKeyException.class);
+        assertThat(igor).failsWithin(Duration.ofSeconds(5))
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void groupsRegistrationsArrivingWithinLatencyIntoOneInsert() {
+        //Given
+        CustomerDao customerDao = mock(CustomerDao.class);
+        when(customerDao.insertCustomers(anyList())).thenReturn(Map.of(
+                "a@gmail.com", 1, "b@gmail.com", 2, "c@gmail.com", 3));
+        underTest = new CustomerInsertCoalescer(customerDao, 100, 10, Duration.ofMillis(500), INSERT_TIMEOUT, meterRegistry);
+
+        //When
+        List<CompletableFuture<Integer>> ids = List.of(
+                underTest.insert(new Customer("a", "a@gmail.com", 20)),
+                underTest.insert(new Customer("b", "b@gmail.com", 30)),
+                underTest.insert(new Customer("c", "c@gmail.com", 40)));
+
+        //Then
+        assertThat(ids.stream().map(CompletableFuture::join)).containsExactly(1, 2, 3);
+        verify(customerDao, times(1)).insertCustomers(anyList());
+        assertThat(meterRegistry.get("customer.write_behind.batch.size").summary().max()).isEqualTo(3);
+    }
+
+    @Test
+    void flushesAsSoonAsBatchIsFull() {
+        //Given
+        CustomerDao customerDao = mock(CustomerDao.class);
+        when(customerDao.insertCustomers(anyList())).thenReturn(Map.of("a@gmail.com", 1, "b@gmail.com", 2));
+        underTest = new CustomerInsertCoalescer(customerDao, 100, 2, Duration.ofMinutes(1), INSERT_TIMEOUT, meterRegistry);
+
+        //When
+        CompletableFuture<Integer> a = underTest.insert(new Customer("a", "a@gmail.com", 20));
+        CompletableFuture<Integer> b = underTest.insert(new Customer("b", "b@gmail.com", 30));
+
+        //Then
+        assertThat(a).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(1);
+        assertThat(b).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(2);
+    }
+
+    @Test
+    void failsOnlyTheBatchWhoseInsertThrows() {
+        //Given
+        CustomerDao customerDao = mock(CustomerDao.class);
+        when(customerDao.insertCustomers(anyList()))
+                .thenThrow(new DataAccessResourceFailureException("connection reset"))
+                .thenReturn(Map.of("b@gmail.com", 2));
+        underTest = new CustomerInsertCoalescer(customerDao, 100, 1, Duration.ZERO, INSERT_TIMEOUT, meterRegistry);
+
+        //When
+        CompletableFuture<Integer> a = underTest.insert(new Customer("a", "a@gmail.com", 20));
+        CompletableFuture<Integer> b = underTest.insert(new Customer("b", "b@gmail.com", 30));
+
+        //Then
+        assertThat(a).failsWithin(Duration.ofSeconds(5))
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(b).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(2);
+    }
+
+    @Test
+    void keepsFlushingAfterABatchBlowsUpOutsideTheInsert() {
+        //Given
+        CustomerDao customerDao = mock(CustomerDao.class);
+        // a null result makes flush itself throw, past the catch around insertCustomers
+        when(customerDao.insertCustomers(anyList()))
+                .thenReturn(null)
+                .thenReturn(Map.of("b@gmail.com", 2));
+        underTest = new CustomerInsertCoalescer(customerDao, 100, 1, Duration.ZERO, INSERT_TIMEOUT, meterRegistry);
+
+        //When
+        CompletableFuture<Integer> a = underTest.insert(new Customer("a", "a@gmail.com", 20));
+        CompletableFuture<Integer> b = underTest.insert(new Customer("b", "b@gmail.com", 30));
+
+        //Then
+        assertThat(a).failsWithin(Duration.ofSeconds(5))
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(NullPointerException.class);
+        assertThat(b).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(2);
+    }
+
+    @Test
+    void willThrowWhenQueueIsFull() throws InterruptedException {
+        //Given
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CustomerDao customerDao = mock(CustomerDao.class);
+        when(customerDao.insertCustomers(anyList())).thenAnswer(invocation -> {
+            flushing.countDown();
+            release.await();
+            return Map.of();
+        });
+        underTest = new CustomerInsertCoalescer(customerDao, 1, 1, Duration.ZERO, INSERT_TIMEOUT, meterRegistry);
+        underTest.insert(new Customer("a", "a@gmail.com", 20));
+        assertThat(flushing.await(5, TimeUnit.SECONDS)).isTrue();
+        underTest.insert(new Customer("b", "b@gmail.com", 20));
+
+        //When
+        assertThatThrownBy(() -> underTest.insert(new Customer("c", "c@gmail.com", 20)))
+                .isInstanceOf(ServiceUnavailableException.class)
+                .hasMessage("registration queue is full, retry later");
+        release.countDown();
+    }
+
+    @Test
+    void writesQueuedRegistrationsOnShutdown() throws InterruptedException {
+        //Given
+        CustomerDao customerDao = mock(CustomerDao.class);
+        when(customerDao.insertCustomers(anyList())).thenReturn(Map.of("a@gmail.com", 1));
+        underTest = new CustomerInsertCoalescer(customerDao, 100, 10, Duration.ofMinutes(1), INSERT_TIMEOUT, meterRegistry);
+        CompletableFuture<Integer> a = underTest.insert(new Customer("a", "a@gmail.com", 20));
+
+        //When
+        underTest.destroy();
+
+        //Then
+        assertThat(a).isCompletedWithValue(1);
+        assertThatThrownBy(() -> underTest.insert(new Customer("b", "b@gmail.com", 20)))
+                .isInstanceOf(ServiceUnavailableException.class);
+    }
+}
@@ -1,15 +1,25 @@
 package com.amigoscode.customer;
 
 import com.amigoscode.AbstractTestcontainers;
+import com.amigoscode.exception.RequestValidationException;
+import com.amigoscode.exception.ResourceGoneException;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
 
@@ -20,7 +30,8 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
     void setUp() {
         underTest = new CustomerJDBCDataAccessService(
                 getJdbcTemplate(),
-                rowMapper
+                rowMapper,
+                ObservationRegistry.NOOP
         );
     }
 
@@ -41,6 +52,113 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         assertThat(actual).isNotEmpty();
     }
 
+    @Test
+    void selectCustomersReturnsPageAfterGivenId() {
+        //Given
+        underTest.insertCustomer(getCustomer());
+        underTest.insertCustomer(getCustomer());
+        underTest.insertCustomer(getCustomer());
+
+        List<Customer> firstPage = underTest.selectCustomers(null, 2, CustomerField.ALL);
+
+        //When
+        List<Customer> secondPage = underTest.selectCustomers(firstPage.get(1).getId(), 2, CustomerField.ALL);
+
+        //Then
+        assertThat(firstPage).hasSize(2);
+        assertThat(firstPage.get(0).getId()).isLessThan(firstPage.get(1).getId());
+        assertThat(secondPage).isNotEmpty()
+                .allSatisfy(c -> assertThat(c.getId()).isGreaterThan(firstPage.get(1).getId()));
+    }
+
+    @Test
+    void streamAllCustomers() {
+        //Given
+        Customer customer = getCustomer();
+        underTest.insertCustomer(customer);
+
+        //When
+        List<Customer> actual = new ArrayList<>();
+        underTest.streamAllCustomers(CustomerField.ALL, actual::add);
+
+        //Then
+        assertThat(actual)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id")
+                .contains(customer);
+    }
+
+    @Test
+    void streamCustomersReadsTheIdRangeInOrder() {
+        //Given
+        List<Customer> customers = List.of(getCustomer(), getCustomer(), getCustomer(), getCustomer());
+        Map<String, Integer> ids = underTest.insertCustomers(customers);
+        List<Integer> inserted = customers.stream().map(customer -> ids.get(customer.getEmail())).sorted().toList();
+
+        //When
+        List<Customer> actual = new ArrayList<>();
+        underTest.streamCustomers(inserted.get(0), inserted.get(2), Set.of(CustomerField.ID), actual::add);
+
+        //Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(inserted.get(1), inserted.get(2));
+        assertThat(actual).extracting(Customer::getName).containsOnlyNulls();
+    }
+
+    @Test
+    void searchCustomersPagesByKeysetInSortOrder() {
+        //Given
+        String domain = UUID.randomUUID() + ".test";
+        underTest.insertCustomer(new Customer("Zoe", "zoe@" + domain, 30));
+        underTest.insertCustomer(new Customer("Anna", "anna@" + domain, 30));
+        underTest.insertCustomer(new Customer("Mia", "mia@" + domain.toUpperCase(), 50));
+        CustomerSearchCriteria criteria = new CustomerSearchCriteria(
+                null, null, domain, 18, 40, CustomerSort.parse("name"));
+
+        //When
+        List<Customer> firstPage = underTest.searchCustomers(criteria, null, 1, CustomerField.ALL);
+        List<Customer> secondPage = underTest.searchCustomers(
+                criteria, CustomerSearchCursor.after(firstPage.get(0), criteria.sort()), 10, CustomerField.ALL);
+
+        //Then
+        assertThat(firstPage).extracting(Customer::getName).containsExactly("Anna");
+        assertThat(secondPage).extracting(Customer::getName).containsExactly("Zoe");
+    }
+
+    @Test
+    void searchCustomersReadsOnlySelectedFieldsAndSortKey() {
+        //Given
+        String domain = UUID.randomUUID() + ".test";
+        underTest.insertCustomer(new Customer("Anna", "anna@" + domain, 30));
+        CustomerSearchCriteria criteria = new CustomerSearchCriteria(
+                null, null, domain, null, null, CustomerSort.parse("age"));
+
+        //When
+        List<Customer> actual = underTest.searchCustomers(criteria, null, 10, CustomerField.parse("name"));
+
+        //Then
+        assertThat(actual).hasSize(1);
+        Customer customer = actual.get(0);
+        assertThat(customer.getId()).isNotNull();
+        assertThat(customer.getVersion()).isZero();
+        assertThat(customer.getName()).isEqualTo("Anna");
+        assertThat(customer.getAge()).isEqualTo(30);
+        assertThat(customer.getEmail()).isNull();
+    }
+
+    @Test
+    void searchCustomersEscapesLikeWildcards() {
+        //Given
+        String name = "100%_" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(name, UUID.randomUUID() + "@like.test", 20));
+
+        //When
+        List<Customer> actual = underTest.searchCustomers(
+                new CustomerSearchCriteria("%_", null, null, null, null, CustomerSort.DEFAULT), null, 1000, CustomerField.ALL);
+
+        //Then
+        assertThat(actual).extracting(Customer::getName).contains(name);
+        assertThat(actual).allSatisfy(customer -> assertThat(customer.getName()).contains("%_"));
+    }
+
     @Test
     void selectCustomerById() {
         //Given
@@ -94,6 +212,25 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         assertThat(actual).isNotEmpty();
     }
 
+    @Test
+    void insertCustomersSkipsExistingEmails() {
+        //Given
+        Customer existing = getCustomer();
+        underTest.insertCustomer(existing);
+        Customer fresh = getCustomer();
+
+        //When
+        Map<String, Integer> actual = underTest.insertCustomers(List.of(
+                new Customer("duplicate", existing.getEmail(), 30),
+                fresh));
+
+        //Then
+        assertThat(actual).containsOnlyKeys(fresh.getEmail());
+        assertThat(underTest.selectCustomerById(actual.get(fresh.getEmail())))
+                .isPresent()
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo(fresh.getName()));
+    }
+
     @Test
     void existsCustomerWithEmail() {
         //Given
@@ -108,6 +245,20 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         assertThat(actual).isTrue();
     }
 
+    @Test
+    void willThrowWhenInsertingExistingEmail() {
+        //Given
+        Customer customer = getCustomer();
+        underTest.insertCustomer(customer);
+
+        //When
+        Customer duplicate = new Customer("duplicate", customer.getEmail(), 30);
+
+        //Then
+        assertThatThrownBy(() -> underTest.insertCustomer(duplicate))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
     @Test
     void existCustomerWithEmailWillReturnFalseWhenDoesNotExists() {
         //Given
@@ -326,4 +477,227 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
             assertThat(c.getEmail().equals(customer.getEmail()));
         });
     }
+
+    @Test
+    void willReturnEmptyWhenUpdateChangesNothing() {
+        //Given
+        Customer customer = getCustomer();
+        underTest.insertCustomer(customer);
+
+        Integer id = underTest.selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(customer.getEmail()))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        //When
+        Customer update = new Customer(id, customer.getName(), customer.getEmail(), customer.getAge());
+
+        Optional<Customer> actual = underTest.updateCustomer(update);
+
+        //Then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void willThrowWhenUpdatingToExistingEmail() {
+        //Given
+        Customer first = getCustomer();
+        Customer second = getCustomer();
+        underTest.insertCustomer(first);
+        underTest.insertCustomer(second);
+
+        Integer id = underTest.selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(second.getEmail()))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        //When
+        Customer update = new Customer();
+        update.setId(id);
+        update.setEmail(first.getEmail());
+
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(update))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void updateCustomerBumpsVersionAndHonoursExpectedVersion() {
+        //Given
+        Customer customer = getCustomer();
+        underTest.insertCustomer(customer);
+
+        Integer id = underTest.selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(customer.getEmail()))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        //When
+        Optional<Customer> updated = underTest.updateCustomer(new Customer(id, null, null, 77, 0L));
+        Optional<Customer> stale = underTest.updateCustomer(new Customer(id, null, null, 78, 0L));
+
+        //Then
+        assertThat(updated).hasValueSatisfying(c -> assertThat(c.getVersion()).isEqualTo(1L));
+        assertThat(stale).isEmpty();
+        assertThat(underTest.selectCustomerVersion(id)).hasValue(1L);
+    }
+
+    @Test
+    void updateProfileImageIdOnlyReplacesTheExpectedImage() {
+        //Given
+        Customer customer = getCustomer();
+        underTest.insertCustomer(customer);
+
+        Integer id = underTest.selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(customer.getEmail()))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+        String first = UUID.randomUUID().toString();
+        String second = UUID.randomUUID().toString();
+
+        //When
+        boolean set = underTest.updateProfileImageId(id, null, first);
+        boolean stale = underTest.updateProfileImageId(id, null, second);
+        boolean replaced = underTest.updateProfileImageId(id, first, second);
+
+        //Then
+        assertThat(set).isTrue();
+        assertThat(stale).isFalse();
+        assertThat(replaced).isTrue();
+        assertThat(underTest.selectProfileImageId(id)).hasValue(second);
+        assertThat(underTest.selectCustomerVersion(id)).hasValue(0L);
+        assertThat(underTest.updateProfileImageId(-1, null, first)).isFalse();
+    }
+
+    @Test
+    void deleteCustomerByIdAndVersionOnlyDeletesCurrentVersion() {
+        //Given
+        Customer customer = getCustomer();
+        underTest.insertCustomer(customer);
+
+        Integer id = underTest.selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(customer.getEmail()))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        //When
+        boolean stale = underTest.deleteCustomerByIdAndVersion(id, 1L);
+        boolean current = underTest.deleteCustomerByIdAndVersion(id, 0L);
+
+        //Then
+        assertThat(stale).isFalse();
+        assertThat(current).isTrue();
+        assertThat(underTest.existsCustomerWithId(id)).isFalse();
+    }
+
+    @Test
+    void selectChangesReportsWritesInOrderAndDeletesAsTombstones() {
+        //Given
+        String since = headOfChangeLog();
+        Customer kept = getCustomer();
+        Customer removed = getCustomer();
+        Map<String, Integer> ids = underTest.insertCustomers(List.of(kept, removed));
+        Integer keptId = ids.get(kept.getEmail());
+        Integer removedId = ids.get(removed.getEmail());
+        underTest.updateCustomer(new Customer(keptId, "renamed", null, null));
+        underTest.deleteCustomerById(removedId);
+
+        //When
+        List<CustomerChange> changes = underTest.selectChanges(since, 100).stream()
+                .filter(change -> change.customerId().equals(keptId) || change.customerId().equals(removedId))
+                .toList();
+
+        //Then
+        assertThat(changes).extracting(CustomerChange::customerId)
+                .containsExactlyInAnyOrder(keptId, removedId, keptId, removedId);
+        assertThat(changes).filteredOn(change -> change.customerId().equals(keptId))
+                .allSatisfy(change -> {
+                    assertThat(change.deleted()).isFalse();
+                    assertThat(change.customer().getName()).isEqualTo("renamed");
+                });
+        assertThat(changes).filteredOn(change -> change.customerId().equals(removedId))
+                .allSatisfy(change -> assertThat(change.deleted()).isTrue());
+        String last = changes.get(changes.size() - 1).token();
+        assertThat(underTest.selectChanges(last, 100))
+                .extracting(CustomerChange::customerId)
+                .doesNotContain(keptId, removedId);
+    }
+
+    @Test
+    void profileImageChangesAreNotLogged() {
+        //Given
+        Customer customer = getCustomer();
+        Integer id = underTest.insertCustomers(List.of(customer)).get(customer.getEmail());
+        String since = headOfChangeLog();
+
+        //When
+        underTest.updateProfileImageId(id, null, UUID.randomUUID().toString());
+
+        //Then
+        assertThat(underTest.selectChanges(since, 100)).extracting(CustomerChange::customerId)
+                .doesNotContain(id);
+    }
+
+    @Test
+    void deleteChangesBeforeOnlyDeletesEntriesOlderThanTheCutoff() {
+        //Given
+        Customer customer = getCustomer();
+        Integer id = underTest.insertCustomers(List.of(customer)).get(customer.getEmail());
+
+        //When
+        int old = underTest.deleteChangesBefore(Instant.now().minus(Duration.ofDays(365)), 1000);
+        int all = 0;
+        for (int batch = underTest.deleteChangesBefore(Instant.now().plusSeconds(60), 1000); batch > 0;
+             batch = underTest.deleteChangesBefore(Instant.now().plusSeconds(60), 1000)) {
+            all += batch;
+        }
+
+        //Then
+        assertThat(old).isZero();
+        assertThat(all).isPositive();
+        assertThat(underTest.selectChanges(null, 1000)).extracting(CustomerChange::customerId)
+                .doesNotContain(id);
+    }
+
+    @Test
+    void selectChangesRejectsATokenFromBeforeThePrunedEntries() {
+        //Given
+        underTest.insertCustomers(List.of(getCustomer()));
+        String since = headOfChangeLog();
+        underTest.insertCustomers(List.of(getCustomer()));
+        String head = headOfChangeLog();
+
+        //When
+        while (underTest.deleteChangesBefore(Instant.now().plusSeconds(60), 1000) > 0) {
+            // every entry so far
+        }
+
+        //Then
+        assertThatThrownBy(() -> underTest.selectChanges(since, 100))
+                .isInstanceOf(ResourceGoneException.class);
+        assertThat(underTest.selectChanges(head, 100)).isEmpty();
+    }
+
+    @Test
+    void selectChangesRejectsForeignToken() {
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.selectChanges("not a token", 10))
+                .isInstanceOf(RequestValidationException.class);
+    }
+
+    private String headOfChangeLog() {
+        String token = null;
+        List<CustomerChange> changes = underTest.selectChanges(null, 1000);
+        while (!changes.isEmpty()) {
+            token = changes.get(changes.size() - 1).token();
+            changes = underTest.selectChanges(token, 1000);
+        }
+        return token;
+    }
 }
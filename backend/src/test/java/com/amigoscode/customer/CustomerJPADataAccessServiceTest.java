@@ -4,9 +4,21 @@ import com.amigoscode.AbstractTestcontainers;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 class CustomerJPADataAccessServiceTest {
@@ -14,11 +26,12 @@ class CustomerJPADataAccessServiceTest {
     private CustomerJPADataAccessService underTest;
     private AutoCloseable autoCloseable;
     @Mock private CustomerRepository customerRepository;
+    @Mock private JdbcTemplate jdbcTemplate;
 
     @BeforeEach
     void setUp() {
         autoCloseable = MockitoAnnotations.openMocks(this);
-        underTest = new CustomerJPADataAccessService(customerRepository);
+        underTest = new CustomerJPADataAccessService(customerRepository, jdbcTemplate);
     }
 
     @AfterEach
@@ -35,6 +48,71 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).findAll();
     }
 
+    @Test
+    void selectCustomers() {
+        //Given
+        int afterId = 10;
+        int limit = 50;
+
+        //When
+        underTest.selectCustomers(afterId, limit, CustomerField.ALL);
+
+        //Then
+        verify(customerRepository).findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.ofSize(limit));
+    }
+
+    @Test
+    void selectCustomersProjectsIdAndNameToSummary() {
+        //Given
+        CustomerRepository.CustomerSummary summary = mock(CustomerRepository.CustomerSummary.class);
+        when(summary.getId()).thenReturn(11);
+        when(summary.getName()).thenReturn("Alex");
+        when(summary.getVersion()).thenReturn(2L);
+        when(customerRepository.findByIdGreaterThanOrderByIdAsc(
+                10, PageRequest.ofSize(50), CustomerRepository.CustomerSummary.class))
+                .thenReturn(List.of(summary));
+
+        //When
+        List<Customer> actual = underTest.selectCustomers(10, 50, CustomerField.parse("id,name"));
+
+        //Then
+        assertThat(actual).containsExactly(new Customer(11, "Alex", null, null));
+        assertThat(actual.get(0).getVersion()).isEqualTo(2L);
+        verify(customerRepository, never()).findByIdGreaterThanOrderByIdAsc(any(), any());
+    }
+
+    @Test
+    void searchCustomers() {
+        //Given
+        CustomerSearchCriteria criteria = new CustomerSearchCriteria(
+                "ann", null, "gmail.com", 18, 65, CustomerSort.parse("-name"));
+        CustomerSearchCursor after = new CustomerSearchCursor("Anna", 7);
+
+        //When
+        underTest.searchCustomers(criteria, after, 20, CustomerField.ALL);
+
+        //Then
+        verify(customerRepository).search(criteria, after, 20, CustomerField.ALL);
+    }
+
+    @Test
+    void streamAllCustomersWalksKeysetBatches() {
+        //Given
+        Customer first = new Customer(1, "first", "first@gmail.com", 20);
+        Customer second = new Customer(2, "second", "second@gmail.com", 30);
+        when(customerRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.ofSize(1000)))
+                .thenReturn(List.of(first, second));
+        when(customerRepository.findByIdGreaterThanOrderByIdAsc(2, PageRequest.ofSize(1000)))
+                .thenReturn(List.of());
+
+        //When
+        List<Customer> actual = new ArrayList<>();
+        underTest.streamAllCustomers(CustomerField.ALL, actual::add);
+
+        //Then
+        assertThat(actual).containsExactly(first, second);
+    }
+
     @Test
     void selectCustomerById() {
         //Given
@@ -59,6 +137,31 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).save(customer);
     }
 
+    @Test
+    void insertCustomersLeavesExistingEmailsToTheDatabase() throws SQLException {
+        //Given
+        Customer existing = new Customer("existing", "existing@gmail.com", 20);
+        Customer fresh = new Customer("fresh", "fresh@gmail.com", 30);
+        ResultSet inserted = mock(ResultSet.class);
+        when(inserted.getString("email")).thenReturn("fresh@gmail.com");
+        when(inserted.getInt("id")).thenReturn(7);
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(1).processRow(inserted);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any());
+
+        //When
+        Map<String, Integer> actual = underTest.insertCustomers(List.of(existing, fresh));
+
+        //Then
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).query(sql.capture(), any(RowCallbackHandler.class),
+                eq("existing"), eq("existing@gmail.com"), eq(20), eq("fresh"), eq("fresh@gmail.com"), eq(30));
+        assertThat(sql.getValue()).contains("ON CONFLICT (email) DO NOTHING", "RETURNING id, email");
+        assertThat(actual).containsExactly(Map.entry("fresh@gmail.com", 7));
+        verifyNoInteractions(customerRepository);
+    }
+
     @Test
     void existsPersonWithEmail() {
         //Given
@@ -98,12 +201,73 @@ class CustomerJPADataAccessServiceTest {
     @Test
     void updateCustomer() {
         //Given
-        Customer customer = AbstractTestcontainers.getCustomer();
+        Customer existing = new Customer(1, "test", "test@gmail.com", 20);
+        when(customerRepository.findById(1)).thenReturn(Optional.of(existing));
+        when(customerRepository.saveAndFlush(existing)).thenReturn(existing);
+        Customer update = new Customer(1, "new name", null, null);
 
         //When
-        underTest.updateCustomer(customer);
+        underTest.updateCustomer(update);
 
         //Then
-        verify(customerRepository).save(customer);
+        verify(customerRepository).saveAndFlush(existing);
+        assertThat(existing.getName()).isEqualTo("new name");
+        assertThat(existing.getEmail()).isEqualTo("test@gmail.com");
+    }
+
+    @Test
+    void willNotSaveWhenNothingChanged() {
+        //Given
+        Customer existing = new Customer(1, "test", "test@gmail.com", 20);
+        when(customerRepository.findById(1)).thenReturn(Optional.of(existing));
+        Customer update = new Customer(1, "test", "test@gmail.com", 20);
+
+        //When
+        Optional<Customer> actual = underTest.updateCustomer(update);
+
+        //Then
+        assertThat(actual).isEmpty();
+        verify(customerRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void willNotSaveWhenVersionIsStale() {
+        //Given
+        Customer existing = new Customer(1, "test", "test@gmail.com", 20, 4L);
+        when(customerRepository.findById(1)).thenReturn(Optional.of(existing));
+        Customer update = new Customer(1, "new name", null, null, 3L);
+
+        //When
+        Optional<Customer> actual = underTest.updateCustomer(update);
+
+        //Then
+        assertThat(actual).isEmpty();
+        assertThat(existing.getName()).isEqualTo("test");
+        verify(customerRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void selectCustomerVersion() {
+        //Given
+        int id = 1;
+
+        //When
+        underTest.selectCustomerVersion(id);
+
+        //Then
+        verify(customerRepository).findVersionById(id);
+    }
+
+    @Test
+    void deleteCustomerByIdAndVersion() {
+        //Given
+        int id = 1;
+        when(customerRepository.deleteByIdAndVersion(id, 2L)).thenReturn(1);
+
+        //When
+        boolean actual = underTest.deleteCustomerByIdAndVersion(id, 2L);
+
+        //Then
+        assertThat(actual).isTrue();
     }
 }
@@ -0,0 +1,141 @@
+package com.amigoscode.customer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.column.statistics.IntStatistics;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.example.GroupReadSupport;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.apache.parquet.schema.Type;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerParquetWriterTest {
+
+    private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    private java.nio.file.Path directory;
+
+    @Test
+    void framesTheFileWithMagicAndAFooterLength() throws IOException {
+        //Given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        //When
+        try (CustomerParquetWriter underTest = new CustomerParquetWriter(out, EnumSet.allOf(CustomerField.class), true)) {
+            for (int id = 1; id <= 1000; id++) {
+                underTest.write(new Customer(id, "name " + id, "email" + id + "@gmail.com", 20 + id % 50));
+            }
+        }
+
+        //Then
+        byte[] file = out.toByteArray();
+        int footerLength = ByteBuffer.wrap(file, file.length - 8, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        assertThat(Arrays.copyOfRange(file, 0, 4)).isEqualTo(MAGIC);
+        assertThat(Arrays.copyOfRange(file, file.length - 4, file.length)).isEqualTo(MAGIC);
+        assertThat(footerLength).isPositive().isLessThan(file.length - 12);
+        assertThat(new String(file, file.length - 8 - footerLength, footerLength, StandardCharsets.ISO_8859_1))
+                .contains("customer", "name", "email", "age");
+    }
+
+    @Test
+    void writesOnlyTheSelectedColumns() throws IOException {
+        //Given
+        java.nio.file.Path file = directory.resolve("ids.parquet");
+
+        //When
+        try (CustomerParquetWriter underTest = new CustomerParquetWriter(
+                Files.newOutputStream(file), EnumSet.of(CustomerField.ID, CustomerField.AGE), false)) {
+            underTest.write(new Customer(1, null, null, 20));
+        }
+
+        //Then
+        try (ParquetFileReader reader = ParquetFileReader.open(
+                HadoopInputFile.fromPath(new Path(file.toUri()), new Configuration()))) {
+            assertThat(reader.getFileMetaData().getSchema().getFields())
+                    .extracting(Type::getName)
+                    .containsExactly("id", "age");
+        }
+    }
+
+    @Test
+    void anEmptyExportIsStillAFile() throws IOException {
+        //Given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        //When
+        new CustomerParquetWriter(out, EnumSet.allOf(CustomerField.class), true).close();
+
+        //Then
+        byte[] file = out.toByteArray();
+        assertThat(Arrays.copyOfRange(file, 0, 4)).isEqualTo(MAGIC);
+        assertThat(Arrays.copyOfRange(file, file.length - 4, file.length)).isEqualTo(MAGIC);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void parquetMrReadsBackEveryRowAndTheIdStatistics(boolean gzip) throws IOException {
+        //Given
+        int count = 50_000;
+        java.nio.file.Path file = directory.resolve("customers.parquet");
+
+        //When
+        try (CustomerParquetWriter underTest = new CustomerParquetWriter(
+                Files.newOutputStream(file), EnumSet.allOf(CustomerField.class), gzip, 256 * 1024)) {
+            for (int id = 1; id <= count; id++) {
+                underTest.write(new Customer(id, "Zoë 名前 " + id, "email" + id + "@gmail.com", 20 + id % 50));
+            }
+        }
+
+        //Then
+        Path path = new Path(file.toUri());
+        try (ParquetFileReader reader = ParquetFileReader.open(HadoopInputFile.fromPath(path, new Configuration()))) {
+            List<BlockMetaData> rowGroups = reader.getFooter().getBlocks();
+            assertThat(rowGroups).hasSizeGreaterThan(1);
+            assertThat(rowGroups).flatExtracting(BlockMetaData::getColumns)
+                    .extracting(ColumnChunkMetaData::getCodec)
+                    .containsOnly(gzip ? CompressionCodecName.GZIP : CompressionCodecName.UNCOMPRESSED);
+            // the row groups cover consecutive id ranges
+            long expectedMin = 1;
+            for (BlockMetaData rowGroup : rowGroups) {
+                ColumnChunkMetaData ids = rowGroup.getColumns().get(0);
+                IntStatistics statistics = (IntStatistics) ids.getStatistics();
+                assertThat(ids.getPath().toDotString()).isEqualTo("id");
+                assertThat(statistics.getMin()).isEqualTo(expectedMin);
+                assertThat(statistics.getMax()).isEqualTo(expectedMin + rowGroup.getRowCount() - 1);
+                expectedMin += rowGroup.getRowCount();
+            }
+            assertThat(expectedMin - 1).isEqualTo(count);
+        }
+        try (ParquetReader<Group> reader = ParquetReader.builder(new GroupReadSupport(), path).build()) {
+            for (int id = 1; id <= count; id++) {
+                Group row = reader.read();
+                assertThat(row.getInteger("id", 0)).isEqualTo(id);
+                assertThat(row.getString("name", 0)).isEqualTo("Zoë 名前 " + id);
+                assertThat(row.getString("email", 0)).isEqualTo("email" + id + "@gmail.com");
+                assertThat(row.getInteger("age", 0)).isEqualTo(20 + id % 50);
+            }
+            assertThat(reader.read()).isNull();
+        }
+    }
+}
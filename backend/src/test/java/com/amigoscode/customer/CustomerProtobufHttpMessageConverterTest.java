@@ -0,0 +1,85 @@
+package com.amigoscode.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerProtobufHttpMessageConverterTest {
+
+    private final CustomerProtobufHttpMessageConverter underTest = new CustomerProtobufHttpMessageConverter();
+
+    @Test
+    void writesCustomer() throws IOException {
+        //Given
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+
+        //When
+        underTest.write(new Customer(7, "Alex", "alex@gmail.com", 19), CustomerProtobuf.MEDIA_TYPE, outputMessage);
+
+        //Then
+        com.amigoscode.customer.proto.Customer customer =
+                com.amigoscode.customer.proto.Customer.parseFrom(outputMessage.getBodyAsBytes());
+        assertThat(customer.getId()).isEqualTo(7);
+        assertThat(customer.getName()).isEqualTo("Alex");
+        assertThat(customer.getEmail()).isEqualTo("alex@gmail.com");
+        assertThat(customer.getAge()).isEqualTo(19);
+    }
+
+    @Test
+    void writesPageWithSelectedFieldsOnly() throws IOException {
+        //Given
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+        CustomerPage page = new CustomerPage(List.of(
+                new Customer(1, "Alex", "alex@gmail.com", 19),
+                new Customer(2, "Jamila", "jamila@gmail.com", 30)), "next");
+
+        //When
+        underTest.write(new CustomerFieldsValue(page, CustomerField.parse("id,name")),
+                CustomerProtobuf.MEDIA_TYPE, outputMessage);
+
+        //Then
+        com.amigoscode.customer.proto.CustomerPage actual =
+                com.amigoscode.customer.proto.CustomerPage.parseFrom(outputMessage.getBodyAsBytes());
+        assertThat(actual.getCustomersList()).hasSize(2);
+        assertThat(actual.getCustomers(1).getId()).isEqualTo(2);
+        assertThat(actual.getCustomers(1).getName()).isEqualTo("Jamila");
+        assertThat(actual.getCustomers(1).getEmail()).isEmpty();
+        assertThat(actual.getCustomers(1).getAge()).isZero();
+        assertThat(actual.getNextCursor()).isEqualTo("next");
+    }
+
+    @Test
+    void streamedListMatchesConvertedList() throws IOException {
+        //Given
+        List<Customer> customers = List.of(
+                new Customer(1, "Alex", "alex@gmail.com", 19),
+                new Customer(2, "Jamila", "jamila@gmail.com", 30));
+        MockHttpOutputMessage converted = new MockHttpOutputMessage();
+        MockHttpOutputMessage streamed = new MockHttpOutputMessage();
+
+        //When
+        underTest.write(new CustomerFieldsValue(customers, CustomerField.ALL), CustomerProtobuf.MEDIA_TYPE, converted);
+        try (CustomerFormats.CustomerWriter writer = new CustomerFormats(new ObjectMapper(), new Jackson2ObjectMapperBuilder())
+                .openWriter(CustomerProtobuf.MEDIA_TYPE, streamed.getBody(), CustomerField.ALL)) {
+            for (Customer customer : customers) {
+                writer.write(customer);
+            }
+        }
+
+        //Then
+        assertThat(streamed.getBodyAsBytes()).isEqualTo(converted.getBodyAsBytes());
+    }
+
+    @Test
+    void doesNotReadRequestBodies() {
+        assertThat(underTest.canRead(Customer.class, CustomerProtobuf.MEDIA_TYPE)).isFalse();
+        assertThat(underTest.canWrite(Customer.class, CustomerProtobuf.MEDIA_TYPE)).isTrue();
+        assertThat(underTest.canWrite(String.class, CustomerProtobuf.MEDIA_TYPE)).isFalse();
+    }
+}
@@ -0,0 +1,133 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.AbstractTestcontainers;
+import io.r2dbc.spi.ConnectionFactories;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerR2dbcDataAccessServiceTest extends AbstractTestcontainers {
+
+    private CustomerR2dbcDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerR2dbcDataAccessService(DatabaseClient.create(ConnectionFactories.get(
+                "r2dbc:postgresql://%s:%s@%s:%d/%s".formatted(
+                        postgreSQLContainer.getUsername(),
+                        postgreSQLContainer.getPassword(),
+                        postgreSQLContainer.getHost(),
+                        postgreSQLContainer.getFirstMappedPort(),
+                        postgreSQLContainer.getDatabaseName()))));
+    }
+
+    @Test
+    void selectAllCustomers() {
+        //Given
+        underTest.insertCustomer(getCustomer()).block();
+
+        //When
+        List<Customer> actual = underTest.selectAllCustomers().collectList().block();
+
+        //Then
+        assertThat(actual).isNotEmpty();
+    }
+
+    @Test
+    void selectCustomersReturnsPageAfterGivenId() {
+        //Given
+        underTest.insertCustomer(getCustomer()).block();
+        underTest.insertCustomer(getCustomer()).block();
+        underTest.insertCustomer(getCustomer()).block();
+
+        List<Customer> firstPage = underTest.selectCustomers(null, 2).collectList().block();
+
+        //When
+        List<Customer> secondPage = underTest.selectCustomers(firstPage.get(1).getId(), 2).collectList().block();
+
+        //Then
+        assertThat(firstPage).hasSize(2);
+        assertThat(secondPage).isNotEmpty();
+        assertThat(secondPage.get(0).getId()).isGreaterThan(firstPage.get(1).getId());
+    }
+
+    @Test
+    void selectCustomerById() {
+        //Given
+        Customer customer = getCustomer();
+        underTest.insertCustomer(customer).block();
+
+        int id = underTest.selectAllCustomers()
+                .filter(c -> c.getEmail().equals(customer.getEmail()))
+                .map(Customer::getId)
+                .blockFirst();
+
+        //When
+        Customer actual = underTest.selectCustomerById(id).block();
+
+        //Then
+        assertThat(actual).isNotNull();
+        assertThat(actual.getName()).isEqualTo(customer.getName());
+        assertThat(actual.getEmail()).isEqualTo(customer.getEmail());
+        assertThat(actual.getAge()).isEqualTo(customer.getAge());
+    }
+
+    @Test
+    void willThrowWhenInsertingExistingEmail() {
+        //Given
+        Customer customer = getCustomer();
+        underTest.insertCustomer(customer).block();
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.insertCustomer(customer).block())
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void updateCustomerAge() {
+        //Given
+        Customer customer = getCustomer();
+        underTest.insertCustomer(customer).block();
+
+        int id = underTest.selectAllCustomers()
+                .filter(c -> c.getEmail().equals(customer.getEmail()))
+                .map(Customer::getId)
+                .blockFirst();
+
+        //When
+        Customer updated = underTest.updateCustomer(new Customer(id, null, null, 100)).block();
+        Customer unchanged = underTest.updateCustomer(new Customer(id, null, null, 100)).block();
+
+        //Then
+        assertThat(updated).isNotNull();
+        assertThat(updated.getAge()).isEqualTo(100);
+        assertThat(updated.getName()).isEqualTo(customer.getName());
+        assertThat(unchanged).isNull();
+    }
+
+    @Test
+    void deleteCustomerById() {
+        //Given
+        Customer customer = getCustomer();
+        underTest.insertCustomer(customer).block();
+
+        int id = underTest.selectAllCustomers()
+                .filter(c -> c.getEmail().equals(customer.getEmail()))
+                .map(Customer::getId)
+                .blockFirst();
+
+        //When
+        underTest.deleteCustomerById(id).block();
+
+        //Then
+        assertThat(underTest.existsCustomerWithId(id).block()).isFalse();
+        assertThat(underTest.existsCustomerWithEmail(customer.getEmail()).block()).isFalse();
+    }
+}
@@ -1,9 +1,11 @@
 package com.amigoscode.customer;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.RowMapper;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -20,6 +22,7 @@ class CustomerRowMapperTest {
         when(resultSet.getInt("age")).thenReturn(34);
         when(resultSet.getString("name")).thenReturn("test");
         when(resultSet.getString("email")).thenReturn("test@gmail.com");
+        when(resultSet.getLong("version")).thenReturn(3L);
 
         //When
         Customer actual = customerRowMapper.mapRow(resultSet, 1);
@@ -28,5 +31,63 @@ class CustomerRowMapperTest {
         Customer expected = new Customer(1, "test", "test@gmail.com", 34);
 
         assertThat(actual).isEqualTo(expected);
+        assertThat(actual.getVersion()).isEqualTo(3L);
+    }
+
+    @Test
+    void projectingReadsOnlySelectedColumns() throws SQLException {
+        //Given
+        CustomerRowMapper customerRowMapper = new CustomerRowMapper();
+
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.findColumn("id")).thenReturn(1);
+        when(resultSet.findColumn("version")).thenReturn(2);
+        when(resultSet.findColumn("name")).thenReturn(3);
+        when(resultSet.getInt(1)).thenReturn(1);
+        when(resultSet.getLong(2)).thenReturn(3L);
+        when(resultSet.getString(3)).thenReturn("test");
+
+        //When
+        Customer actual = customerRowMapper
+                .projecting(Set.of(CustomerField.ID, CustomerField.NAME))
+                .mapRow(resultSet, 1);
+
+        //Then
+        assertThat(actual).isEqualTo(new Customer(1, "test", null, null));
+        assertThat(actual.getVersion()).isEqualTo(3L);
+        verify(resultSet, never()).findColumn("email");
+        verify(resultSet, never()).findColumn("age");
+    }
+
+    @Test
+    void projectingResolvesColumnsOncePerResultSet() throws SQLException {
+        //Given
+        CustomerRowMapper customerRowMapper = new CustomerRowMapper();
+
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.findColumn("id")).thenReturn(1);
+        when(resultSet.findColumn("version")).thenReturn(2);
+        when(resultSet.findColumn("name")).thenReturn(3);
+        when(resultSet.findColumn("email")).thenReturn(4);
+        when(resultSet.findColumn("age")).thenReturn(5);
+        when(resultSet.getInt(1)).thenReturn(1, 2);
+        when(resultSet.getString(3)).thenReturn("first", "second");
+        ResultSet other = mock(ResultSet.class);
+        when(other.findColumn("id")).thenReturn(5);
+        when(other.getInt(5)).thenReturn(9);
+
+        //When
+        RowMapper<Customer> mapper = customerRowMapper.projecting(CustomerField.ALL);
+        Customer first = mapper.mapRow(resultSet, 0);
+        Customer second = mapper.mapRow(resultSet, 1);
+        Customer fromOther = mapper.mapRow(other, 0);
+
+        //Then
+        assertThat(first.getName()).isEqualTo("first");
+        assertThat(second.getName()).isEqualTo("second");
+        assertThat(second.getId()).isEqualTo(2);
+        assertThat(fromOther.getId()).isEqualTo(9);
+        verify(resultSet, times(1)).findColumn("name");
+        verify(resultSet, never()).getString("name");
     }
 }
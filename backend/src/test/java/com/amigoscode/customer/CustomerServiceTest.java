@@ -1,16 +1,32 @@
 package com.amigoscode.customer;
 
 import com.amigoscode.exception.DuplicateResourceException;
+import com.amigoscode.exception.PreconditionFailedException;
 import com.amigoscode.exception.RequestValidationException;
 import com.amigoscode.exception.ResourceNotFoundException;
+import com.amigoscode.exception.ServiceUnavailableException;
+import com.amigoscode.storage.ObjectStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -18,13 +34,20 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class CustomerServiceTest {
 
+    private static final DataSize MAX_IMAGE_SIZE = DataSize.ofKilobytes(64);
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13};
+
     private CustomerService underTest;
     @Mock
     private CustomerDao customerDao;
+    @Mock
+    private ObjectStore objectStore;
+    @Captor
+    private ArgumentCaptor<List<Customer>> batchCaptor;
 
     @BeforeEach
     void setUp() {
-        underTest = new CustomerService(customerDao);
+        underTest = new CustomerService(customerDao, Optional.empty(), objectStore, MAX_IMAGE_SIZE);
     }
 
     @Test
@@ -36,6 +59,140 @@ class CustomerServiceTest {
         verify(customerDao).selectAllCustomers();
     }
 
+    @Test
+    void getCustomers() {
+        //Given
+        int afterId = 10;
+        int limit = 50;
+
+        Set<CustomerField> fields = CustomerField.parse("id,name");
+
+        //When
+        underTest.getCustomers(afterId, limit, fields);
+
+        //Then
+        verify(customerDao).selectCustomers(afterId, limit, fields);
+    }
+
+    @Test
+    void willThrowWhenLimitIsOutOfRangeWhileGettingCustomers() {
+        //When
+        assertThatThrownBy(() -> underTest.getCustomers(null, 0, CustomerField.ALL))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("limit must be between 1 and 1000");
+        assertThatThrownBy(() -> underTest.getCustomers(null, 1001, CustomerField.ALL))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("limit must be between 1 and 1000");
+
+        //Then
+        verify(customerDao, never()).selectCustomers(any(), anyInt(), any());
+    }
+
+    @Test
+    void searchCustomersReturnsCursorWhenMoreRowsExist() {
+        //Given
+        CustomerSearchCriteria criteria = new CustomerSearchCriteria(
+                null, null, null, null, null, CustomerSort.parse("-age"));
+        Customer first = new Customer(3, "Alex", "alex@gmail.com", 40);
+        Customer second = new Customer(1, "Jamila", "jamila@gmail.com", 30);
+        Customer third = new Customer(2, "Ali", "ali@gmail.com", 20);
+        when(customerDao.searchCustomers(criteria, null, 3, CustomerField.ALL)).thenReturn(List.of(first, second, third));
+
+        //When
+        CustomerPage actual = underTest.searchCustomers(criteria, null, 2, CustomerField.ALL);
+
+        //Then
+        assertThat(actual.customers()).containsExactly(first, second);
+        assertThat(actual.nextCursor()).isNotNull();
+
+        //When
+        underTest.searchCustomers(criteria, actual.nextCursor(), 2, CustomerField.ALL);
+
+        //Then
+        verify(customerDao).searchCustomers(criteria, new CustomerSearchCursor(30, 1), 3, CustomerField.ALL);
+    }
+
+    @Test
+    void searchCustomersReturnsNoCursorOnLastPage() {
+        //Given
+        CustomerSearchCriteria criteria = new CustomerSearchCriteria(
+                "al", null, null, null, null, CustomerSort.DEFAULT);
+        Customer customer = new Customer(3, "Alex", "alex@gmail.com", 40);
+        when(customerDao.searchCustomers(criteria, null, 3, CustomerField.ALL)).thenReturn(List.of(customer));
+
+        //When
+        CustomerPage actual = underTest.searchCustomers(criteria, null, 2, CustomerField.ALL);
+
+        //Then
+        assertThat(actual.customers()).containsExactly(customer);
+        assertThat(actual.nextCursor()).isNull();
+    }
+
+    @Test
+    void willThrowWhenSearchCursorWasIssuedForAnotherSort() {
+        //Given
+        CustomerSort byName = CustomerSort.parse("name");
+        String cursor = new CustomerSearchCursor("Alex", 3).encode(byName);
+        CustomerSearchCriteria criteria = new CustomerSearchCriteria(
+                null, null, null, null, null, CustomerSort.parse("-name"));
+
+        //When
+        assertThatThrownBy(() -> underTest.searchCustomers(criteria, cursor, 10, CustomerField.ALL))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("invalid cursor for sort -name");
+
+        //Then
+        verify(customerDao, never()).searchCustomers(any(), any(), anyInt(), any());
+    }
+
+    @Test
+    void willThrowWhenSearchAgeRangeIsInverted() {
+        //Given
+        CustomerSearchCriteria criteria = new CustomerSearchCriteria(
+                null, null, null, 40, 30, CustomerSort.DEFAULT);
+
+        //When
+        assertThatThrownBy(() -> underTest.searchCustomers(criteria, null, 10, CustomerField.ALL))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("minAge must not be greater than maxAge");
+
+        //Then
+        verify(customerDao, never()).searchCustomers(any(), any(), anyInt(), any());
+    }
+
+    @Test
+    void willThrowWhenSortIsUnknown() {
+        assertThatThrownBy(() -> CustomerSort.parse("email"))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("sort must be one of id, name, age, optionally prefixed with -");
+    }
+
+    @Test
+    void streamAllCustomers() {
+        //Given
+        Consumer<Customer> consumer = customer -> {
+        };
+
+        //When
+        underTest.streamAllCustomers(CustomerField.ALL, consumer);
+
+        //Then
+        verify(customerDao).streamAllCustomers(CustomerField.ALL, consumer);
+    }
+
+    @Test
+    void exportCustomersAlwaysIncludesTheId() {
+        //Given
+        Consumer<Customer> consumer = customer -> {
+        };
+
+        //When
+        underTest.exportCustomers(10, 20, Set.of(CustomerField.NAME), consumer);
+
+        //Then
+        verify(customerDao).streamCustomers(10, 20, EnumSet.of(CustomerField.ID, CustomerField.NAME), consumer);
+    }
+
     @Test
     void canGetCustomer() {
         //Given
@@ -67,8 +224,6 @@ class CustomerServiceTest {
         //Given
         String email = "test@gmail.com";
 
-        when(customerDao.existsCustomerWithEmail(email)).thenReturn(false);
-
         CustomerRegistrationRequest request = new CustomerRegistrationRequest("test", email, 55);
 
         //When
@@ -84,6 +239,7 @@ class CustomerServiceTest {
         assertThat(capturedCustomer.getName()).isEqualTo(request.name());
         assertThat(capturedCustomer.getEmail()).isEqualTo(request.email());
         assertThat(capturedCustomer.getAge()).isEqualTo(request.age());
+        verify(customerDao, never()).existsCustomerWithEmail(any());
     }
 
     @Test
@@ -91,7 +247,8 @@ class CustomerServiceTest {
         //Given
         String email = "test@gmail.com";
 
-        when(customerDao.existsCustomerWithEmail(email)).thenReturn(true);
+        doThrow(new DuplicateKeyException("customer_email_unique"))
+                .when(customerDao).insertCustomer(any());
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest("test", email, 55);
 
@@ -99,11 +256,90 @@ class CustomerServiceTest {
         assertThatThrownBy(() -> underTest.addCustomer(request))
                 .isInstanceOf(DuplicateResourceException.class)
                 .hasMessage("Customer with email %s already exist".formatted(email));
+    }
+
+    @Test
+    void addCustomerThroughWriteBehind() {
+        //Given
+        CustomerInsertCoalescer insertCoalescer = mock(CustomerInsertCoalescer.class);
+        when(insertCoalescer.insert(any())).thenReturn(CompletableFuture.completedFuture(7));
+        when(insertCoalescer.maxWait()).thenReturn(Duration.ofSeconds(1));
+        underTest = new CustomerService(customerDao, Optional.of(insertCoalescer), objectStore, MAX_IMAGE_SIZE);
+
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("test", "test@gmail.com", 55);
+
+        //When
+        underTest.addCustomer(request);
 
         //Then
+        verify(insertCoalescer).insert(new Customer("test", "test@gmail.com", 55));
         verify(customerDao, never()).insertCustomer(any());
     }
 
+    @Test
+    void willThrowWhenWriteBehindReportsDuplicateEmail() {
+        //Given
+        String email = "test@gmail.com";
+        CustomerInsertCoalescer insertCoalescer = mock(CustomerInsertCoalescer.class);
+        when(insertCoalescer.insert(any()))
+                .thenReturn(CompletableFuture.failedFuture(new DuplicateKeyException("customer_email_unique")));
+        when(insertCoalescer.maxWait()).thenReturn(Duration.ofSeconds(1));
+        underTest = new CustomerService(customerDao, Optional.of(insertCoalescer), objectStore, MAX_IMAGE_SIZE);
+
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("test", email, 55);
+
+        //When
+        assertThatThrownBy(() -> underTest.addCustomer(request))
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessage("Customer with email %s already exist".formatted(email));
+    }
+
+    @Test
+    void willThrowWhenWriteBehindDoesNotAnswerInTime() {
+        //Given
+        CustomerInsertCoalescer insertCoalescer = mock(CustomerInsertCoalescer.class);
+        when(insertCoalescer.insert(any())).thenReturn(new CompletableFuture<>());
+        when(insertCoalescer.maxWait()).thenReturn(Duration.ofMillis(10));
+        underTest = new CustomerService(customerDao, Optional.of(insertCoalescer), objectStore, MAX_IMAGE_SIZE);
+
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("test", "test@gmail.com", 55);
+
+        //When
+        assertThatThrownBy(() -> underTest.addCustomer(request))
+                .isInstanceOf(ServiceUnavailableException.class)
+                .hasMessage("registration was not written within PT0.01S, retry later");
+    }
+
+    @Test
+    void importCustomersReportsPerRowFailures() {
+        //Given
+        Stream<CustomerImportRow> rows = Stream.of(
+                CustomerImportRow.valid(1, new CustomerRegistrationRequest("a", "a@gmail.com", 20)),
+                CustomerImportRow.valid(2, new CustomerRegistrationRequest("b", "b@gmail.com", 30)),
+                CustomerImportRow.valid(3, new CustomerRegistrationRequest("a again", "a@gmail.com", 40)),
+                CustomerImportRow.valid(4, new CustomerRegistrationRequest(null, "c@gmail.com", 40)),
+                CustomerImportRow.invalid(5, "malformed JSON"));
+
+        when(customerDao.insertCustomers(anyList())).thenReturn(Map.of("a@gmail.com", 1));
+
+        //When
+        CustomerImportResult actual = underTest.importCustomers(rows);
+
+        //Then
+        assertThat(actual.imported()).isEqualTo(1);
+        assertThat(actual.failed()).isEqualTo(4);
+        assertThat(actual.errors()).containsExactly(
+                new CustomerImportError(4, "name, email and age are required"),
+                new CustomerImportError(5, "malformed JSON"),
+                new CustomerImportError(3, "duplicate email a@gmail.com in import"),
+                new CustomerImportError(2, "Customer with email b@gmail.com already exist"));
+
+        verify(customerDao).insertCustomers(batchCaptor.capture());
+        assertThat(batchCaptor.getValue())
+                .extracting(Customer::getEmail)
+                .containsExactly("a@gmail.com", "b@gmail.com");
+    }
+
     @Test
     void deleteCustomerById() {
         //Given
@@ -134,15 +370,93 @@ class CustomerServiceTest {
         verify(customerDao, never()).deleteCustomerById(id);
     }
 
+    @Test
+    void deletingCustomerDeletesItsProfileImage() throws IOException {
+        //Given
+        int id = 1;
+        when(customerDao.existsCustomerWithId(id)).thenReturn(true);
+        when(customerDao.selectProfileImageId(id)).thenReturn(Optional.of("image"));
+
+        //When
+        underTest.deleteCustomerById(id);
+
+        //Then
+        verify(customerDao).deleteCustomerById(id);
+        verify(objectStore).delete("image");
+    }
+
+    @Test
+    void putProfileImageStoresTheUploadAndDeletesTheImageItReplaces() throws IOException {
+        //Given
+        int id = 1;
+        when(customerDao.existsCustomerWithId(id)).thenReturn(true);
+        when(customerDao.selectProfileImageId(id)).thenReturn(Optional.of("previous"));
+        when(customerDao.updateProfileImageId(eq(id), eq("previous"), anyString())).thenReturn(true);
+
+        //When
+        String imageId = underTest.putProfileImage(id, new ByteArrayInputStream(PNG));
+
+        //Then
+        verify(objectStore).put(eq(imageId), eq("image/png"), any(), eq(MAX_IMAGE_SIZE.toBytes()));
+        verify(customerDao).updateProfileImageId(id, "previous", imageId);
+        verify(objectStore).delete("previous");
+    }
+
+    @Test
+    void putProfileImageRetriesWhenAnotherUploadWinsTheSwap() throws IOException {
+        //Given
+        int id = 1;
+        when(customerDao.existsCustomerWithId(id)).thenReturn(true);
+        when(customerDao.selectProfileImageId(id)).thenReturn(Optional.empty(), Optional.of("concurrent"));
+        when(customerDao.updateProfileImageId(eq(id), isNull(), anyString())).thenReturn(false);
+        when(customerDao.updateProfileImageId(eq(id), eq("concurrent"), anyString())).thenReturn(true);
+
+        //When
+        String imageId = underTest.putProfileImage(id, new ByteArrayInputStream(PNG));
+
+        //Then
+        verify(customerDao).updateProfileImageId(id, "concurrent", imageId);
+        verify(objectStore).delete("concurrent");
+        verify(objectStore, never()).delete(imageId);
+    }
+
+    @Test
+    void putProfileImageRejectsWhatIsNoImage() throws IOException {
+        //Given
+        int id = 1;
+        when(customerDao.existsCustomerWithId(id)).thenReturn(true);
+
+        //When
+        assertThatThrownBy(() -> underTest.putProfileImage(id, new ByteArrayInputStream("<svg/>".getBytes())))
+                .isInstanceOf(RequestValidationException.class);
+
+        //Then
+        verify(objectStore, never()).put(any(), any(), any(), anyLong());
+        verify(customerDao, never()).updateProfileImageId(any(), any(), any());
+    }
+
+    @Test
+    void getProfileImageOnlyServesTheCurrentImage() throws IOException {
+        //Given
+        int id = 1;
+        when(customerDao.selectProfileImageId(id)).thenReturn(Optional.of("current"));
+
+        //When
+        assertThatThrownBy(() -> underTest.getProfileImage(id, "replaced"))
+                .isInstanceOf(ResourceNotFoundException.class);
+
+        //Then
+        verify(objectStore, never()).get(any());
+    }
+
     @Test
     void canUpdateAllPropertiesCustomer() {
         //Given
         int id = 1;
-        Customer customer = new Customer(id, "test", "test@gmail.com", 42);
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "test1", "test1@gmail.com", 19);
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-        when(customerDao.existsCustomerWithEmail(request.email())).thenReturn(false);
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.of(
+                new Customer(id, request.name(), request.email(), request.age())));
 
         //When
         underTest.updateCustomer(id, request);
@@ -153,19 +467,22 @@ class CustomerServiceTest {
 
         Customer capturedCustomer = argCustomer.getValue();
 
+        assertThat(capturedCustomer.getId()).isEqualTo(id);
         assertThat(capturedCustomer.getName()).isEqualTo(request.name());
         assertThat(capturedCustomer.getEmail()).isEqualTo(request.email());
         assertThat(capturedCustomer.getAge()).isEqualTo(request.age());
+        verify(customerDao, never()).selectCustomerById(any());
+        verify(customerDao, never()).existsCustomerWithEmail(any());
     }
 
     @Test
     void canUpdateOnlyCustomerName() {
         //Given
         int id = 1;
-        Customer customer = new Customer(id, "test", "test@gmail.com", 42);
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "test1", null, null);
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.of(
+                new Customer(id, request.name(), "test@gmail.com", 42)));
 
         //When
         underTest.updateCustomer(id, request);
@@ -177,29 +494,23 @@ class CustomerServiceTest {
         Customer capturedCustomer = argCustomer.getValue();
 
         assertThat(capturedCustomer.getName()).isEqualTo(request.name());
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
+        assertThat(capturedCustomer.getAge()).isNull();
+        assertThat(capturedCustomer.getEmail()).isNull();
     }
 
     @Test
     void willThrowWhenEmailExistWhileUpdatingCustomer() {
         //Given
         int id = 1;
-        Customer customer = new Customer(id, "test", "test@gmail.com", 42);
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "test", "test1@gmail.com", 42);
 
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-        when(customerDao.existsCustomerWithEmail(request.email())).thenReturn(true);
-
+        when(customerDao.updateCustomer(any())).thenThrow(new DuplicateKeyException("customer_email_unique"));
 
         //When
         assertThatThrownBy(() -> underTest.updateCustomer(id, request))
                 .isInstanceOf(DuplicateResourceException.class)
                 .hasMessage("Customer with email %s already exist".formatted(request.email()));
-
-        //Then
-        verify(customerDao, never()).updateCustomer(any());
     }
 
     @Test
@@ -210,14 +521,145 @@ class CustomerServiceTest {
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 customer.getName(), customer.getEmail(), customer.getAge());
 
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.empty());
+        when(customerDao.existsCustomerWithId(id)).thenReturn(true);
 
         //When
         assertThatThrownBy(() -> underTest.updateCustomer(id, request))
                 .isInstanceOf(RequestValidationException.class)
                 .hasMessage("no data change found");
+    }
+
+    @Test
+    void willThrowWhenIdNotExistsWhileUpdatingCustomer() {
+        //Given
+        int id = 1;
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                "test", null, null);
+
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.empty());
+        when(customerDao.existsCustomerWithId(id)).thenReturn(false);
+
+        //When
+        assertThatThrownBy(() -> underTest.updateCustomer(id, request))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id %s not found".formatted(id));
+    }
+
+    @Test
+    void getCustomerVersion() {
+        //Given
+        int id = 1;
+        when(customerDao.selectCustomerVersion(id)).thenReturn(Optional.of(3L));
+
+        //When
+        long actual = underTest.getCustomerVersion(id);
+
+        //Then
+        assertThat(actual).isEqualTo(3L);
+    }
+
+    @Test
+    void willThrowWhenGettingVersionOfMissingCustomer() {
+        //Given
+        int id = 1;
+        when(customerDao.selectCustomerVersion(id)).thenReturn(Optional.empty());
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.getCustomerVersion(id))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id %s not found".formatted(id));
+    }
+
+    @Test
+    void canUpdateCustomerAtExpectedVersionWithoutExtraRead() {
+        //Given
+        int id = 1;
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("test1", null, null);
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.of(
+                new Customer(id, "test1", "test@gmail.com", 42, 3L)));
+
+        //When
+        Customer actual = underTest.updateCustomer(id, request, 2L);
+
+        //Then
+        ArgumentCaptor<Customer> argCustomer = ArgumentCaptor.forClass(Customer.class);
+        verify(customerDao).updateCustomer(argCustomer.capture());
+        assertThat(argCustomer.getValue().getVersion()).isEqualTo(2L);
+        assertThat(actual.getVersion()).isEqualTo(3L);
+        verify(customerDao, never()).selectCustomerVersion(any());
+        verify(customerDao, never()).existsCustomerWithId(any());
+    }
+
+    @Test
+    void willThrowWhenUpdatingCustomerAtStaleVersion() {
+        //Given
+        int id = 1;
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("test1", null, null);
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.empty());
+        when(customerDao.selectCustomerVersion(id)).thenReturn(Optional.of(5L));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, request, 2L))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("customer with id 1 is at version 5, not 2");
+    }
+
+    @Test
+    void willThrowWhenDeletingCustomerAtStaleVersion() {
+        //Given
+        int id = 1;
+        when(customerDao.deleteCustomerByIdAndVersion(id, 2L)).thenReturn(false);
+        when(customerDao.selectCustomerVersion(id)).thenReturn(Optional.of(5L));
+
+        //When
+        assertThatThrownBy(() -> underTest.deleteCustomerById(id, 2L))
+                .isInstanceOf(PreconditionFailedException.class);
+
+        //Then
+        verify(customerDao, never()).deleteCustomerById(id);
+    }
+
+    @Test
+    void willThrowWhenDeletingMissingCustomerAtVersion() {
+        //Given
+        int id = 1;
+        when(customerDao.deleteCustomerByIdAndVersion(id, 2L)).thenReturn(false);
+        when(customerDao.selectCustomerVersion(id)).thenReturn(Optional.empty());
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.deleteCustomerById(id, 2L))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id %s not found".formatted(id));
+    }
+
+    @Test
+    void getChangesPointsNextAtLastChange() {
+        //Given
+        CustomerChange change = CustomerChange.tombstone("t2", 7);
+        when(customerDao.selectChanges("t1", 10)).thenReturn(List.of(change));
+
+        //When
+        CustomerChangePage page = underTest.getChanges("t1", 10);
+
+        //Then
+        assertThat(page.changes()).containsExactly(change);
+        assertThat(page.next()).isEqualTo("t2");
+    }
+
+    @Test
+    void getChangesKeepsTokenWhenNothingChanged() {
+        //Given
+        when(customerDao.selectChanges("t1", 10)).thenReturn(List.of());
+
+        //When
+        CustomerChangePage page = underTest.getChanges("t1", 10);
 
         //Then
-        verify(customerDao, never()).updateCustomer(any());
+        assertThat(page.changes()).isEmpty();
+        assertThat(page.next()).isEqualTo("t1");
     }
 }
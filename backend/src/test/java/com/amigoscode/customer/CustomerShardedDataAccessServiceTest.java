@@ -0,0 +1,216 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.AbstractTestcontainers;
+import com.amigoscode.config.FlywayConfig;
+import com.amigoscode.config.ShardDataSources;
+import io.micrometer.observation.ObservationRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.dao.DuplicateKeyException;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// three shards as three schemas of the test container
+class CustomerShardedDataAccessServiceTest extends AbstractTestcontainers {
+
+    private CustomerShardedDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        FlywayConfig.sessionLock(Flyway.configure())
+                .dataSource(postgreSQLContainer.getJdbcUrl(), postgreSQLContainer.getUsername(),
+                        postgreSQLContainer.getPassword())
+                .locations("classpath:db/sharding")
+                .table("flyway_sharding_history")
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        for (int i = 1; i <= 3; i++) {
+            String schema = "shard_" + i;
+            FlywayConfig.sessionLock(Flyway.configure())
+                    .dataSource(postgreSQLContainer.getJdbcUrl(), postgreSQLContainer.getUsername(),
+                            postgreSQLContainer.getPassword())
+                    .schemas(schema)
+                    .load()
+                    .migrate();
+            shards.put("shard-" + i, DataSourceBuilder.create()
+                    .url(postgreSQLContainer.getJdbcUrl() + "&currentSchema=" + schema + ",public")
+                    .username(postgreSQLContainer.getUsername())
+                    .password(postgreSQLContainer.getPassword())
+                    .build());
+        }
+        underTest = new CustomerShardedDataAccessService(getJdbcTemplate(), new ShardDataSources(shards),
+                new CustomerRowMapper(), ObservationRegistry.NOOP, 128);
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.destroy();
+    }
+
+    @Test
+    void spreadsCustomersOverShardsAndReadsThemBack() {
+        //Given
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            customers.add(getCustomer());
+        }
+
+        //When
+        Map<String, Integer> ids = underTest.insertCustomers(customers);
+
+        //Then
+        assertThat(ids).hasSize(30);
+        ids.forEach((email, id) -> assertThat(underTest.selectCustomerById(id))
+                .map(Customer::getEmail)
+                .contains(email));
+        for (int i = 1; i <= 3; i++) {
+            assertThat(getJdbcTemplate().queryForObject(
+                    "SELECT count(*) FROM shard_%d.customer".formatted(i), Integer.class)).isPositive();
+        }
+    }
+
+    @Test
+    void pagesMergeAcrossShardsInIdOrder() {
+        //Given
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            customers.add(getCustomer());
+        }
+        underTest.insertCustomers(customers);
+        List<Integer> all = underTest.selectAllCustomers().stream().map(Customer::getId).toList();
+
+        //When
+        List<Customer> firstPage = underTest.selectCustomers(null, 5, CustomerField.ALL);
+        List<Customer> secondPage = underTest.selectCustomers(firstPage.get(4).getId(), 5, CustomerField.ALL);
+
+        //Then
+        assertThat(all).isSorted();
+        assertThat(firstPage).extracting(Customer::getId).containsExactlyElementsOf(all.subList(0, 5));
+        assertThat(secondPage).extracting(Customer::getId).containsExactlyElementsOf(all.subList(5, 10));
+    }
+
+    @Test
+    void streamCustomersMergesShardsInIdOrder() {
+        //Given
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            customers.add(getCustomer());
+        }
+        underTest.insertCustomers(customers);
+        List<Integer> all = underTest.selectAllCustomers().stream().map(Customer::getId).toList();
+
+        //When
+        List<Customer> actual = new ArrayList<>();
+        underTest.streamCustomers(all.get(2), all.get(15), CustomerField.ALL, actual::add);
+
+        //Then
+        assertThat(actual).extracting(Customer::getId).containsExactlyElementsOf(all.subList(3, 16));
+    }
+
+    @Test
+    void searchMergesShardsInSortOrder() {
+        //Given
+        String domain = UUID.randomUUID() + ".example";
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            customers.add(new Customer(FAKER.name().fullName(), "c%d@%s".formatted(i, domain), 20 + i % 5));
+        }
+        underTest.insertCustomers(customers);
+        CustomerSearchCriteria criteria = new CustomerSearchCriteria(null, null, domain, null, null,
+                CustomerSort.parse("-age"));
+
+        //When
+        List<Customer> firstPage = underTest.searchCustomers(criteria, null, 6, CustomerField.ALL);
+        List<Customer> secondPage = underTest.searchCustomers(criteria,
+                CustomerSearchCursor.after(firstPage.get(5), criteria.sort()), 6, CustomerField.ALL);
+
+        //Then
+        List<Customer> both = new ArrayList<>(firstPage);
+        both.addAll(secondPage);
+        assertThat(both).hasSize(12).isSortedAccordingTo(criteria.sort().comparator());
+    }
+
+    @Test
+    void emailStaysUniqueAcrossShards() {
+        //Given
+        Customer customer = getCustomer();
+        underTest.insertCustomer(customer);
+
+        //When
+        assertThatThrownBy(() -> underTest.insertCustomer(
+                new Customer("other", customer.getEmail(), 30)))
+                .isInstanceOf(DuplicateKeyException.class);
+
+        //Then
+        assertThat(underTest.existsCustomerWithEmail(customer.getEmail())).isTrue();
+    }
+
+    @Test
+    void deleteReleasesEmail() {
+        //Given
+        Customer customer = getCustomer();
+        Integer id = underTest.insertCustomers(List.of(customer)).get(customer.getEmail());
+
+        //When
+        underTest.deleteCustomerById(id);
+
+        //Then
+        assertThat(underTest.existsCustomerWithEmail(customer.getEmail())).isFalse();
+        assertThat(underTest.insertCustomers(List.of(customer))).containsKey(customer.getEmail());
+    }
+
+    @Test
+    void failedUpdateHandsPreviousEmailBack() {
+        //Given
+        Customer customer = getCustomer();
+        Integer id = underTest.insertCustomers(List.of(customer)).get(customer.getEmail());
+        Customer update = new Customer(id, null, "new-" + customer.getEmail(), null, 99L);
+
+        //When
+        assertThat(underTest.updateCustomer(update)).isEmpty();
+
+        //Then
+        assertThat(underTest.existsCustomerWithEmail(customer.getEmail())).isTrue();
+        assertThat(underTest.existsCustomerWithEmail(update.getEmail())).isFalse();
+    }
+
+    @Test
+    void changesOfAllShardsResumeFromOneToken() {
+        //Given
+        String since = null;
+        for (List<CustomerChange> changes = underTest.selectChanges(null, 1000); !changes.isEmpty();
+             changes = underTest.selectChanges(since, 1000)) {
+            since = changes.get(changes.size() - 1).token();
+        }
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            customers.add(getCustomer());
+        }
+        Map<String, Integer> ids = underTest.insertCustomers(customers);
+
+        //When
+        List<CustomerChange> first = underTest.selectChanges(since, 5);
+        List<CustomerChange> rest = underTest.selectChanges(first.get(4).token(), 100);
+
+        //Then
+        List<Integer> seen = new ArrayList<>();
+        first.forEach(change -> seen.add(change.customerId()));
+        rest.forEach(change -> seen.add(change.customerId()));
+        assertThat(seen).containsExactlyInAnyOrderElementsOf(ids.values());
+    }
+}
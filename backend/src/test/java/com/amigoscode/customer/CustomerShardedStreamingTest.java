@@ -0,0 +1,61 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.config.ShardDataSources;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// pgjdbc only streams with a fetch size when autocommit is off, which a shard's plain
+// CustomerJDBCDataAccessService cannot arrange through @Transactional; no database needed
+class CustomerShardedStreamingTest {
+
+    private final Connection connection = mock(Connection.class);
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+    private CustomerShardedDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        DataSource shard = mock(DataSource.class);
+        when(shard.getConnection()).thenReturn(connection);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(mock(ResultSet.class));
+        underTest = new CustomerShardedDataAccessService(new JdbcTemplate(mock(DataSource.class)),
+                new ShardDataSources(Map.of("shard-1", shard)), new CustomerRowMapper(), ObservationRegistry.NOOP, 16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.destroy();
+    }
+
+    @Test
+    void streamsEachShardThroughACursorInsideATransaction() throws SQLException {
+        //When
+        underTest.streamAllCustomers(CustomerField.ALL, customer -> {
+        });
+
+        //Then
+        InOrder order = inOrder(connection, statement);
+        order.verify(connection).setAutoCommit(false);
+        order.verify(connection).prepareStatement(anyString());
+        order.verify(statement).setFetchSize(1000);
+        order.verify(statement).executeQuery();
+        order.verify(connection).commit();
+    }
+}
@@ -0,0 +1,183 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+import com.amigoscode.storage.StoredFile;
+import com.amigoscode.storage.StoredObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProfileImageThumbnailsTest {
+
+    @TempDir
+    private Path directory;
+    private ProfileImageThumbnails underTest;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        underTest = new ProfileImageThumbnails(List.of(64, 128), 2, 8, Duration.ofSeconds(10), false,
+                directory.resolve("thumbnails"), DataSize.ofMegabytes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.destroy();
+    }
+
+    @Test
+    void resizesWithinTheSizeKeepingTheAspectRatio() throws IOException {
+        //Given
+        StoredObject original = image("png", 800, 400);
+
+        //When
+        StoredObject thumbnail = underTest.thumbnail("image", original, 64);
+
+        //Then
+        assertThat(thumbnail.contentType()).isEqualTo("image/png");
+        try (InputStream content = thumbnail.openStream()) {
+            BufferedImage decoded = ImageIO.read(content);
+            assertThat(decoded.getWidth()).isEqualTo(64);
+            assertThat(decoded.getHeight()).isEqualTo(32);
+        }
+    }
+
+    @Test
+    void jpegStaysJpegAndSmallImagesAreNotScaledUp() throws IOException {
+        //Given
+        StoredObject original = image("jpeg", 40, 30);
+
+        //When
+        StoredObject thumbnail = underTest.thumbnail("image", original, 128);
+
+        //Then
+        assertThat(thumbnail.contentType()).isEqualTo("image/jpeg");
+        try (InputStream content = thumbnail.openStream()) {
+            BufferedImage decoded = ImageIO.read(content);
+            assertThat(decoded.getWidth()).isEqualTo(40);
+            assertThat(decoded.getHeight()).isEqualTo(30);
+        }
+    }
+
+    @Test
+    void rejectsSizesThatAreNotConfigured() throws IOException {
+        //Given
+        StoredObject original = image("png", 10, 10);
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.thumbnail("image", original, 100))
+                .isInstanceOf(RequestValidationException.class);
+    }
+
+    @Test
+    void concurrentRequestsForAMissingVariantDecodeOnce() throws Exception {
+        //Given
+        StoredObject png = image("png", 800, 800);
+        AtomicInteger opened = new AtomicInteger();
+        StoredObject original = new CountingObject(png, opened);
+        int clients = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+
+        //When
+        List<Future<StoredObject>> thumbnails = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            thumbnails.add(executor.submit(() -> {
+                start.await();
+                return underTest.thumbnail("image", original, 128);
+            }));
+        }
+        start.countDown();
+        List<Long> sizes = new ArrayList<>();
+        for (Future<StoredObject> thumbnail : thumbnails) {
+            try (StoredObject variant = thumbnail.get()) {
+                sizes.add(variant.size());
+            }
+        }
+        executor.shutdown();
+
+        //Then
+        assertThat(opened).hasValue(1);
+        assertThat(sizes).hasSize(clients).containsOnly(sizes.get(0));
+    }
+
+    @Test
+    void aVariantStaysReadableWhenEvictedWhileBeingSent() throws IOException {
+        //Given
+        underTest.destroy();
+        underTest = new ProfileImageThumbnails(List.of(64), 1, 4, Duration.ofSeconds(10), false,
+                directory.resolve("tiny"), DataSize.ofBytes(1));
+        StoredObject first = image("png", 800, 400);
+
+        //When
+        try (StoredObject thumbnail = underTest.thumbnail("first", first, 64)) {
+            underTest.thumbnail("second", image("png", 400, 800), 64).close();
+
+            //Then
+            assertThat(thumbnail.file()).isEmpty();
+            try (InputStream content = thumbnail.openStream()) {
+                assertThat(ImageIO.read(content).getWidth()).isEqualTo(64);
+            }
+        }
+        try (Stream<Path> cached = Files.list(directory.resolve("tiny"))) {
+            assertThat(cached).hasSize(1);
+        }
+    }
+
+    private StoredObject image(String format, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            image.setRGB(x, 0, 0xFF0000);
+        }
+        Path file = directory.resolve("original." + format);
+        ImageIO.write(image, format, file.toFile());
+        return new StoredFile(file, "image/" + format, Files.size(file));
+    }
+
+    // counts decodes, which all start by opening the original
+    private record CountingObject(StoredObject delegate, AtomicInteger opened) implements StoredObject {
+
+        @Override
+        public String contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long size() {
+            return delegate.size();
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            opened.incrementAndGet();
+            return delegate.openStream();
+        }
+
+        @Override
+        public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            delegate.transferTo(position, count, target);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.DuplicateResourceException;
+import com.amigoscode.exception.RequestValidationException;
+import com.amigoscode.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveCustomerServiceTest {
+
+    private ReactiveCustomerService underTest;
+    @Mock
+    private ReactiveCustomerDao customerDao;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ReactiveCustomerService(customerDao);
+    }
+
+    @Test
+    void getAllCustomers() {
+        //Given
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 19);
+        when(customerDao.selectAllCustomers()).thenReturn(Flux.just(customer));
+
+        //When
+        List<Customer> actual = underTest.getAllCustomers().collectList().block();
+
+        //Then
+        assertThat(actual).containsExactly(customer);
+    }
+
+    @Test
+    void willErrorWhenLimitIsOutOfRangeWhileGettingCustomers() {
+        //When
+        assertThatThrownBy(() -> underTest.getCustomers(null, 0).blockLast())
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("limit must be between 1 and 1000");
+
+        //Then
+        verify(customerDao, never()).selectCustomers(any(), anyInt());
+    }
+
+    @Test
+    void canGetCustomer() {
+        //Given
+        int id = 10;
+        Customer customer = new Customer(id, "Alex", "alex@gmail.com", 19);
+        when(customerDao.selectCustomerById(id)).thenReturn(Mono.just(customer));
+
+        //When
+        Customer actual = underTest.getCustomer(id).block();
+
+        //Then
+        assertThat(actual).isEqualTo(customer);
+    }
+
+    @Test
+    void willErrorWhenGetCustomerReturnEmpty() {
+        //Given
+        int id = 10;
+        when(customerDao.selectCustomerById(id)).thenReturn(Mono.empty());
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.getCustomer(id).block())
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id %s not found".formatted(id));
+    }
+
+    @Test
+    void addCustomer() {
+        //Given
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("Alex", "alex@gmail.com", 19);
+        when(customerDao.insertCustomer(any())).thenReturn(Mono.empty());
+
+        //When
+        underTest.addCustomer(request).block();
+
+        //Then
+        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
+        verify(customerDao).insertCustomer(customerArgumentCaptor.capture());
+
+        Customer capturedCustomer = customerArgumentCaptor.getValue();
+        assertThat(capturedCustomer.getId()).isNull();
+        assertThat(capturedCustomer.getName()).isEqualTo(request.name());
+        assertThat(capturedCustomer.getEmail()).isEqualTo(request.email());
+        assertThat(capturedCustomer.getAge()).isEqualTo(request.age());
+    }
+
+    @Test
+    void willErrorWhenEmailExistsWhileAddingACustomer() {
+        //Given
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("Alex", "alex@gmail.com", 19);
+        when(customerDao.insertCustomer(any())).thenReturn(Mono.error(new DuplicateKeyException("customer_email_unique")));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.addCustomer(request).block())
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessage("Customer with email alex@gmail.com already exist");
+    }
+
+    @Test
+    void deleteCustomerById() {
+        //Given
+        int id = 10;
+        when(customerDao.existsCustomerWithId(id)).thenReturn(Mono.just(true));
+        when(customerDao.deleteCustomerById(id)).thenReturn(Mono.empty());
+
+        //When
+        underTest.deleteCustomerById(id).block();
+
+        //Then
+        verify(customerDao).deleteCustomerById(id);
+    }
+
+    @Test
+    void willErrorDeleteCustomerByIdNotExists() {
+        //Given
+        int id = 10;
+        when(customerDao.existsCustomerWithId(id)).thenReturn(Mono.just(false));
+
+        //When
+        assertThatThrownBy(() -> underTest.deleteCustomerById(id).block())
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id %s not found".formatted(id));
+
+        //Then
+        verify(customerDao, never()).deleteCustomerById(id);
+    }
+
+    @Test
+    void canUpdateCustomer() {
+        //Given
+        int id = 10;
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("Alexandro", null, null);
+        when(customerDao.updateCustomer(any()))
+                .thenReturn(Mono.just(new Customer(id, "Alexandro", "alex@gmail.com", 19)));
+
+        //When
+        underTest.updateCustomer(id, request).block();
+
+        //Then
+        verify(customerDao).updateCustomer(new Customer(id, "Alexandro", null, null));
+        verify(customerDao, never()).existsCustomerWithId(any());
+    }
+
+    @Test
+    void willErrorWhenUpdateChangesNothing() {
+        //Given
+        int id = 10;
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("Alex", null, null);
+        when(customerDao.updateCustomer(any())).thenReturn(Mono.empty());
+        when(customerDao.existsCustomerWithId(id)).thenReturn(Mono.just(true));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, request).block())
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("no data change found");
+    }
+
+    @Test
+    void willErrorWhenUpdatingCustomerThatDoesNotExist() {
+        //Given
+        int id = 10;
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("Alex", null, null);
+        when(customerDao.updateCustomer(any())).thenReturn(Mono.empty());
+        when(customerDao.existsCustomerWithId(id)).thenReturn(Mono.just(false));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, request).block())
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id %s not found".formatted(id));
+    }
+
+    @Test
+    void willErrorWhenUpdatedEmailIsTaken() {
+        //Given
+        int id = 10;
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(null, "taken@gmail.com", null);
+        when(customerDao.updateCustomer(any())).thenReturn(Mono.error(new DuplicateKeyException("customer_email_unique")));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, request).block())
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessage("Customer with email taken@gmail.com already exist");
+    }
+}
@@ -0,0 +1,108 @@
+package com.amigoscode.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiskLruCacheTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void evictsTheLeastRecentlyUsedOnceOverTheLimit() throws IOException {
+        //Given
+        DiskLruCache underTest = new DiskLruCache(directory, 25);
+        underTest.put("a", file -> Files.write(file, new byte[10]));
+        underTest.put("b", file -> Files.write(file, new byte[10]));
+        underTest.get("a", "image/png");
+
+        //When
+        underTest.put("c", file -> Files.write(file, new byte[10]));
+
+        //Then
+        assertThat(underTest.get("a", "image/png")).isPresent();
+        assertThat(underTest.get("b", "image/png")).isEmpty();
+        assertThat(underTest.get("c", "image/png")).isPresent();
+        assertThat(Files.exists(directory.resolve("b"))).isFalse();
+        assertThat(underTest.totalBytes()).isEqualTo(20);
+    }
+
+    @Test
+    void anOpenedEntryStaysReadableAfterItIsEvicted() throws IOException {
+        //Given
+        DiskLruCache underTest = new DiskLruCache(directory, 15);
+        underTest.put("a", file -> Files.write(file, "0123456789".getBytes(StandardCharsets.US_ASCII)));
+
+        //When
+        try (OpenedFile opened = underTest.open("a", "image/png").orElseThrow()) {
+            underTest.put("b", file -> Files.write(file, new byte[10]));
+
+            //Then
+            assertThat(Files.exists(directory.resolve("a"))).isFalse();
+            assertThat(opened.file()).isEmpty();
+            ByteArrayOutputStream sent = new ByteArrayOutputStream();
+            opened.transferTo(2, 5, Channels.newChannel(sent));
+            assertThat(sent.toString(StandardCharsets.US_ASCII)).isEqualTo("23456");
+        }
+        assertThat(underTest.open("a", "image/png")).isEmpty();
+    }
+
+    @Test
+    void keepsAnEntryLargerThanTheLimitUntilTheNextPut() throws IOException {
+        //Given
+        DiskLruCache underTest = new DiskLruCache(directory, 5);
+
+        //When
+        underTest.put("a", file -> Files.write(file, new byte[10]));
+
+        //Then
+        assertThat(underTest.get("a", "image/png")).hasValueSatisfying(file -> assertThat(file.size()).isEqualTo(10));
+    }
+
+    @Test
+    void failedWriteLeavesNothingBehind() throws IOException {
+        //Given
+        DiskLruCache underTest = new DiskLruCache(directory, 100);
+
+        //When
+        try {
+            underTest.put("a", file -> {
+                Files.write(file, new byte[10]);
+                throw new IOException("boom");
+            });
+        } catch (IOException expected) {
+            // the writer's
+        }
+
+        //Then
+        assertThat(underTest.get("a", "image/png")).isEmpty();
+        try (var files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void reloadsWhatAPreviousRunLeft() throws IOException {
+        //Given
+        DiskLruCache previous = new DiskLruCache(directory, 100);
+        previous.put("a", file -> Files.write(file, new byte[10]));
+        Files.write(directory.resolve(".tmp-unfinished"), new byte[10]);
+
+        //When
+        DiskLruCache underTest = new DiskLruCache(directory, 100);
+
+        //Then
+        assertThat(underTest.get("a", "image/png")).isPresent();
+        assertThat(underTest.totalBytes()).isEqualTo(10);
+        assertThat(Files.exists(directory.resolve(".tmp-unfinished"))).isFalse();
+    }
+}
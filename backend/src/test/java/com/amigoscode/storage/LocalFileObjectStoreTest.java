@@ -0,0 +1,79 @@
+package com.amigoscode.storage;
+
+import com.amigoscode.exception.PayloadTooLargeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LocalFileObjectStoreTest {
+
+    @TempDir
+    private Path root;
+    private LocalFileObjectStore underTest;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        underTest = new LocalFileObjectStore(root);
+    }
+
+    @Test
+    void putThenTransferARange() throws IOException {
+        //Given
+        underTest.put("key", "text/plain", new ByteArrayInputStream("hello world".getBytes(StandardCharsets.UTF_8)), 100);
+
+        //When
+        StoredObject object = underTest.get("key").orElseThrow();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        object.transferTo(6, 5, Channels.newChannel(out));
+
+        //Then
+        assertThat(object.contentType()).isEqualTo("text/plain");
+        assertThat(object.size()).isEqualTo(11);
+        assertThat(object.file()).isPresent();
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("world");
+    }
+
+    @Test
+    void oversizedUploadLeavesNothingBehind() throws IOException {
+        //When
+        assertThatThrownBy(() -> underTest.put("key", "text/plain", new ByteArrayInputStream(new byte[101]), 100))
+                .isInstanceOf(PayloadTooLargeException.class);
+
+        //Then
+        assertThat(underTest.get("key")).isEmpty();
+        try (var files = Files.list(root)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void deleteRemovesTheObject() throws IOException {
+        //Given
+        underTest.put("key", "text/plain", new ByteArrayInputStream(new byte[1]), 100);
+
+        //When
+        underTest.delete("key");
+        underTest.delete("key");
+
+        //Then
+        assertThat(underTest.get("key")).isEmpty();
+    }
+
+    @Test
+    void rejectsKeysThatCouldEscapeTheRoot() {
+        //When
+        assertThatThrownBy(() -> underTest.get("../key"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,150 @@
+package com.amigoscode.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.CacheControl;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StoredObjectResponsesTest {
+
+    private static final String ETAG = "\"image\"";
+    private static final CacheControl CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(365)).immutable();
+
+    @TempDir
+    private Path root;
+    private StoredObject object;
+    private final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/image");
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        LocalFileObjectStore store = new LocalFileObjectStore(root);
+        store.put("image", "image/png", new ByteArrayInputStream("0123456789".getBytes(StandardCharsets.UTF_8)), 100);
+        object = store.get("image").orElseThrow();
+    }
+
+    @Test
+    void writesTheWholeObjectWithCacheHeaders() throws IOException {
+        //When
+        StoredObjectResponses.write(object, ETAG, CACHE_CONTROL, request, response);
+
+        //Then
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader("ETag")).isEqualTo(ETAG);
+        assertThat(response.getHeader("Cache-Control")).isEqualTo("max-age=31536000, immutable");
+        assertThat(response.getHeader("Accept-Ranges")).isEqualTo("bytes");
+        assertThat(response.getContentType()).isEqualTo("image/png");
+        assertThat(response.getContentAsString()).isEqualTo("0123456789");
+    }
+
+    @Test
+    void writesASingleRange() throws IOException {
+        //Given
+        request.addHeader("Range", "bytes=2-4");
+
+        //When
+        StoredObjectResponses.write(object, ETAG, CACHE_CONTROL, request, response);
+
+        //Then
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 2-4/10");
+        assertThat(response.getContentAsString()).isEqualTo("234");
+    }
+
+    @Test
+    void ignoresTheRangeWhenIfRangeNamesAnotherVersion() throws IOException {
+        //Given
+        request.addHeader("Range", "bytes=2-4");
+        request.addHeader("If-Range", "\"other\"");
+
+        //When
+        StoredObjectResponses.write(object, ETAG, CACHE_CONTROL, request, response);
+
+        //Then
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo("0123456789");
+    }
+
+    @Test
+    void rejectsARangePastTheEnd() throws IOException {
+        //Given
+        request.addHeader("Range", "bytes=10-");
+
+        //When
+        StoredObjectResponses.write(object, ETAG, CACHE_CONTROL, request, response);
+
+        //Then
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes */10");
+    }
+
+    @Test
+    void rejectsARangeStartingFarPastTheEnd() throws IOException {
+        //Given
+        request.addHeader("Range", "bytes=20-30");
+
+        //When
+        StoredObjectResponses.write(object, ETAG, CACHE_CONTROL, request, response);
+
+        //Then
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes */10");
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void rejectsASuffixRangeOfAnEmptyObject() throws IOException {
+        //Given
+        LocalFileObjectStore store = new LocalFileObjectStore(root);
+        store.put("empty", "image/png", new ByteArrayInputStream(new byte[0]), 100);
+        request.addHeader("Range", "bytes=-5");
+
+        //When
+        StoredObjectResponses.write(store.get("empty").orElseThrow(), ETAG, CACHE_CONTROL, request, response);
+
+        //Then
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes */0");
+    }
+
+    @Test
+    void answersAMatchingIfNoneMatchWithNotModified() throws IOException {
+        //Given
+        request.addHeader("If-None-Match", ETAG);
+
+        //When
+        StoredObjectResponses.write(object, ETAG, CACHE_CONTROL, request, response);
+
+        //Then
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void leavesTheBodyToTomcatSendfileWhenOffered() throws IOException {
+        //Given
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader("Range", "bytes=5-");
+
+        //When
+        StoredObjectResponses.write(object, ETAG, CACHE_CONTROL, request, response);
+
+        //Then
+        assertThat(response.getContentLengthLong()).isEqualTo(5);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.filename"))
+                .isEqualTo(object.file().orElseThrow().toAbsolutePath().toString());
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.start")).isEqualTo(5L);
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.end")).isEqualTo(10L);
+    }
+}